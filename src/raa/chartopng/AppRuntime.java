@@ -210,7 +210,17 @@ public class AppRuntime
 			new LinkedBlockingQueue<>(),
 			runnable ->
 			{
-				final Thread thread = new Thread(runnable);
+				final Thread thread = new Thread(() ->
+				{
+					try
+					{
+						runnable.run();
+					}
+					finally
+					{
+						RasterizerOption.releaseThread();
+					}
+				});
 				thread.setDaemon(true);
 				return thread;
 			},
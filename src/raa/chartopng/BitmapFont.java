@@ -0,0 +1,409 @@
+/*
+ * BitmapFont.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import raa.configuration.State.Selection;
+import raa.utility.FileUtility;
+
+import java.awt.*;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+import java.awt.font.TextAttribute;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@code BitmapFont} writes an AngelCode BMFont text descriptor, {@code
+ * atlas.fnt}, beside the pages of each color of a {@link GlyphAtlas}.
+ *
+ * <p>
+ * The metrics of each glyph are noted as it is scheduled: its font, where
+ * its origin lies on the canvas, and its advance. Once the atlas is
+ * finished, each glyph's place on a page comes from the atlas, and its
+ * offsets are where its trimmed image sat on the canvas relative to its
+ * origin, measured down from the top of a line whose baseline is the largest
+ * ascent of the selected fonts. Characters that draw nothing, such as the
+ * space, are listed with their advance and no image.
+ * </p>
+ *
+ * <p>
+ * Kerning pairs are measured from the fonts for pairs of characters drawn in
+ * the same font from the scripts that are kerned by pairs, {@linkplain
+ * #kerned(int) below U+0530}. Each row of pairs is measured with one layout
+ * of a string that alternates its first character with each of the others,
+ * once with kerning and once without.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class BitmapFont
+{
+	/**
+	 * The {@code Metrics} of a glyph.
+	 */
+	private static final class Metrics
+	{
+		/** The sized {@link Font} the glyph is drawn in. */
+		final @NotNull Font font;
+
+		/**
+		 * The x of the origin of the glyph on its canvas, or {@code 0} if it
+		 * draws nothing.
+		 */
+		final float originX;
+
+		/**
+		 * The y of the baseline of the glyph on its canvas, or {@code 0} if
+		 * it draws nothing.
+		 */
+		final float originY;
+
+		/** The advance in pixels. */
+		final float advance;
+
+		/**
+		 * Create a {@link Metrics}.
+		 *
+		 * @param font
+		 *        The sized {@link Font} the glyph is drawn in.
+		 * @param originX
+		 *        The x of the origin of the glyph on its canvas.
+		 * @param originY
+		 *        The y of the baseline of the glyph on its canvas.
+		 * @param advance
+		 *        The advance in pixels.
+		 */
+		Metrics (
+			final @NotNull Font font,
+			final float originX,
+			final float originY,
+			final float advance)
+		{
+			this.font = font;
+			this.originX = originX;
+			this.originY = originY;
+			this.advance = advance;
+		}
+	}
+
+	/**
+	 * The code point after the last that is measured for kerning.
+	 */
+	private static final int kernedLimit = 0x0530;
+
+	/**
+	 * The width in pixels of an atlas page.
+	 */
+	private final int width;
+
+	/**
+	 * The height in pixels of an atlas page.
+	 */
+	private final int height;
+
+	/**
+	 * The number of empty columns and rows after each glyph on a page.
+	 */
+	private final int padding;
+
+	/**
+	 * The {@link Metrics} of each glyph, by code point.
+	 */
+	private final @NotNull Map<Integer, Metrics> metrics = new TreeMap<>();
+
+	/**
+	 * Note the metrics of a glyph.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 * @param font
+	 *        The sized {@link Font} the glyph is drawn in.
+	 * @param placement
+	 *        The {@link GlyphPlacement} of the glyph on its canvas, or {@code
+	 *        null} if it draws nothing.
+	 */
+	synchronized void add (
+		final int codePoint,
+		final @NotNull Font font,
+		final @Nullable GlyphPlacement placement)
+	{
+		final float advance = GlyphOutlineCache.advance(
+			font, new String(Character.toChars(codePoint)));
+		if (placement == null && advance <= 0)
+		{
+			return;
+		}
+		metrics.put(codePoint, new Metrics(
+			font,
+			placement == null ? 0 : placement.widthOffset(),
+			placement == null ? 0 : placement.heightOffset(),
+			advance));
+	}
+
+	/**
+	 * Answer whether pairs of the provided character are measured for
+	 * kerning: those of the scripts, Latin, Greek, Cyrillic and the like,
+	 * that are kerned by pairs rather than shaped in context, except for the
+	 * marks that combine with the character before.
+	 *
+	 * @param codePoint
+	 *        The code point of the character.
+	 * @return {@code true} if its pairs are measured.
+	 */
+	private static boolean kerned (final int codePoint)
+	{
+		if (codePoint >= kernedLimit || codePoint <= ' ')
+		{
+			return false;
+		}
+		final int type = Character.getType(codePoint);
+		return type != Character.NON_SPACING_MARK
+			&& type != Character.ENCLOSING_MARK
+			&& type != Character.COMBINING_SPACING_MARK
+			&& type != Character.CONTROL;
+	}
+
+	/**
+	 * Answer the kerning of every pair of kerned characters drawn in the same
+	 * font.
+	 *
+	 * @return The amount in whole pixels of each pair with any, first
+	 *         character then second, in order.
+	 */
+	private @NotNull Map<Long, Integer> kerning ()
+	{
+		final Map<Font, List<Integer>> byFont = new LinkedHashMap<>();
+		metrics.forEach((codePoint, glyph) ->
+		{
+			if (kerned(codePoint))
+			{
+				byFont.computeIfAbsent(glyph.font, f -> new ArrayList<>())
+					.add(codePoint);
+			}
+		});
+		final Map<Long, Integer> kerning = new TreeMap<>();
+		byFont.forEach((plain, codePoints) ->
+		{
+			final Font kerned = plain.deriveFont(Collections.singletonMap(
+				TextAttribute.KERNING, TextAttribute.KERNING_ON));
+			for (int i = 0; i < codePoints.size(); i++)
+			{
+				// "a b a c a d ..." holds the pairs (a, x) and (x, a) of each
+				// character x from a on.
+				final int count = codePoints.size() - i;
+				final char[] chars = new char[count * 2];
+				for (int j = 0; j < count; j++)
+				{
+					chars[j * 2] = (char) (int) codePoints.get(i);
+					chars[j * 2 + 1] = (char) (int) codePoints.get(i + j);
+				}
+				final float[] with = positions(kerned, chars);
+				final float[] without = positions(plain, chars);
+				if (with == null || without == null)
+				{
+					continue;
+				}
+				for (int c = 0; c + 1 < chars.length; c++)
+				{
+					final int amount = Math.round(
+						(with[c * 2 + 2] - with[c * 2])
+							- (without[c * 2 + 2] - without[c * 2]));
+					if (amount != 0)
+					{
+						kerning.put(
+							((long) chars[c] << 32) | chars[c + 1], amount);
+					}
+				}
+			}
+		});
+		return kerning;
+	}
+
+	/**
+	 * Answer the positions of the glyphs of a line of characters.
+	 *
+	 * @param font
+	 *        The {@link Font} to lay the characters out in.
+	 * @param chars
+	 *        The characters.
+	 * @return The x and y of each glyph and then of the end of the line, or
+	 *         {@code null} if the characters are not one glyph each.
+	 */
+	private static @Nullable float[] positions (
+		final @NotNull Font font,
+		final char[] chars)
+	{
+		final GlyphVector glyphs = font.layoutGlyphVector(
+			PNGGenerator.renderContext,
+			chars,
+			0,
+			chars.length,
+			Font.LAYOUT_LEFT_TO_RIGHT);
+		if (glyphs.getNumGlyphs() != chars.length)
+		{
+			return null;
+		}
+		return glyphs.getGlyphPositions(0, chars.length + 1, null);
+	}
+
+	/**
+	 * Write {@code atlas.fnt} to each directory of the pages of a finished
+	 * {@link GlyphAtlas}.
+	 *
+	 * @param atlas
+	 *        The {@code GlyphAtlas}.
+	 */
+	synchronized void write (final @NotNull GlyphAtlas atlas)
+	{
+		if (metrics.isEmpty())
+		{
+			return;
+		}
+		final Map<Integer, GlyphAtlas.Entry> placed = new HashMap<>();
+		int pages = 0;
+		for (final GlyphAtlas.Entry entry : atlas.placed())
+		{
+			assert entry.placement != null;
+			placed.put(entry.codePoint, entry);
+			pages = Math.max(pages, entry.placement.page + 1);
+		}
+		float ascent = 0;
+		float lineHeight = 0;
+		final Map<Font, Boolean> measured = new HashMap<>();
+		for (final Metrics glyph : metrics.values())
+		{
+			if (measured.put(glyph.font, true) == null)
+			{
+				final LineMetrics line = glyph.font.getLineMetrics(
+					"", PNGGenerator.renderContext);
+				ascent = Math.max(ascent, line.getAscent());
+				lineHeight = Math.max(lineHeight, line.getHeight());
+			}
+		}
+		final int base = Math.round(ascent);
+		final Font first = metrics.values().iterator().next().font;
+		final Map<Long, Integer> kerning = kerning();
+		for (final String directory : atlas.directories())
+		{
+			final String fileName = directory + File.separator + "atlas.fnt";
+			try
+			{
+				final OutputFiles.Buffer buffer = OutputFiles.buffer();
+				final PrintWriter out = buffer.text;
+				out.println("info face=\"" + first.getFamily() + "\""
+					+ " size=" + first.getSize()
+					+ " bold=" + (first.isBold() ? 1 : 0)
+					+ " italic=" + (first.isItalic() ? 1 : 0)
+					+ " charset=\"\" unicode=1 stretchH=100 smooth=1 aa=1"
+					+ " padding=0,0,0,0"
+					+ " spacing=" + padding + "," + padding);
+				out.println("common lineHeight=" + Math.round(lineHeight)
+					+ " base=" + base
+					+ " scaleW=" + width
+					+ " scaleH=" + height
+					+ " pages=" + pages
+					+ " packed=0");
+				for (int page = 0; page < pages; page++)
+				{
+					out.println("page id=" + page + " file=\""
+						+ new File(FileUtility.createAtlasFileName(
+							directory, page)).getName()
+						+ "\"");
+				}
+				out.println("chars count=" + metrics.size());
+				metrics.forEach((codePoint, glyph) ->
+				{
+					final GlyphAtlas.Entry entry = placed.get(codePoint);
+					final StringBuilder line = new StringBuilder("char id=")
+						.append(codePoint);
+					if (entry == null || entry.placement == null)
+					{
+						line.append(" x=0 y=0 width=0 height=0")
+							.append(" xoffset=0 yoffset=0");
+					}
+					else
+					{
+						line.append(" x=").append(entry.placement.x)
+							.append(" y=").append(entry.placement.y)
+							.append(" width=").append(entry.bounds.width)
+							.append(" height=").append(entry.bounds.height)
+							.append(" xoffset=").append(Math.round(
+								entry.bounds.x - glyph.originX))
+							.append(" yoffset=").append(Math.round(
+								entry.bounds.y - glyph.originY + base));
+					}
+					out.println(line
+						.append(" xadvance=").append(Math.round(glyph.advance))
+						.append(" page=").append(
+							entry == null || entry.placement == null
+								? 0
+								: entry.placement.page)
+						.append(" chnl=15"));
+				});
+				out.println("kernings count=" + kerning.size());
+				kerning.forEach((pair, amount) ->
+					out.println("kerning first=" + (pair >>> 32)
+						+ " second=" + (pair & 0xFFFFFFFFL)
+						+ " amount=" + amount));
+				OutputFiles.write(fileName, buffer);
+			}
+			catch (IOException ex)
+			{
+				System.err.println("Could not write " + fileName);
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Create a {@link BitmapFont}.
+	 *
+	 * @param selection
+	 *        The {@link Selection} whose atlas the descriptor is written for.
+	 */
+	BitmapFont (final @NotNull Selection selection)
+	{
+		this.width = selection.atlasWidth();
+		this.height = selection.atlasHeight();
+		this.padding = selection.atlasPadding();
+	}
+}
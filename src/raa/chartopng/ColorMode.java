@@ -0,0 +1,105 @@
+/*
+ * ColorMode.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@code ColorMode} is an enum that describes where the colors of a
+ * selection are applied to its glyphs.
+ *
+ * @author Richard Arriaga
+ */
+public enum ColorMode
+{
+	/**
+	 * Draw each glyph in each color, and over each background color, and
+	 * write a PNG of each.
+	 */
+	BAKED("baked"),
+
+	/**
+	 * Write one 8-bit grayscale mask of each glyph's coverage, and a palette
+	 * of the colors for the renderer to tint the masks with. The number of
+	 * files does not grow with the number of colors.
+	 */
+	PALETTE("palette");
+
+	/**
+	 * The name that takes the place of a color's in the directories of the
+	 * masks written in {@link #PALETTE} mode.
+	 */
+	static final String maskName = "mask";
+
+	/**
+	 * The name of the {@link ColorMode} as used in the generator plan.
+	 */
+	final String name;
+
+	/**
+	 * Create a {@link ColorMode}.
+	 *
+	 * @param name
+	 *        The name of the {@code ColorMode}.
+	 */
+	ColorMode (final String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * A map that provides a lookup from the {@link ColorMode#name} to the
+	 * {@link ColorMode}.
+	 */
+	private static Map<String, ColorMode> modeMap = new HashMap<>();
+	static
+	{
+		for (ColorMode mode : ColorMode.values())
+		{
+			modeMap.put(mode.name, mode);
+		}
+	}
+
+	/**
+	 * Answer the {@link ColorMode} for the given name.
+	 *
+	 * @param modeName
+	 *        The name of the color mode to get.
+	 * @return A {@code ColorMode}, or {@code null} if there is none.
+	 */
+	public static ColorMode colorMode (final @NotNull String modeName)
+	{
+		return modeMap.get(modeName);
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * ColorPair.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@code ColorPair} is a foreground {@link NamedColor} drawn over an opaque
+ * background {@code NamedColor}, with the blend of the two precomputed for
+ * every coverage.
+ *
+ * @author Richard Arriaga
+ */
+final class ColorPair
+{
+	/**
+	 * The {@link NamedColor} glyphs are drawn in.
+	 */
+	private final @NotNull NamedColor foreground;
+
+	/**
+	 * Answer the {@link NamedColor} glyphs are drawn in.
+	 *
+	 * @return A {@code NamedColor}.
+	 */
+	@NotNull NamedColor foreground ()
+	{
+		return foreground;
+	}
+
+	/**
+	 * The {@link NamedColor} that fills the canvas beneath the glyphs. Its
+	 * alpha is ignored.
+	 */
+	private final @NotNull NamedColor background;
+
+	/**
+	 * Answer the {@link NamedColor} that fills the canvas beneath the
+	 * glyphs.
+	 *
+	 * @return A {@code NamedColor}.
+	 */
+	@NotNull NamedColor background ()
+	{
+		return background;
+	}
+
+	/**
+	 * The opaque RGB of the {@link #foreground} blended over the {@link
+	 * #background} at each coverage from {@code 0} to {@code 255}.
+	 */
+	private final int[] blend = new int[256];
+
+	/**
+	 * Answer the opaque RGB of the foreground blended over the background at
+	 * each coverage from {@code 0} to {@code 255}.
+	 *
+	 * @return An {@code int} array of 256 RGB values.
+	 */
+	int[] blend ()
+	{
+		return blend;
+	}
+
+	/**
+	 * Answer the name of the directory component of this {@link ColorPair}.
+	 *
+	 * @return A String.
+	 */
+	@NotNull String name ()
+	{
+		return foreground.name() + "_on_" + background.name();
+	}
+
+	/**
+	 * Create a {@link ColorPair}.
+	 *
+	 * @param foreground
+	 *        The {@link NamedColor} glyphs are drawn in.
+	 * @param background
+	 *        The {@code NamedColor} that fills the canvas beneath the glyphs.
+	 */
+	ColorPair (
+		final @NotNull NamedColor foreground,
+		final @NotNull NamedColor background)
+	{
+		this.foreground = foreground;
+		this.background = background;
+		final int alpha = foreground.getAlpha();
+		for (int c = 0; c < blend.length; c++)
+		{
+			final int a = (c * alpha + 127) / 255;
+			blend[c] =
+				(mix(background.getRed(), foreground.getRed(), a) << 16)
+				| (mix(background.getGreen(), foreground.getGreen(), a) << 8)
+				| mix(background.getBlue(), foreground.getBlue(), a);
+		}
+	}
+
+	/**
+	 * Answer one channel of a color drawn over another.
+	 *
+	 * @param under
+	 *        The channel of the color beneath.
+	 * @param over
+	 *        The channel of the color drawn.
+	 * @param alpha
+	 *        The alpha the color is drawn with, from {@code 0} to {@code 255}.
+	 * @return The channel, from {@code 0} to {@code 255}.
+	 */
+	static int mix (final int under, final int over, final int alpha)
+	{
+		return (under * (255 - alpha) + over * alpha + 127) / 255;
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * DistanceField.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@code DistanceField} turns a high resolution {@link GlyphMask} into a
+ * signed distance field at a whole fraction of its size.
+ *
+ * <p>
+ * A pixel is inside the glyph when its coverage is at least half. The
+ * squared distance from every pixel to the nearest pixel on the other side
+ * of the outline is found with the linear time Euclidean distance transform
+ * of Felzenszwalb and Huttenlocher, one pass down the columns and one along
+ * the rows. The signed distances are then averaged over each block of the
+ * enlarged canvas that makes up one pixel of the result.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class DistanceField
+{
+	/**
+	 * The squared distance of a pixel with no feature pixel in its line.
+	 */
+	static final float far = 1e20f;
+
+	/**
+	 * Answer the signed distance field of the high resolution {@link
+	 * GlyphMask}, reduced by the provided factor. The outline is at {@code
+	 * 128}, the inside is above it, and {@code spread} result pixels from the
+	 * outline reach {@code 0} or {@code 255}.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask}, {@code scale} times the size of the
+	 *        result.
+	 * @param scale
+	 *        The factor the result is smaller by.
+	 * @param spread
+	 *        The distance in result pixels that spans half the range.
+	 * @return A {@code GlyphMask}.
+	 */
+	static @NotNull GlyphMask distanceField (
+		final @NotNull GlyphMask mask,
+		final int scale,
+		final float spread)
+	{
+		final int width = mask.width();
+		final int height = mask.height();
+		final byte[] coverage = mask.coverage();
+		final float[] toInside = new float[width * height];
+		final float[] toOutside = new float[width * height];
+		for (int i = 0; i < coverage.length; i++)
+		{
+			final boolean inside = (coverage[i] & 0xFF) >= 128;
+			toInside[i] = inside ? 0 : far;
+			toOutside[i] = inside ? far : 0;
+		}
+		squaredDistances(toInside, width, height);
+		squaredDistances(toOutside, width, height);
+
+		final int targetWidth = width / scale;
+		final int targetHeight = height / scale;
+		final float[] sums = new float[targetWidth * targetHeight];
+		for (int y = 0; y < height; y++)
+		{
+			final int row = (y / scale) * targetWidth;
+			for (int x = 0; x < width; x++)
+			{
+				final int i = y * width + x;
+				// Measured from pixel centers, the outline is half a pixel
+				// beyond the nearest pixel on the other side.
+				sums[row + x / scale] += toOutside[i] > 0
+					? (float) Math.sqrt(toOutside[i]) - 0.5f
+					: 0.5f - (float) Math.sqrt(toInside[i]);
+			}
+		}
+
+		final float toByte = 127.5f / (spread * scale * scale * scale);
+		final byte[] field = new byte[sums.length];
+		for (int i = 0; i < sums.length; i++)
+		{
+			field[i] = (byte) Math.max(
+				0,
+				Math.min(255, Math.round(127.5f + sums[i] * toByte)));
+		}
+		return new GlyphMask(targetWidth, targetHeight, field);
+	}
+
+	/**
+	 * Replace each value of a grid of squared distances to the nearest
+	 * feature pixel, {@code 0} at features and {@link #far} elsewhere, with
+	 * the squared Euclidean distance to the nearest feature pixel.
+	 *
+	 * @param grid
+	 *        The row-major grid.
+	 * @param width
+	 *        The number of columns of the grid.
+	 * @param height
+	 *        The number of rows of the grid.
+	 */
+	static void squaredDistances (
+		final float[] grid,
+		final int width,
+		final int height)
+	{
+		final int length = Math.max(width, height);
+		final float[] line = new float[length];
+		final float[] distances = new float[length];
+		final int[] parabolas = new int[length];
+		final float[] boundaries = new float[length + 1];
+		for (int x = 0; x < width; x++)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				line[y] = grid[y * width + x];
+			}
+			transform(line, height, distances, parabolas, boundaries);
+			for (int y = 0; y < height; y++)
+			{
+				grid[y * width + x] = distances[y];
+			}
+		}
+		for (int y = 0; y < height; y++)
+		{
+			System.arraycopy(grid, y * width, line, 0, width);
+			transform(line, width, distances, parabolas, boundaries);
+			System.arraycopy(distances, 0, grid, y * width, width);
+		}
+	}
+
+	/**
+	 * Compute the one dimensional squared distance transform of a sampled
+	 * function as the lower envelope of the parabolas rooted at each sample.
+	 *
+	 * @param f
+	 *        The sampled function.
+	 * @param n
+	 *        The number of samples.
+	 * @param distances
+	 *        The array that receives the transform.
+	 * @param parabolas
+	 *        Scratch space for the samples whose parabolas form the
+	 *        envelope, at least {@code n} long.
+	 * @param boundaries
+	 *        Scratch space for where each parabola of the envelope begins,
+	 *        at least {@code n + 1} long.
+	 */
+	private static void transform (
+		final float[] f,
+		final int n,
+		final float[] distances,
+		final int[] parabolas,
+		final float[] boundaries)
+	{
+		int k = 0;
+		parabolas[0] = 0;
+		boundaries[0] = Float.NEGATIVE_INFINITY;
+		boundaries[1] = Float.POSITIVE_INFINITY;
+		for (int q = 1; q < n; q++)
+		{
+			float s = intersection(f, parabolas[k], q);
+			while (s <= boundaries[k])
+			{
+				k--;
+				s = intersection(f, parabolas[k], q);
+			}
+			k++;
+			parabolas[k] = q;
+			boundaries[k] = s;
+			boundaries[k + 1] = Float.POSITIVE_INFINITY;
+		}
+		k = 0;
+		for (int q = 0; q < n; q++)
+		{
+			while (boundaries[k + 1] < q)
+			{
+				k++;
+			}
+			final int p = parabolas[k];
+			distances[q] = (float) (q - p) * (q - p) + f[p];
+		}
+	}
+
+	/**
+	 * Answer where the parabola rooted at sample {@code q} drops below the
+	 * one rooted at sample {@code p}.
+	 *
+	 * @param f
+	 *        The sampled function.
+	 * @param p
+	 *        The earlier sample.
+	 * @param q
+	 *        The later sample.
+	 * @return The position of the intersection.
+	 */
+	private static float intersection (
+		final float[] f,
+		final int p,
+		final int q)
+	{
+		return (float) (((double) f[q] + (double) q * q - f[p] - (double) p * p)
+			/ (2.0 * (q - p)));
+	}
+
+	// Should never be instantiated as it just provides static methods.
+	private DistanceField ()
+	{
+		// No implementation.
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * EffectKind.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+import org.jetbrains.annotations.NotNull;
+import raa.configuration.State.Effect;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@code EffectKind} is an enum of the effects that can be drawn beneath a
+ * glyph. Each computes a coverage layer from the {@link GlyphMask} of the
+ * glyph, which is then drawn in the color of its {@link Effect}.
+ *
+ * @author Richard Arriaga
+ */
+public enum EffectKind
+{
+	/**
+	 * The glyph grown by the radius with round corners.
+	 */
+	OUTLINE("outline")
+	{
+		@Override
+		@NotNull GlyphMask layer (
+			final @NotNull GlyphMask glyph,
+			final @NotNull Effect effect)
+		{
+			return MaskFilters.dilate(glyph, effect.radius());
+		}
+	},
+
+	/**
+	 * The glyph blurred by the radius and moved by the offset.
+	 */
+	SHADOW("shadow")
+	{
+		@Override
+		@NotNull GlyphMask layer (
+			final @NotNull GlyphMask glyph,
+			final @NotNull Effect effect)
+		{
+			return MaskFilters.shift(
+				MaskFilters.blur(glyph, effect.radius()),
+				effect.offsetX(),
+				effect.offsetY());
+		}
+	},
+
+	/**
+	 * The glyph blurred by the radius and doubled in strength, so that the
+	 * glow is solid where it meets the glyph.
+	 */
+	GLOW("glow")
+	{
+		@Override
+		@NotNull GlyphMask layer (
+			final @NotNull GlyphMask glyph,
+			final @NotNull Effect effect)
+		{
+			return MaskFilters.strengthen(
+				MaskFilters.blur(glyph, effect.radius()), 2);
+		}
+	};
+
+	/**
+	 * Answer the coverage layer of this {@link EffectKind} for a glyph.
+	 *
+	 * @param glyph
+	 *        The {@link GlyphMask} of the glyph.
+	 * @param effect
+	 *        The {@link Effect} that holds the parameters.
+	 * @return A {@code GlyphMask} of the same size as {@code glyph}.
+	 */
+	abstract @NotNull GlyphMask layer (
+		final @NotNull GlyphMask glyph,
+		final @NotNull Effect effect);
+
+	/**
+	 * The name of the {@link EffectKind} as used in the generator plan.
+	 */
+	final String name;
+
+	/**
+	 * Create an {@link EffectKind}.
+	 *
+	 * @param name
+	 *        The name of the {@code EffectKind}.
+	 */
+	EffectKind (final String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * A map that provides a lookup from the {@link EffectKind#name} to the
+	 * {@link EffectKind}.
+	 */
+	private static Map<String, EffectKind> kindMap = new HashMap<>();
+	static
+	{
+		for (EffectKind kind : EffectKind.values())
+		{
+			kindMap.put(kind.name, kind);
+		}
+	}
+
+	/**
+	 * Answer the {@link EffectKind} for the given name.
+	 *
+	 * @param name
+	 *        The name of the {@code EffectKind} to retrieve.
+	 * @return An {@code EffectKind} if the name is valid, {@code null}
+	 *         otherwise.
+	 */
+	public static EffectKind effectKind (final @NotNull String name)
+	{
+		return kindMap.get(name);
+	}
+}
@@ -0,0 +1,275 @@
+/*
+ * FontAutosizer.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import raa.configuration.State.Selection;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * A {@code FontAutosizer} answers the largest point size at which glyphs fit
+ * on a canvas of a given pixel width and pixel height.
+ *
+ * <p>
+ * The fit is determined analytically from the {@linkplain
+ * GlyphOutlineCache#pixelBounds(Font, String) pixel bounds} of the glyphs'
+ * {@linkplain GlyphOutlineCache cached outlines}, scaled to each candidate
+ * size, rather than by rendering and scanning images. The candidate sizes
+ * are binary searched so that only O(log n) measurements are taken per
+ * glyph, and each measurement scales a rectangle rather than laying out
+ * the glyph again.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class FontAutosizer
+{
+	/**
+	 * The point size at which glyphs are measured to find which glyphs of a
+	 * {@link Font} limit its fitted size.
+	 */
+	private static final float referenceSize = 100f;
+
+	/**
+	 * Answer the largest point size at which the single-character {@code
+	 * String} fits on the canvas.
+	 *
+	 * @param font
+	 *        The base {@link Font} for the character.
+	 * @param fontStyle
+	 *        The {@linkplain Font#getStyle() style} to derive the font with.
+	 * @param text
+	 *        The single-character {@code String} to fit.
+	 * @param pixelHeight
+	 *        The total height in pixels of the PNG.
+	 * @param pixelWidth
+	 *        The total width in pixels of the PNG.
+	 * @param margin
+	 *        The number of pixels to keep clear on every side of the glyph.
+	 * @return A point size greater than zero.
+	 */
+	static int fitFontSize (
+		final @NotNull Font font,
+		final int fontStyle,
+		final @NotNull String text,
+		final int pixelHeight,
+		final int pixelWidth,
+		final int margin)
+	{
+		final List<String> texts = new ArrayList<>(1);
+		texts.add(text);
+		return fitFontSize(
+			font, fontStyle, texts, pixelHeight, pixelWidth, margin);
+	}
+
+	/**
+	 * Answer the largest point size at which every one of the
+	 * single-character {@code String}s fits on the canvas.
+	 *
+	 * <p>
+	 * Glyph bounds scale with the point size, so the glyphs that are the
+	 * widest and the tallest at the {@link #referenceSize} are the glyphs that
+	 * limit every other size. Only those glyphs are measured by the search.
+	 * </p>
+	 *
+	 * @param font
+	 *        The base {@link Font} for the characters.
+	 * @param fontStyle
+	 *        The {@linkplain Font#getStyle() style} to derive the font with.
+	 * @param texts
+	 *        The single-character {@code String}s to fit.
+	 * @param pixelHeight
+	 *        The total height in pixels of the PNG.
+	 * @param pixelWidth
+	 *        The total width in pixels of the PNG.
+	 * @param margin
+	 *        The number of pixels to keep clear on every side of the glyph.
+	 * @return A point size greater than zero.
+	 */
+	static int fitFontSize (
+		final @NotNull Font font,
+		final int fontStyle,
+		final @NotNull List<String> texts,
+		final int pixelHeight,
+		final int pixelWidth,
+		final int margin)
+	{
+		final Font reference = font.deriveFont(fontStyle, referenceSize);
+		String widest = null;
+		String tallest = null;
+		int maxWidth = 0;
+		int maxHeight = 0;
+		for (final String text : texts)
+		{
+			final Rectangle bounds = pixelBounds(reference, text);
+			if (bounds.width > maxWidth)
+			{
+				maxWidth = bounds.width;
+				widest = text;
+			}
+			if (bounds.height > maxHeight)
+			{
+				maxHeight = bounds.height;
+				tallest = text;
+			}
+		}
+		final List<String> limiting = new ArrayList<>(2);
+		if (widest != null)
+		{
+			limiting.add(widest);
+		}
+		if (tallest != null && !tallest.equals(widest))
+		{
+			limiting.add(tallest);
+		}
+
+		// Everything fits at a size of one point or nothing fits at all;
+		// either way one point is the answer of last resort.
+		int low = 1;
+		int high = Math.max(pixelHeight, pixelWidth) << 2;
+		while (low < high)
+		{
+			final int candidate = (low + high + 1) >>> 1;
+			if (fits(
+				font.deriveFont(fontStyle, (float) candidate),
+				limiting,
+				pixelHeight - (margin << 1),
+				pixelWidth - (margin << 1)))
+			{
+				low = candidate;
+			}
+			else
+			{
+				high = candidate - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Answer the fitted point size of each {@link Font} in the {@link
+	 * Selection}, considering only the characters that the font will be used
+	 * to render.
+	 *
+	 * @param selection
+	 *        The {@code Selection} to fit.
+	 * @return A {@link Map} from each selected {@code Font} to its point size.
+	 */
+	static @NotNull Map<Font, Integer> fitFontSizes (
+		final @NotNull Selection selection)
+	{
+		final Map<Font, List<String>> textsByFont = new HashMap<>();
+		selection.ranges().forEach(range ->
+			IntStream.range(range.start(), range.end()).forEach(i ->
+			{
+				final Optional<Font> optional = selection.fontFor(i);
+				optional.ifPresent(font ->
+					textsByFont
+						.computeIfAbsent(font, k -> new ArrayList<>())
+						.add(new String(Character.toChars(i))));
+			}));
+		final Map<Font, Integer> sizes = new HashMap<>();
+		textsByFont.forEach((font, texts) ->
+			sizes.put(
+				font,
+				fitFontSize(
+					font,
+					selection.fontStyle(),
+					texts,
+					selection.pixelHeight(),
+					selection.pixelWidth(),
+					selection.autoSizeMargin())));
+		return sizes;
+	}
+
+	/**
+	 * Answer whether all of the single-character {@code String}s fit within
+	 * the provided dimensions when rendered in the provided {@link Font}.
+	 *
+	 * @param font
+	 *        The derived {@code Font} to measure.
+	 * @param texts
+	 *        The single-character {@code String}s to measure.
+	 * @param height
+	 *        The available height in pixels.
+	 * @param width
+	 *        The available width in pixels.
+	 * @return {@code true} if they all fit; {@code false} otherwise.
+	 */
+	private static boolean fits (
+		final @NotNull Font font,
+		final @NotNull List<String> texts,
+		final int height,
+		final int width)
+	{
+		for (final String text : texts)
+		{
+			final Rectangle bounds = pixelBounds(font, text);
+			if (bounds.width > width || bounds.height > height)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Answer the pixel bounds of the single-character {@code String} when
+	 * rendered at the origin, scaled from its {@linkplain GlyphOutlineCache
+	 * cached outline}.
+	 *
+	 * @param font
+	 *        The derived {@link Font} to measure.
+	 * @param text
+	 *        The single-character {@code String} to measure.
+	 * @return A {@link Rectangle}.
+	 */
+	private static @NotNull Rectangle pixelBounds (
+		final @NotNull Font font,
+		final @NotNull String text)
+	{
+		return GlyphOutlineCache.pixelBounds(font, text);
+	}
+
+	// Should never be instantiated as it just provides static methods.
+	private FontAutosizer ()
+	{
+		// No implementation.
+	}
+}
@@ -0,0 +1,807 @@
+/*
+ * FreeTypeRasterizer.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A {@code FreeTypeRasterizer} is a {@link GlyphRasterizer} that renders
+ * glyphs with the system {@code libfreetype} through the Foreign Function &amp;
+ * Memory API.
+ *
+ * <p>
+ * Every thread gets its own {@code FT_Library}, its own {@code FT_Face} for
+ * each font file, and its own off-heap canvas, so threads never share any
+ * FreeType state. The hinted outline of each glyph is moved onto its place on
+ * the canvas and rendered straight into the canvas {@link MemorySegment}.
+ * The faces, the library, and the memory of a thread are released when the
+ * thread ends or the run does.
+ * </p>
+ *
+ * <p>
+ * The {@link RenderingHints} decide how FreeType renders: with antialiasing
+ * off a glyph is hinted and rendered at one bit per pixel, and with
+ * fractional metrics on its outline is left unhinted.
+ * </p>
+ *
+ * <p>
+ * FreeType needs the file a {@link Font} came from, which Java2D does not
+ * reveal, so the font files in the usual system and user font directories are
+ * matched to fonts by their {@linkplain Font#getFontName() face names}. Glyphs
+ * of fonts without a matching file, and all glyphs when the library is not
+ * installed, are rendered by the {@link Java2DRasterizer} instead.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class FreeTypeRasterizer
+implements GlyphRasterizer
+{
+	/**
+	 * The names under which {@code libfreetype} may be installed.
+	 */
+	private static final String[] libraryNames = {
+		"libfreetype.so.6",
+		"libfreetype.so",
+		"libfreetype.6.dylib",
+		"freetype"};
+
+	/**
+	 * The {@link SymbolLookup} of {@code libfreetype}, or {@code null} if the
+	 * library is not installed.
+	 */
+	private static final @Nullable SymbolLookup freeType = lookupFreeType();
+
+	/**
+	 * Answer the {@link SymbolLookup} of {@code libfreetype}.
+	 *
+	 * @return A {@code SymbolLookup}, or {@code null} if the library is not
+	 *         installed.
+	 */
+	private static @Nullable SymbolLookup lookupFreeType ()
+	{
+		for (final String name : libraryNames)
+		{
+			try
+			{
+				return SymbolLookup.libraryLookup(name, Arena.global());
+			}
+			catch (final IllegalArgumentException e)
+			{
+				// Try the next name.
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Answer whether {@code libfreetype} is installed on this host.
+	 *
+	 * @return {@code true} if it is; {@code false} otherwise.
+	 */
+	static boolean isAvailable ()
+	{
+		return freeType != null;
+	}
+
+	/**
+	 * Answer a {@link MethodHandle} that calls the named FreeType function.
+	 *
+	 * @param name
+	 *        The name of the function.
+	 * @param descriptor
+	 *        The {@link FunctionDescriptor} of the function.
+	 * @return A {@code MethodHandle}, or {@code null} if the library is not
+	 *         installed.
+	 */
+	private static @Nullable MethodHandle downcall (
+		final @NotNull String name,
+		final @NotNull FunctionDescriptor descriptor)
+	{
+		final SymbolLookup lookup = freeType;
+		if (lookup == null)
+		{
+			return null;
+		}
+		return Linker.nativeLinker().downcallHandle(
+			lookup.find(name).orElseThrow(), descriptor);
+	}
+
+	/** {@code FT_Error FT_Init_FreeType (FT_Library*)} */
+	private static final MethodHandle initFreeType = downcall(
+		"FT_Init_FreeType",
+		FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+
+	/** {@code FT_Error FT_Done_FreeType (FT_Library)} */
+	private static final MethodHandle doneFreeType = downcall(
+		"FT_Done_FreeType",
+		FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+
+	/** {@code FT_Error FT_New_Face (FT_Library, char*, FT_Long, FT_Face*)} */
+	private static final MethodHandle newFace = downcall(
+		"FT_New_Face",
+		FunctionDescriptor.of(
+			ValueLayout.JAVA_INT,
+			ValueLayout.ADDRESS,
+			ValueLayout.ADDRESS,
+			ValueLayout.JAVA_LONG,
+			ValueLayout.ADDRESS));
+
+	/** {@code FT_Error FT_Done_Face (FT_Face)} */
+	private static final MethodHandle doneFace = downcall(
+		"FT_Done_Face",
+		FunctionDescriptor.of(ValueLayout.JAVA_INT, ValueLayout.ADDRESS));
+
+	/**
+	 * {@code FT_Error FT_Set_Char_Size (FT_Face, FT_F26Dot6, FT_F26Dot6,
+	 * FT_UInt, FT_UInt)}
+	 */
+	private static final MethodHandle setCharSize = downcall(
+		"FT_Set_Char_Size",
+		FunctionDescriptor.of(
+			ValueLayout.JAVA_INT,
+			ValueLayout.ADDRESS,
+			ValueLayout.JAVA_LONG,
+			ValueLayout.JAVA_LONG,
+			ValueLayout.JAVA_INT,
+			ValueLayout.JAVA_INT));
+
+	/** {@code FT_Error FT_Load_Char (FT_Face, FT_ULong, FT_Int32)} */
+	private static final MethodHandle loadChar = downcall(
+		"FT_Load_Char",
+		FunctionDescriptor.of(
+			ValueLayout.JAVA_INT,
+			ValueLayout.ADDRESS,
+			ValueLayout.JAVA_LONG,
+			ValueLayout.JAVA_INT));
+
+	/** {@code void FT_Outline_Translate (FT_Outline*, FT_Pos, FT_Pos)} */
+	private static final MethodHandle outlineTranslate = downcall(
+		"FT_Outline_Translate",
+		FunctionDescriptor.ofVoid(
+			ValueLayout.ADDRESS,
+			ValueLayout.JAVA_LONG,
+			ValueLayout.JAVA_LONG));
+
+	/** {@code void FT_Outline_Transform (FT_Outline*, FT_Matrix*)} */
+	private static final MethodHandle outlineTransform = downcall(
+		"FT_Outline_Transform",
+		FunctionDescriptor.ofVoid(ValueLayout.ADDRESS, ValueLayout.ADDRESS));
+
+	/** {@code FT_Error FT_Outline_Embolden (FT_Outline*, FT_Pos)} */
+	private static final MethodHandle outlineEmbolden = downcall(
+		"FT_Outline_Embolden",
+		FunctionDescriptor.of(
+			ValueLayout.JAVA_INT,
+			ValueLayout.ADDRESS,
+			ValueLayout.JAVA_LONG));
+
+	/**
+	 * {@code FT_Error FT_Outline_Get_Bitmap (FT_Library, FT_Outline*,
+	 * FT_Bitmap*)}
+	 */
+	private static final MethodHandle outlineGetBitmap = downcall(
+		"FT_Outline_Get_Bitmap",
+		FunctionDescriptor.of(
+			ValueLayout.JAVA_INT,
+			ValueLayout.ADDRESS,
+			ValueLayout.ADDRESS,
+			ValueLayout.ADDRESS));
+
+	/** The byte offset of {@code FT_FaceRec.style_flags}. */
+	private static final long faceStyleFlags = 24;
+
+	/** The byte offset of {@code FT_FaceRec.glyph}. */
+	private static final long faceGlyph = 152;
+
+	/** The byte size of {@code FT_FaceRec} up to and including the glyph. */
+	private static final long faceSize = 160;
+
+	/** The byte offset of {@code FT_GlyphSlotRec.outline}. */
+	private static final long slotOutline = 200;
+
+	/** The byte size of {@code FT_GlyphSlotRec} through the outline. */
+	private static final long slotSize = 240;
+
+	/** The byte size of {@code FT_Bitmap}. */
+	private static final long bitmapSize = 40;
+
+	/** {@code FT_STYLE_FLAG_ITALIC} */
+	private static final long styleItalic = 1;
+
+	/** {@code FT_STYLE_FLAG_BOLD} */
+	private static final long styleBold = 2;
+
+	/** {@code FT_PIXEL_MODE_MONO} */
+	private static final byte pixelModeMono = 1;
+
+	/** {@code FT_PIXEL_MODE_GRAY} */
+	private static final byte pixelModeGray = 2;
+
+	/** {@code FT_LOAD_NO_HINTING} */
+	private static final int loadNoHinting = 1 << 1;
+
+	/** {@code FT_LOAD_NO_BITMAP}; embedded bitmaps have no outline to move. */
+	private static final int loadNoBitmap = 1 << 3;
+
+	/** {@code FT_LOAD_TARGET_MONO}, which hints for one bit per pixel. */
+	private static final int loadTargetMono = 2 << 16;
+
+	/**
+	 * The horizontal shear, in 16.16 fixed point, that obliques the upright
+	 * face of a font that is derived as italic.
+	 */
+	private static final long obliqueShear = 0x0366A;
+
+	/**
+	 * The {@link GlyphRasterizer} used when FreeType cannot render a glyph.
+	 */
+	private final @NotNull GlyphRasterizer fallback = new Java2DRasterizer();
+
+	/**
+	 * The FreeType state owned by a single thread.
+	 *
+	 * <p>
+	 * Only its thread renders with it, but it may be {@linkplain #close()
+	 * closed} by whichever thread ends the run, so its {@link Arena} is
+	 * shared rather than confined.
+	 * </p>
+	 */
+	private static final class ThreadState
+	{
+		/** The {@link Arena} that owns the off-heap memory of the thread. */
+		final Arena arena = Arena.ofShared();
+
+		/** Whether the state has been {@linkplain #close() closed}. */
+		volatile boolean closed = false;
+
+		/** The {@code FT_Library} of the thread. */
+		final MemorySegment library;
+
+		/**
+		 * The {@code FT_Face}s of the thread keyed by file and face index.
+		 * The thread opens them and the thread that ends the run may {@link
+		 * #close()} them, so they are only touched while holding the lock of
+		 * the state.
+		 */
+		final Map<String, MemorySegment> faces = new HashMap<>();
+
+		/** The {@code FT_Bitmap} that describes the {@link #canvas}. */
+		final MemorySegment bitmap = arena.allocate(bitmapSize, 8);
+
+		/** The {@code FT_Matrix} used to oblique italic glyphs. */
+		final MemorySegment matrix = arena.allocate(32, 8);
+
+		/** The off-heap canvas that glyphs are rendered into. */
+		MemorySegment canvas = MemorySegment.NULL;
+
+		/**
+		 * Answer the off-heap canvas, cleared and large enough for the
+		 * requested number of pixels.
+		 *
+		 * @param size
+		 *        The number of pixels.
+		 * @return A {@link MemorySegment}.
+		 */
+		MemorySegment canvas (final long size)
+		{
+			if (canvas.byteSize() < size)
+			{
+				canvas = arena.allocate(size, 8);
+			}
+			final MemorySegment slice = canvas.asSlice(0, size);
+			slice.fill((byte) 0);
+			return slice;
+		}
+
+		/**
+		 * Answer the {@code FT_Face} of the font file, opening it the first
+		 * time.
+		 *
+		 * @param file
+		 *        The {@link FaceFile} to open.
+		 * @return A {@link MemorySegment}, or {@code null} if FreeType could
+		 *         not open the file.
+		 * @throws Throwable
+		 *         If the downcall fails.
+		 */
+		synchronized @Nullable MemorySegment face (
+			final @NotNull FaceFile file)
+		throws Throwable
+		{
+			final String key = file.path + '#' + file.index;
+			MemorySegment face = faces.get(key);
+			if (face == null && !faces.containsKey(key))
+			{
+				final byte[] path = file.path.getBytes(StandardCharsets.UTF_8);
+				final MemorySegment cPath = arena.allocate(path.length + 1);
+				MemorySegment.copy(
+					path, 0, cPath, ValueLayout.JAVA_BYTE, 0, path.length);
+				cPath.set(ValueLayout.JAVA_BYTE, path.length, (byte) 0);
+				final MemorySegment handle =
+					arena.allocate(ValueLayout.ADDRESS);
+				final int error = (int) newFace.invokeExact(
+					library, cPath, (long) file.index, handle);
+				face = error == 0
+					? handle.get(ValueLayout.ADDRESS, 0).reinterpret(faceSize)
+					: null;
+				faces.put(key, face);
+			}
+			return face;
+		}
+
+		/**
+		 * Release the faces and the library of the thread and free its
+		 * off-heap memory. The state must not be used afterward.
+		 */
+		synchronized void close ()
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+			try
+			{
+				for (final MemorySegment face : faces.values())
+				{
+					if (face != null)
+					{
+						final int error = (int) doneFace.invokeExact(face);
+						assert error == 0;
+					}
+				}
+				final int error = (int) doneFreeType.invokeExact(library);
+				assert error == 0;
+			}
+			catch (final RuntimeException e)
+			{
+				throw e;
+			}
+			catch (final Throwable e)
+			{
+				throw new IllegalStateException(e);
+			}
+			finally
+			{
+				faces.clear();
+				arena.close();
+			}
+		}
+
+		/**
+		 * Create the FreeType state of the current thread.
+		 */
+		ThreadState ()
+		{
+			try
+			{
+				final MemorySegment handle =
+					arena.allocate(ValueLayout.ADDRESS);
+				final int error = (int) initFreeType.invokeExact(handle);
+				if (error != 0)
+				{
+					throw new IllegalStateException(
+						"FT_Init_FreeType failed: " + error);
+				}
+				library = handle.get(ValueLayout.ADDRESS, 0);
+			}
+			catch (final RuntimeException e)
+			{
+				throw e;
+			}
+			catch (final Throwable e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * The {@link ThreadState} of each thread.
+	 */
+	private static final ThreadLocal<ThreadState> threadState =
+		new ThreadLocal<>();
+
+	/**
+	 * Every {@link ThreadState} not yet {@linkplain ThreadState#close()
+	 * closed}.
+	 */
+	private static final Set<ThreadState> openStates =
+		ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Answer the {@link ThreadState} of the current thread, creating it if
+	 * the thread has none or its state was released.
+	 *
+	 * @return A {@code ThreadState}.
+	 */
+	private static @NotNull ThreadState threadState ()
+	{
+		ThreadState state = threadState.get();
+		if (state == null || state.closed)
+		{
+			state = new ThreadState();
+			threadState.set(state);
+			openStates.add(state);
+		}
+		return state;
+	}
+
+	@Override
+	public void releaseThread ()
+	{
+		final ThreadState state = threadState.get();
+		if (state != null)
+		{
+			threadState.remove();
+			openStates.remove(state);
+			state.close();
+		}
+	}
+
+	@Override
+	public void release ()
+	{
+		for (final ThreadState state : openStates)
+		{
+			openStates.remove(state);
+			state.close();
+		}
+	}
+
+	/**
+	 * A {@code FaceFile} locates a face within a font file.
+	 */
+	private static final class FaceFile
+	{
+		/** The path of the font file. */
+		final String path;
+
+		/** The index of the face within the font file. */
+		final int index;
+
+		/**
+		 * Create a {@link FaceFile}.
+		 *
+		 * @param path
+		 *        The path of the font file.
+		 * @param index
+		 *        The index of the face within the font file.
+		 */
+		FaceFile (final String path, final int index)
+		{
+			this.path = path;
+			this.index = index;
+		}
+	}
+
+	/**
+	 * The directories searched for font files.
+	 */
+	private static final String[] fontDirectories =
+		{
+			"/usr/share/fonts",
+			"/usr/local/share/fonts",
+			System.getProperty("user.home") + "/.fonts",
+			System.getProperty("user.home") + "/.local/share/fonts",
+			"/Library/Fonts",
+			"/System/Library/Fonts",
+			System.getProperty("user.home") + "/Library/Fonts"
+		};
+
+	/**
+	 * A {@link Map} from {@linkplain Font#getFontName() face names} to the
+	 * {@link FaceFile} that holds the face.
+	 */
+	private static final class FaceFiles
+	{
+		/** The face files keyed by face name. */
+		static final Map<String, FaceFile> byName = new HashMap<>();
+		static
+		{
+			for (final String directory : fontDirectories)
+			{
+				final Path root = Paths.get(directory);
+				if (!Files.isDirectory(root))
+				{
+					continue;
+				}
+				try (final Stream<Path> files = Files.walk(root))
+				{
+					files.filter(FaceFiles::isFontFile).forEach(path ->
+					{
+						try
+						{
+							final Font[] faces =
+								Font.createFonts(path.toFile());
+							for (int i = 0; i < faces.length; i++)
+							{
+								byName.putIfAbsent(
+									faces[i].getFontName(),
+									new FaceFile(path.toString(), i));
+							}
+						}
+						catch (final FontFormatException | IOException e)
+						{
+							// Not a font Java can read; skip it.
+						}
+					});
+				}
+				catch (final IOException e)
+				{
+					// An unreadable directory just contributes no fonts.
+				}
+			}
+		}
+
+		/**
+		 * Answer whether the {@link Path} names a TrueType or OpenType file.
+		 *
+		 * @param path
+		 *        The {@code Path} to check.
+		 * @return {@code true} if it is a font file; {@code false} otherwise.
+		 */
+		private static boolean isFontFile (final @NotNull Path path)
+		{
+			final String name = path.getFileName().toString().toLowerCase();
+			return name.endsWith(".ttf")
+				|| name.endsWith(".otf")
+				|| name.endsWith(".ttc");
+		}
+	}
+
+	@Override
+	public @NotNull GlyphMask rasterize (
+		final @NotNull String text,
+		final @NotNull Font font,
+		final @NotNull RenderingHints hints,
+		final int pixelHeight,
+		final int pixelWidth,
+		final float widthOffset,
+		final float heightOffset)
+	{
+		final FaceFile file = FaceFiles.byName.get(font.getFontName());
+		if (file != null)
+		{
+			try
+			{
+				final GlyphMask mask = rasterize(
+					threadState(),
+					file,
+					text.codePointAt(0),
+					font,
+					hints,
+					pixelHeight,
+					pixelWidth,
+					widthOffset,
+					heightOffset);
+				if (mask != null)
+				{
+					return mask;
+				}
+			}
+			catch (final RuntimeException e)
+			{
+				throw e;
+			}
+			catch (final Throwable e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+		return fallback.rasterize(
+			text,
+			font,
+			hints,
+			pixelHeight,
+			pixelWidth,
+			widthOffset,
+			heightOffset);
+	}
+
+	/**
+	 * Answer a {@link GlyphMask} of the character rendered by FreeType.
+	 *
+	 * @param state
+	 *        The {@link ThreadState} of the current thread.
+	 * @param file
+	 *        The {@link FaceFile} of the {@link Font}.
+	 * @param codePoint
+	 *        The character code point to render.
+	 * @param font
+	 *        The target {@code Font} for the character.
+	 * @param hints
+	 *        The {@link RenderingHints} to render with. Antialiasing turned
+	 *        off renders one bit per pixel, and fractional metrics turned on
+	 *        leave the outline unhinted, as Java2D leaves it unsnapped.
+	 * @param pixelHeight
+	 *        The total height in pixels of the mask.
+	 * @param pixelWidth
+	 *        The total width in pixels of the mask.
+	 * @param widthOffset
+	 *        The horizontal position of the glyph origin.
+	 * @param heightOffset
+	 *        The vertical position of the baseline.
+	 * @return A {@code GlyphMask}, or {@code null} if FreeType could not
+	 *         render the character.
+	 * @throws Throwable
+	 *         If a downcall fails.
+	 */
+	private static @Nullable GlyphMask rasterize (
+		final @NotNull ThreadState state,
+		final @NotNull FaceFile file,
+		final int codePoint,
+		final @NotNull Font font,
+		final @NotNull RenderingHints hints,
+		final int pixelHeight,
+		final int pixelWidth,
+		final float widthOffset,
+		final float heightOffset)
+	throws Throwable
+	{
+		final MemorySegment face = state.face(file);
+		if (face == null)
+		{
+			return null;
+		}
+		final boolean mono = isMonochrome(hints);
+		int loadFlags = loadNoBitmap;
+		if (mono)
+		{
+			loadFlags |= loadTargetMono;
+		}
+		if (hints.get(RenderingHints.KEY_FRACTIONALMETRICS)
+			== RenderingHints.VALUE_FRACTIONALMETRICS_ON)
+		{
+			loadFlags |= loadNoHinting;
+		}
+		final long size = Math.round(font.getSize2D() * 64.0);
+		if ((int) setCharSize.invokeExact(face, 0L, size, 72, 72) != 0
+			|| (int) loadChar.invokeExact(
+				face, (long) codePoint, loadFlags) != 0)
+		{
+			return null;
+		}
+		final MemorySegment slot = face
+			.get(ValueLayout.ADDRESS, faceGlyph)
+			.reinterpret(slotSize);
+		final MemorySegment outline = slot.asSlice(slotOutline);
+		final long styleFlags = face.get(ValueLayout.JAVA_LONG, faceStyleFlags);
+
+		// Synthesize the styles Java2D would synthesize for a derived font.
+		if (font.isBold() && (styleFlags & styleBold) == 0)
+		{
+			final int error = (int) outlineEmbolden.invokeExact(
+				outline, size / 24);
+			assert error == 0;
+		}
+		if (font.isItalic() && (styleFlags & styleItalic) == 0)
+		{
+			state.matrix.set(ValueLayout.JAVA_LONG, 0, 0x10000L);
+			state.matrix.set(ValueLayout.JAVA_LONG, 8, obliqueShear);
+			state.matrix.set(ValueLayout.JAVA_LONG, 16, 0L);
+			state.matrix.set(ValueLayout.JAVA_LONG, 24, 0x10000L);
+			outlineTransform.invokeExact(outline, state.matrix);
+		}
+
+		// FreeType has its origin at the bottom left with y growing upward.
+		outlineTranslate.invokeExact(
+			outline,
+			Math.round(widthOffset * 64.0),
+			Math.round((pixelHeight - heightOffset) * 64.0));
+
+		// A monochrome canvas holds eight pixels in each byte.
+		final int pitch = mono ? (pixelWidth + 7) >> 3 : pixelWidth;
+		final MemorySegment canvas =
+			state.canvas((long) pitch * pixelHeight);
+		final MemorySegment bitmap = state.bitmap;
+		bitmap.set(ValueLayout.JAVA_INT, 0, pixelHeight);
+		bitmap.set(ValueLayout.JAVA_INT, 4, pixelWidth);
+		bitmap.set(ValueLayout.JAVA_INT, 8, pitch);
+		bitmap.set(ValueLayout.ADDRESS, 16, canvas);
+		bitmap.set(ValueLayout.JAVA_SHORT, 24, (short) (mono ? 2 : 256));
+		bitmap.set(
+			ValueLayout.JAVA_BYTE, 26, mono ? pixelModeMono : pixelModeGray);
+		bitmap.set(ValueLayout.JAVA_BYTE, 27, (byte) 0);
+		bitmap.set(ValueLayout.ADDRESS, 32, MemorySegment.NULL);
+		if ((int) outlineGetBitmap.invokeExact(
+			state.library, outline, bitmap) != 0)
+		{
+			return null;
+		}
+
+		final byte[] coverage = new byte[pixelWidth * pixelHeight];
+		if (mono)
+		{
+			for (int y = 0; y < pixelHeight; y++)
+			{
+				for (int x = 0; x < pixelWidth; x++)
+				{
+					final byte bits = canvas.get(
+						ValueLayout.JAVA_BYTE, (long) y * pitch + (x >> 3));
+					if ((bits & (0x80 >>> (x & 7))) != 0)
+					{
+						coverage[y * pixelWidth + x] = (byte) 0xFF;
+					}
+				}
+			}
+		}
+		else
+		{
+			MemorySegment.copy(
+				canvas, ValueLayout.JAVA_BYTE, 0, coverage, 0, coverage.length);
+		}
+		return new GlyphMask(pixelWidth, pixelHeight, coverage);
+	}
+
+	/**
+	 * Answer whether the {@link RenderingHints} turn antialiasing off for
+	 * text, as Java2D decides it: the text antialiasing hint, or the general
+	 * antialiasing hint if that is unset or left to the default.
+	 *
+	 * @param hints
+	 *        The {@code RenderingHints} to check.
+	 * @return {@code true} to render one bit per pixel; {@code false}
+	 *         otherwise.
+	 */
+	private static boolean isMonochrome (final @NotNull RenderingHints hints)
+	{
+		final Object text = hints.get(RenderingHints.KEY_TEXT_ANTIALIASING);
+		if (text == null || text == RenderingHints.VALUE_TEXT_ANTIALIAS_DEFAULT)
+		{
+			return hints.get(RenderingHints.KEY_ANTIALIASING)
+				== RenderingHints.VALUE_ANTIALIAS_OFF;
+		}
+		return text == RenderingHints.VALUE_TEXT_ANTIALIAS_OFF;
+	}
+}
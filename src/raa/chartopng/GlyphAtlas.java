@@ -0,0 +1,1049 @@
+/*
+ * GlyphAtlas.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import raa.configuration.State.Selection;
+import raa.utility.FileUtility;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@code GlyphAtlas} packs the trimmed glyphs of a {@link Selection} onto
+ * fixed size atlas pages, one set of pages for each color or color pair, and
+ * streams each page to its PNG file a shelf at a time.
+ *
+ * <p>
+ * Glyphs are placed with a {@link ShelfPacker} strictly in code point order,
+ * whatever order they are rendered in; a glyph that arrives early waits until
+ * those before it have been placed. Once a shelf is complete its glyphs are
+ * drawn into a band of rows as wide as the page, the band is handed to a
+ * {@link PngStreamWriter}, and the glyphs are let go, so no more than a
+ * few shelves of any page are ever in memory. Each glyph is followed by
+ * {@link #padding} empty columns and rows. Glyphs are drawn as {@link
+ * OutputMode#COVERAGE}, so monochrome glyphs are full color images with
+ * opaque and transparent pixels.
+ * </p>
+ *
+ * <p>
+ * Only the placing is done with the atlas locked. Completed shelves and
+ * pages are queued, and drawn and written in order by whichever adding
+ * thread is free to, so the others go back to rendering.
+ * </p>
+ *
+ * <p>
+ * Once every glyph is placed, {@link #finish()} writes a CSV sidecar with a
+ * line for each glyph: the code point, the page, the x, y, width, and height
+ * of the glyph on the page, and the x and y of the glyph on its canvas. It
+ * also saves the shelves of the {@code ShelfPacker}.
+ * </p>
+ *
+ * <p>
+ * An incremental atlas begins from the sidecar and shelves of the last run,
+ * if they are for pages of the same size and every page is still there.
+ * Glyphs already on the atlas keep their places and are not drawn again. New
+ * glyphs fill the free space at the ends of the old shelves and below the
+ * last of them, and then go on to new pages. Only the old pages that gain a
+ * glyph are read back and encoded again, once each, after every glyph is
+ * placed; new pages are streamed as usual.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class GlyphAtlas
+{
+	/**
+	 * An {@code Entry} is a glyph bound for the atlas.
+	 */
+	static final class Entry
+	{
+		/** The code point of the glyph. */
+		final int codePoint;
+
+		/** Where the glyph was trimmed from its canvas. */
+		final @NotNull Rectangle bounds;
+
+		/**
+		 * The trimmed {@link GlyphLayers} of the glyph, or {@code null} once
+		 * the glyph has been written.
+		 */
+		@Nullable GlyphLayers layers;
+
+		/**
+		 * Where the glyph is on the atlas, or {@code null} if it has not yet
+		 * been placed.
+		 */
+		ShelfPacker.@Nullable Placement placement;
+
+		/**
+		 * Create an {@link Entry} for a glyph already on the atlas.
+		 *
+		 * @param codePoint
+		 *        The code point of the glyph.
+		 * @param bounds
+		 *        Where the glyph was trimmed from its canvas.
+		 * @param placement
+		 *        Where the glyph is on the atlas.
+		 */
+		Entry (
+			final int codePoint,
+			final @NotNull Rectangle bounds,
+			final ShelfPacker.@NotNull Placement placement)
+		{
+			this.codePoint = codePoint;
+			this.bounds = bounds;
+			this.placement = placement;
+		}
+
+		/**
+		 * Create an {@link Entry}.
+		 *
+		 * @param codePoint
+		 *        The code point of the glyph.
+		 * @param layers
+		 *        The trimmed {@link GlyphLayers} of the glyph.
+		 * @param bounds
+		 *        Where the glyph was trimmed from its canvas.
+		 */
+		Entry (
+			final int codePoint,
+			final @NotNull GlyphLayers layers,
+			final @NotNull Rectangle bounds)
+		{
+			this.codePoint = codePoint;
+			this.layers = layers;
+			this.bounds = bounds;
+		}
+	}
+
+	/**
+	 * A {@code Variant} is the set of pages drawn in one color or color pair,
+	 * or of the uncolored masks of the glyphs.
+	 */
+	private final class Variant
+	{
+		/** The name of the color or color pair, or of the masks. */
+		final @NotNull String name;
+
+		/** The directory the pages are written to. */
+		final @NotNull String directory;
+
+		/**
+		 * The {@link Color} the glyphs are drawn in on a transparent page, or
+		 * {@code null} if the page has a {@link #pair} or is a mask.
+		 */
+		final @Nullable Color color;
+
+		/**
+		 * The {@link ColorPair} the glyphs are drawn with on an opaque page,
+		 * or {@code null} if the page has a {@link #color} or is a mask.
+		 */
+		final @Nullable ColorPair pair;
+
+		/** The PNG color type of the pages. */
+		final int colorType;
+
+		/** A row of empty page. */
+		final byte[] emptyRow;
+
+		/**
+		 * The {@link PngStreamWriter} of the current page, or {@code null} if
+		 * it has not yet been begun.
+		 */
+		@Nullable PngStreamWriter writer;
+
+		/** The number of rows written to the current page. */
+		int rows;
+
+		/**
+		 * Answer the {@link PooledRaster} of a glyph drawn for this {@link
+		 * Variant}.
+		 *
+		 * @param layers
+		 *        The {@link GlyphLayers} of the glyph.
+		 * @return A {@code PooledRaster}, to be released once copied.
+		 */
+		@NotNull PooledRaster raster (final @NotNull GlyphLayers layers)
+		{
+			if (pair != null)
+			{
+				return layers.raster(OutputMode.COVERAGE, pair);
+			}
+			return color != null
+				? layers.raster(OutputMode.COVERAGE, color)
+				: layers.grayRaster();
+		}
+
+		/**
+		 * Write a band of rows to the current page, beginning the page if
+		 * necessary.
+		 *
+		 * @param band
+		 *        The {@link PooledRaster} of the band.
+		 * @param index
+		 *        The index of the page the band belongs to.
+		 * @throws IOException
+		 *         If the band could not be written.
+		 */
+		void write (final @NotNull PooledRaster band, final int index)
+		throws IOException
+		{
+			if (writer == null)
+			{
+				writer = new PngStreamWriter(
+					FileUtility.createAtlasFileName(directory, index),
+					width,
+					height,
+					8,
+					colorType,
+					null);
+			}
+			append(band);
+		}
+
+		/**
+		 * Write a band of rows to the current page, which must have been
+		 * begun.
+		 *
+		 * @param band
+		 *        The {@link PooledRaster} of the band.
+		 * @throws IOException
+		 *         If the band could not be written.
+		 */
+		private void append (final @NotNull PooledRaster band)
+		throws IOException
+		{
+			assert writer != null;
+			writer.writeLines(PngEncoder.lines(band, 0, band.height));
+			rows += band.height;
+		}
+
+		/**
+		 * Write empty rows to the end of the current page and close it.
+		 *
+		 * @throws IOException
+		 *         If the page could not be written.
+		 */
+		void finishPage () throws IOException
+		{
+			if (writer == null)
+			{
+				return;
+			}
+			while (rows < height)
+			{
+				final PooledRaster band = emptyBand(
+					this, Math.min(height - rows, emptyBandRows));
+				try
+				{
+					append(band);
+				}
+				finally
+				{
+					band.release();
+				}
+			}
+			writer.close();
+			writer = null;
+			rows = 0;
+		}
+
+		/**
+		 * Create a {@link Variant}.
+		 *
+		 * @param name
+		 *        The name of the color or color pair, or of the masks.
+		 * @param directory
+		 *        The directory the pages are written to.
+		 * @param color
+		 *        The {@link Color} of the glyphs, or {@code null}.
+		 * @param pair
+		 *        The {@link ColorPair} of the glyphs, or {@code null}. If
+		 *        both are {@code null}, the pages are masks.
+		 */
+		Variant (
+			final @NotNull String name,
+			final @NotNull String directory,
+			final @Nullable Color color,
+			final @Nullable ColorPair pair)
+		{
+			this.name = name;
+			this.directory = directory;
+			this.color = color;
+			this.pair = pair;
+			this.colorType = pair != null ? PooledRaster.rgb
+				: color != null ? PooledRaster.rgba
+				: PooledRaster.gray;
+			this.emptyRow =
+				new byte[width * PooledRaster.samples(colorType)];
+			if (pair != null)
+			{
+				final Color background = pair.background();
+				for (int i = 0; i < emptyRow.length; i += 3)
+				{
+					emptyRow[i] = (byte) background.getRed();
+					emptyRow[i + 1] = (byte) background.getGreen();
+					emptyRow[i + 2] = (byte) background.getBlue();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The most rows of empty page written at a time.
+	 */
+	private static final int emptyBandRows = 64;
+
+	/**
+	 * The width in pixels of a page.
+	 */
+	private final int width;
+
+	/**
+	 * The height in pixels of a page.
+	 */
+	private final int height;
+
+	/**
+	 * The number of empty columns and rows after each glyph.
+	 */
+	private final int padding;
+
+	/**
+	 * The {@link ShelfPacker} that places the glyphs.
+	 */
+	private final @NotNull ShelfPacker packer;
+
+	/**
+	 * The {@link Variant}s, one for each color or color pair, or one of
+	 * masks.
+	 */
+	private final @NotNull List<Variant> variants = new ArrayList<>();
+
+	/**
+	 * The code points of the glyphs yet to be placed, in order.
+	 */
+	private final @NotNull Deque<Integer> expected = new ArrayDeque<>();
+
+	/**
+	 * The glyphs that arrived before those ahead of them, by code point.
+	 */
+	private final @NotNull Map<Integer, Entry> waiting = new TreeMap<>();
+
+	/**
+	 * The placed glyphs of the current shelf.
+	 */
+	private final @NotNull List<Entry> shelf = new ArrayList<>();
+
+	/**
+	 * Every placed glyph, in order.
+	 */
+	private final @NotNull List<Entry> placed = new ArrayList<>();
+
+	/**
+	 * The code points of the glyphs already on the atlas.
+	 */
+	private final @NotNull Set<Integer> restored = new HashSet<>();
+
+	/**
+	 * The number of pages already written by an earlier run; glyphs placed
+	 * on them are drawn once every glyph is placed.
+	 */
+	private final int restoredPages;
+
+	/**
+	 * The glyphs placed on the {@link #restoredPages}, by page.
+	 */
+	private final @NotNull Map<Integer, List<Entry>> reopened =
+		new TreeMap<>();
+
+	/**
+	 * The page glyphs are being placed on.
+	 */
+	private int page;
+
+	/**
+	 * The shelves to draw and write and the pages to close, in order. They
+	 * are queued while the atlas is locked and done outside it, so that the
+	 * threads adding glyphs do not wait on the drawing and encoding.
+	 */
+	private final @NotNull Queue<Runnable> writes =
+		new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The lock held while the {@link #writes} are done, one at a time and in
+	 * order. The pages of the {@link Variant}s are only touched under it.
+	 */
+	private final @NotNull ReentrantLock writing = new ReentrantLock();
+
+	/**
+	 * The name of the CSV file of the placements.
+	 */
+	private final @NotNull String placementsFileName;
+
+	/**
+	 * The name of the file of the shelves of the {@link #packer}.
+	 */
+	private final @NotNull String shelvesFileName;
+
+	/**
+	 * Answer the directories the pages are written to.
+	 *
+	 * @return A list of directory names.
+	 */
+	@NotNull List<String> directories ()
+	{
+		final List<String> directories = new ArrayList<>(variants.size());
+		variants.forEach(variant -> directories.add(variant.directory));
+		return directories;
+	}
+
+	/**
+	 * Add every glyph placed on the atlas, including those of an earlier
+	 * run, to a {@link Manifest.Part}, once for the pages of each {@link
+	 * Variant}.
+	 *
+	 * @param part
+	 *        The {@code Manifest.Part} of the selection.
+	 */
+	synchronized void describe (final @NotNull Manifest.Part part)
+	{
+		for (final Variant variant : variants)
+		{
+			for (final Entry entry : placed)
+			{
+				assert entry.placement != null;
+				part.add(
+					variant.name,
+					entry.codePoint,
+					FileUtility.createAtlasFileName(
+						variant.directory, entry.placement.page),
+					0,
+					0,
+					new Rectangle(
+						entry.placement.x,
+						entry.placement.y,
+						entry.bounds.width,
+						entry.bounds.height),
+					entry.bounds);
+			}
+		}
+	}
+
+	/**
+	 * Answer every glyph placed on the atlas, including those of an earlier
+	 * run, in the order placed.
+	 *
+	 * @return An unmodifiable {@link List} of {@link Entry}s.
+	 */
+	synchronized @NotNull List<Entry> placed ()
+	{
+		return Collections.unmodifiableList(new ArrayList<>(placed));
+	}
+
+	/**
+	 * Answer whether the glyph of the provided code point is already on the
+	 * atlas from an earlier run.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 * @return {@code true} if it need not be drawn again.
+	 */
+	boolean contains (final int codePoint)
+	{
+		return restored.contains(codePoint);
+	}
+
+	/**
+	 * Note that a glyph will be added for the provided code point. Glyphs must
+	 * be expected in the order they are to be placed.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 */
+	synchronized void expect (final int codePoint)
+	{
+		expected.addLast(codePoint);
+	}
+
+	/**
+	 * Add a glyph, placing it and any glyphs waiting on it.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 * @param layers
+	 *        The {@link GlyphLayers} of the glyph trimmed to {@code bounds}.
+	 * @param bounds
+	 *        Where the glyph was trimmed from its canvas.
+	 */
+	void add (
+		final int codePoint,
+		final @NotNull GlyphLayers layers,
+		final @NotNull Rectangle bounds)
+	{
+		synchronized (this)
+		{
+			waiting.put(codePoint, new Entry(codePoint, layers, bounds));
+			while (!expected.isEmpty()
+				&& waiting.containsKey(expected.peekFirst()))
+			{
+				place(waiting.remove(expected.removeFirst()));
+			}
+		}
+		write();
+	}
+
+	/**
+	 * Do the queued {@link #writes}, unless another thread is already doing
+	 * them; that thread also does any queued before it lets go of {@link
+	 * #writing}.
+	 */
+	private void write ()
+	{
+		while (!writes.isEmpty() && writing.tryLock())
+		{
+			try
+			{
+				Runnable write;
+				while ((write = writes.poll()) != null)
+				{
+					write.run();
+				}
+			}
+			finally
+			{
+				writing.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Place a glyph, queueing the current shelf to be written first if the
+	 * glyph begins a new one.
+	 *
+	 * @param entry
+	 *        The {@link Entry} of the glyph.
+	 */
+	private void place (final @NotNull Entry entry)
+	{
+		final ShelfPacker.Placement placement = packer.place(
+			entry.bounds.width + padding, entry.bounds.height + padding);
+		if (placement == null)
+		{
+			System.err.println(
+				"Glyph U+" + Integer.toHexString(entry.codePoint)
+					+ " is larger than an atlas page");
+			return;
+		}
+		entry.placement = placement;
+		placed.add(entry);
+		if (placement.page < restoredPages)
+		{
+			reopened.computeIfAbsent(placement.page, p -> new ArrayList<>())
+				.add(entry);
+			return;
+		}
+		if (!shelf.isEmpty())
+		{
+			final ShelfPacker.Placement first = shelf.get(0).placement;
+			assert first != null;
+			if (placement.page != first.page || placement.y != first.y)
+			{
+				queueShelf();
+			}
+		}
+		if (placement.page != page)
+		{
+			final int finished = page;
+			writes.add(() -> finishPages(finished));
+			page = placement.page;
+		}
+		shelf.add(entry);
+	}
+
+	/**
+	 * Queue the current shelf to be written, and begin a new one.
+	 */
+	private void queueShelf ()
+	{
+		final List<Entry> entries = new ArrayList<>(shelf);
+		writes.add(() -> writeShelf(entries));
+		shelf.clear();
+	}
+
+	/**
+	 * Draw a shelf into a band of each {@link Variant} and write it.
+	 *
+	 * @param entries
+	 *        The {@link Entry}s of the placed glyphs of the shelf.
+	 */
+	private void writeShelf (final @NotNull List<Entry> entries)
+	{
+		final ShelfPacker.Placement first = entries.get(0).placement;
+		assert first != null;
+		int rows = 0;
+		for (final Entry entry : entries)
+		{
+			rows = Math.max(rows, entry.bounds.height + padding);
+		}
+		try
+		{
+			for (final Variant variant : variants)
+			{
+				final PooledRaster band = emptyBand(variant, rows);
+				try
+				{
+					for (final Entry entry : entries)
+					{
+						draw(band, first.y, variant, entry);
+					}
+					variant.write(band, first.page);
+				}
+				finally
+				{
+					band.release();
+				}
+			}
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write atlas page " + first.page);
+			ex.printStackTrace();
+		}
+		entries.forEach(entry -> entry.layers = null);
+	}
+
+	/**
+	 * Write empty rows to the end of the current page of each {@link
+	 * Variant} and close it.
+	 *
+	 * @param index
+	 *        The index of the page.
+	 */
+	private void finishPages (final int index)
+	{
+		try
+		{
+			for (final Variant variant : variants)
+			{
+				variant.finishPage();
+			}
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write atlas page " + index);
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Answer a band of empty page.
+	 *
+	 * @param variant
+	 *        The {@link Variant} of the page.
+	 * @param rows
+	 *        The number of rows of the band.
+	 * @return A {@link PooledRaster}, to be released once written.
+	 */
+	private @NotNull PooledRaster emptyBand (
+		final @NotNull Variant variant,
+		final int rows)
+	{
+		final PooledRaster band =
+			PooledRaster.direct(width, rows, variant.colorType);
+		for (int row = 0; row < rows; row++)
+		{
+			band.pixels.put(row * band.rowBytes, variant.emptyRow);
+		}
+		return band;
+	}
+
+	/**
+	 * Draw a glyph for a {@link Variant} into a band of rows of its page.
+	 *
+	 * @param target
+	 *        The {@link PooledRaster} of the band.
+	 * @param top
+	 *        The row of the page at the top of the band.
+	 * @param variant
+	 *        The {@code Variant} to draw for.
+	 * @param entry
+	 *        The {@link Entry} of the placed glyph.
+	 */
+	private static void draw (
+		final @NotNull PooledRaster target,
+		final int top,
+		final @NotNull Variant variant,
+		final @NotNull Entry entry)
+	{
+		assert entry.layers != null && entry.placement != null;
+		final int pixelBytes = target.rowBytes / target.width;
+		final PooledRaster glyph = variant.raster(entry.layers);
+		for (int row = 0; row < glyph.height; row++)
+		{
+			target.pixels.put(
+				(entry.placement.y - top + row) * target.rowBytes
+					+ entry.placement.x * pixelBytes,
+				glyph.pixels,
+				row * glyph.rowBytes,
+				glyph.rowBytes);
+		}
+		glyph.release();
+	}
+
+	/**
+	 * Read back a page written by an earlier run, draw new glyphs onto it,
+	 * and encode it again.
+	 *
+	 * @param variant
+	 *        The {@link Variant} of the page.
+	 * @param index
+	 *        The index of the page.
+	 * @param entries
+	 *        The {@link Entry}s of the glyphs placed on the page.
+	 */
+	private void redraw (
+		final @NotNull Variant variant,
+		final int index,
+		final @NotNull List<Entry> entries)
+	{
+		final String fileName =
+			FileUtility.createAtlasFileName(variant.directory, index);
+		final PooledRaster raster =
+			PooledRaster.direct(width, height, variant.colorType);
+		try
+		{
+			final BufferedImage image = ImageIO.read(new File(fileName));
+			if (image == null
+				|| image.getWidth() != width
+				|| image.getHeight() != height)
+			{
+				throw new IOException(fileName + " is not an atlas page");
+			}
+			// The samples are read as stored; converting them to ARGB would
+			// gamma encode a gray page.
+			final Raster samples = image.getRaster();
+			if (samples.getNumBands() != raster.rowBytes / width)
+			{
+				throw new IOException(fileName + " is not an atlas page");
+			}
+			final int[] row = new int[raster.rowBytes];
+			for (int y = 0; y < height; y++)
+			{
+				samples.getPixels(0, y, width, 1, row);
+				for (int i = 0, p = y * raster.rowBytes; i < row.length; i++)
+				{
+					raster.pixels.put(p + i, (byte) row[i]);
+				}
+			}
+			for (final Entry entry : entries)
+			{
+				draw(raster, 0, variant, entry);
+			}
+			PngEncoder.write(raster, fileName);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not update " + fileName);
+			ex.printStackTrace();
+		}
+		finally
+		{
+			raster.release();
+		}
+	}
+
+	/**
+	 * Place any glyphs still waiting, write the last shelf, close the last
+	 * pages, draw the glyphs placed on the pages of an earlier run, and write
+	 * the CSV sidecar of the placements and the shelves of the {@link
+	 * #packer}.
+	 */
+	synchronized void finish ()
+	{
+		for (final Entry entry : waiting.values())
+		{
+			place(entry);
+		}
+		waiting.clear();
+		if (!shelf.isEmpty())
+		{
+			queueShelf();
+		}
+		final int last = page;
+		writes.add(() -> finishPages(last));
+		// Wait for any thread still writing, then do what is left.
+		writing.lock();
+		try
+		{
+			Runnable write;
+			while ((write = writes.poll()) != null)
+			{
+				write.run();
+			}
+		}
+		finally
+		{
+			writing.unlock();
+		}
+		for (final int index : reopened.keySet())
+		{
+			final List<Entry> entries = reopened.get(index);
+			for (final Variant variant : variants)
+			{
+				redraw(variant, index, entries);
+			}
+			entries.forEach(entry -> entry.layers = null);
+		}
+		reopened.clear();
+		try
+		{
+			final OutputFiles.Buffer buffer = OutputFiles.buffer();
+			final PrintWriter out = buffer.text;
+			out.println("code_point,page,x,y,width,height,offset_x,offset_y");
+			for (final Entry entry : placed)
+			{
+				final ShelfPacker.Placement placement = entry.placement;
+				assert placement != null;
+				out.println(entry.codePoint
+					+ "," + placement.page
+					+ "," + placement.x
+					+ "," + placement.y
+					+ "," + entry.bounds.width
+					+ "," + entry.bounds.height
+					+ "," + entry.bounds.x
+					+ "," + entry.bounds.y);
+			}
+			OutputFiles.write(placementsFileName, buffer);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + placementsFileName);
+			ex.printStackTrace();
+		}
+		try
+		{
+			final OutputFiles.Buffer buffer = OutputFiles.buffer();
+			final PrintWriter out = buffer.text;
+			out.println("size " + width + " " + height + " " + padding);
+			for (final ShelfPacker.Shelf saved : packer.shelves())
+			{
+				out.println("shelf " + saved.page
+					+ " " + saved.y
+					+ " " + saved.height
+					+ " " + saved.used);
+			}
+			OutputFiles.write(shelvesFileName, buffer);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + shelvesFileName);
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Restore the placements and shelves of an earlier run, if they are for
+	 * pages of the same size and padding and every page of every {@link
+	 * Variant} is still there.
+	 *
+	 * @return The number of pages restored, {@code 0} if the atlas is to be
+	 *         built afresh.
+	 */
+	private int restore ()
+	{
+		final File shelvesFile = new File(shelvesFileName);
+		final File placementsFile = new File(placementsFileName);
+		if (!shelvesFile.isFile() || !placementsFile.isFile())
+		{
+			return 0;
+		}
+		final List<int[]> shelves = new ArrayList<>();
+		final List<Entry> entries = new ArrayList<>();
+		try
+		{
+			final List<String> lines = Files.readAllLines(shelvesFile.toPath());
+			if (lines.isEmpty() || !lines.get(0).equals(
+				"size " + width + " " + height + " " + padding))
+			{
+				return rebuild("its page size or padding has changed");
+			}
+			for (final String line : lines.subList(1, lines.size()))
+			{
+				final String[] fields = line.split(" ");
+				shelves.add(new int[] {
+					Integer.parseInt(fields[1]),
+					Integer.parseInt(fields[2]),
+					Integer.parseInt(fields[3]),
+					Integer.parseInt(fields[4])});
+			}
+			final List<String> rows =
+				Files.readAllLines(placementsFile.toPath());
+			for (final String row : rows.subList(1, rows.size()))
+			{
+				final String[] fields = row.split(",");
+				entries.add(new Entry(
+					Integer.parseInt(fields[0]),
+					new Rectangle(
+						Integer.parseInt(fields[6]),
+						Integer.parseInt(fields[7]),
+						Integer.parseInt(fields[4]),
+						Integer.parseInt(fields[5])),
+					new ShelfPacker.Placement(
+						Integer.parseInt(fields[1]),
+						Integer.parseInt(fields[2]),
+						Integer.parseInt(fields[3]))));
+			}
+		}
+		catch (IOException
+			| NumberFormatException
+			| IndexOutOfBoundsException ex)
+		{
+			return rebuild("its sidecar files could not be read");
+		}
+		final int pages =
+			shelves.isEmpty() ? 0 : shelves.get(shelves.size() - 1)[0] + 1;
+		for (final Variant variant : variants)
+		{
+			for (int p = 0; p < pages; p++)
+			{
+				if (!new File(FileUtility.createAtlasFileName(
+					variant.directory, p)).isFile())
+				{
+					return rebuild("page " + p + " of "
+						+ variant.directory + " is missing");
+				}
+			}
+		}
+		shelves.forEach(saved ->
+			packer.restore(saved[0], saved[1], saved[2], saved[3]));
+		placed.addAll(entries);
+		entries.forEach(entry -> restored.add(entry.codePoint));
+		return pages;
+	}
+
+	/**
+	 * Report that an incremental atlas is to be built afresh.
+	 *
+	 * @param reason
+	 *        Why the earlier run cannot be added to.
+	 * @return {@code 0}, the number of pages restored.
+	 */
+	private int rebuild (final @NotNull String reason)
+	{
+		System.err.println(
+			"Rebuilding " + placementsFileName + " because " + reason + ".");
+		return 0;
+	}
+
+	/**
+	 * Create a {@link GlyphAtlas}.
+	 *
+	 * @param baseDirectory
+	 *        The base directory to write the pages in.
+	 * @param selection
+	 *        The {@link Selection} the glyphs belong to.
+	 * @param colors
+	 *        The {@link NamedColor}s to draw pages in on a transparent
+	 *        background.
+	 * @param pairs
+	 *        The {@link ColorPair}s to draw opaque pages with.
+	 * @param masks
+	 *        Whether to write pages of the uncolored masks of the glyphs,
+	 *        for a renderer to tint.
+	 */
+	GlyphAtlas (
+		final @NotNull String baseDirectory,
+		final @NotNull Selection selection,
+		final @NotNull List<NamedColor> colors,
+		final @NotNull List<ColorPair> pairs,
+		final boolean masks)
+	{
+		this.width = selection.atlasWidth();
+		this.height = selection.atlasHeight();
+		this.padding = selection.atlasPadding();
+		this.packer = new ShelfPacker(width, height);
+		this.placementsFileName = FileUtility.createAtlasFileName(
+			baseDirectory, selection, ".csv");
+		this.shelvesFileName = FileUtility.createAtlasFileName(
+			baseDirectory, selection, ".shelves");
+		for (final NamedColor color : colors)
+		{
+			variants.add(new Variant(
+				color.name(),
+				FileUtility.createAtlasDir(
+					baseDirectory, color.name(), selection),
+				color,
+				null));
+		}
+		for (final ColorPair pair : pairs)
+		{
+			variants.add(new Variant(
+				pair.name(),
+				FileUtility.createAtlasDir(
+					baseDirectory, pair.name(), selection),
+				null,
+				pair));
+		}
+		if (masks)
+		{
+			variants.add(new Variant(
+				ColorMode.maskName,
+				FileUtility.createAtlasDir(
+					baseDirectory, ColorMode.maskName, selection),
+				null,
+				null));
+		}
+		this.restoredPages = selection.atlasIncremental() ? restore() : 0;
+		this.page = restoredPages;
+	}
+}
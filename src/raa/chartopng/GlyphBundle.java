@@ -0,0 +1,752 @@
+/*
+ * GlyphBundle.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import raa.configuration.State.Selection;
+import raa.utility.FileUtility;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/**
+ * A {@code GlyphBundle} writes the glyphs of a {@link Selection} to one file
+ * for each color or color pair, or for the masks, in place of a PNG for each.
+ * Each glyph is trimmed to its bounds and compressed on its own as a zlib
+ * stream, so it may be read without the others, but against a preset
+ * dictionary drawn from the first glyphs of the selection and stored once
+ * in the file. Small glyph images compress poorly alone; the dictionary
+ * gives each the runs and edges the glyphs of a font have in common.
+ *
+ * <p>
+ * A bundle takes the form, in little-endian order:
+ * </p>
+ * <ul>
+ * <li>the eight bytes {@code GLYPHBND}, and the version, the canvas width
+ * and height, the PNG color type of the pixels (0 gray, 2 RGB, 3 indexed, 6
+ * RGBA), their bit depth, the number of palette entries, and the length of
+ * the dictionary, each a 32-bit integer;</li>
+ * <li>the palette, the red, green, blue, and alpha bytes of each entry;</li>
+ * <li>the dictionary;</li>
+ * <li>the compressed glyphs, in the order they were drawn;</li>
+ * <li>the index, in code point order, of a 32-byte entry for each glyph:
+ * its code point, and the x, y, width, and height of its bounds on the
+ * canvas, each a 32-bit integer, and then the 64-bit offset and the 32-bit
+ * length of its compressed pixels;</li>
+ * <li>the 64-bit offset of the index and the 32-bit number of glyphs.</li>
+ * </ul>
+ *
+ * <p>
+ * The pixels are those a PNG of the glyph would hold in the {@link
+ * OutputMode} of the selection: one bit per pixel indexed into a two entry
+ * palette for the monochrome modes, and eight bit samples otherwise. Each
+ * row starts on a byte boundary.
+ * </p>
+ *
+ * <p>
+ * Glyphs are held until the glyphs the dictionary is trained from are all
+ * drawn. The jobs run in about code point order, so few are ever held.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class GlyphBundle
+{
+	/**
+	 * A {@code Variant} is the file of the glyphs drawn in one color or color
+	 * pair, or of their masks.
+	 */
+	private final class Variant
+	{
+		/** The name of the color or color pair, or of the masks. */
+		final @NotNull String name;
+
+		/** The name of the bundle file. */
+		final @NotNull String fileName;
+
+		/**
+		 * The {@link Color} the glyphs are drawn in on a transparent
+		 * background, or {@code null}.
+		 */
+		final @Nullable Color color;
+
+		/**
+		 * The {@link ColorPair} the glyphs are drawn with on an opaque
+		 * background, or {@code null}. If both are {@code null}, the glyphs
+		 * are masks.
+		 */
+		final @Nullable ColorPair pair;
+
+		/** The PNG color type of the pixels. */
+		final int colorType;
+
+		/** The number of bits of each sample or palette index. */
+		final int bitDepth;
+
+		/**
+		 * The ARGB of each palette entry, or {@code null} if the pixels are
+		 * not indexed.
+		 */
+		final @Nullable int[] palette;
+
+		/**
+		 * The preset dictionary, or {@code null} if it has not yet been
+		 * trained.
+		 */
+		@Nullable byte[] dictionary;
+
+		/**
+		 * The {@link FileChannel} of the file, or {@code null} if it has not
+		 * yet been opened.
+		 */
+		@Nullable FileChannel channel;
+
+		/** The position in the file at which the next glyph is written. */
+		long position;
+
+		/**
+		 * The offset and length of the compressed pixels of each glyph, by
+		 * code point.
+		 */
+		final @NotNull Map<Integer, long[]> index = new TreeMap<>();
+
+		/**
+		 * Answer the pixels of a glyph drawn for this {@link Variant}.
+		 *
+		 * @param cropped
+		 *        The {@link GlyphLayers} of the glyph, cropped to its bounds.
+		 * @return The rows of pixels, one after another.
+		 */
+		@NotNull byte[] pixels (final @NotNull GlyphLayers cropped)
+		{
+			final PooledRaster raster;
+			if (pair != null)
+			{
+				raster = cropped.raster(outputMode, pair);
+			}
+			else if (color != null)
+			{
+				raster = cropped.raster(outputMode, color);
+			}
+			else
+			{
+				raster = cropped.grayRaster();
+			}
+			try
+			{
+				assert raster.colorType == colorType
+					&& raster.bitDepth == bitDepth;
+				final byte[] pixels = new byte[raster.rowBytes * raster.height];
+				raster.pixels.get(0, pixels);
+				return pixels;
+			}
+			finally
+			{
+				raster.release();
+			}
+		}
+
+		/**
+		 * Make the dictionary from the provided pixels, and begin the file
+		 * with its header.
+		 *
+		 * @param samples
+		 *        The pixels of the glyphs to train from.
+		 * @throws IOException
+		 *         If the file could not be written.
+		 */
+		void begin (final @NotNull List<byte[]> samples) throws IOException
+		{
+			dictionary = dictionary(samples);
+			channel = FileChannel.open(
+				Paths.get(fileName),
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+			final int[] entries = palette != null ? palette : new int[0];
+			final ByteBuffer header = ByteBuffer
+				.allocate(headerBytes + entries.length * 4 + dictionary.length)
+				.order(ByteOrder.LITTLE_ENDIAN)
+				.put(identifier)
+				.putInt(version)
+				.putInt(width)
+				.putInt(height)
+				.putInt(colorType)
+				.putInt(bitDepth)
+				.putInt(entries.length)
+				.putInt(dictionary.length);
+			for (final int argb : entries)
+			{
+				header.put((byte) (argb >>> 16))
+					.put((byte) (argb >>> 8))
+					.put((byte) argb)
+					.put((byte) (argb >>> 24));
+			}
+			header.put(dictionary).flip();
+			position = write(channel, header, 0);
+		}
+
+		/**
+		 * Append the compressed pixels of a glyph to the file.
+		 *
+		 * @param codePoint
+		 *        The code point of the glyph.
+		 * @param compressed
+		 *        The compressed pixels.
+		 * @throws IOException
+		 *         If the file could not be written.
+		 */
+		void append (final int codePoint, final @NotNull byte[] compressed)
+		throws IOException
+		{
+			assert channel != null;
+			index.put(codePoint, new long[] {position, compressed.length});
+			position = write(channel, ByteBuffer.wrap(compressed), position);
+		}
+
+		/**
+		 * Write the index and the trailer of the file, and close it.
+		 *
+		 * @throws IOException
+		 *         If the file could not be written.
+		 */
+		void finish () throws IOException
+		{
+			assert channel != null;
+			final ByteBuffer tail = ByteBuffer
+				.allocate(index.size() * indexEntryBytes + trailerBytes)
+				.order(ByteOrder.LITTLE_ENDIAN);
+			index.forEach((codePoint, place) ->
+			{
+				final Rectangle glyphBounds = bounds.get(codePoint);
+				tail.putInt(codePoint)
+					.putInt(glyphBounds.x)
+					.putInt(glyphBounds.y)
+					.putInt(glyphBounds.width)
+					.putInt(glyphBounds.height)
+					.putLong(place[0])
+					.putInt((int) place[1]);
+			});
+			tail.putLong(position).putInt(index.size()).flip();
+			write(channel, tail, position);
+			channel.close();
+			channel = null;
+			OutputFiles.written(fileName);
+		}
+
+		/**
+		 * Create a {@link Variant}.
+		 *
+		 * @param name
+		 *        The name of the color or color pair, or of the masks.
+		 * @param fileName
+		 *        The name of the bundle file.
+		 * @param color
+		 *        The {@link Color} of the glyphs, or {@code null}.
+		 * @param pair
+		 *        The {@link ColorPair} of the glyphs, or {@code null}. If
+		 *        both are {@code null}, the glyphs are masks.
+		 */
+		Variant (
+			final @NotNull String name,
+			final @NotNull String fileName,
+			final @Nullable Color color,
+			final @Nullable ColorPair pair)
+		{
+			this.name = name;
+			this.fileName = fileName;
+			this.color = color;
+			this.pair = pair;
+			// The monochrome modes draw a color, or a color over a
+			// background, as one bit indices into the two.
+			final boolean binary =
+				outputMode.isMonochrome() && (color != null || pair != null);
+			if (binary)
+			{
+				this.colorType = PooledRaster.indexed;
+				this.bitDepth = 1;
+				this.palette = pair != null
+					? new int[] {
+						pair.background().getRGB(),
+						pair.foreground().getRGB()}
+					: new int[] {0, color.getRGB()};
+			}
+			else
+			{
+				this.colorType = pair != null ? PooledRaster.rgb
+					: color != null ? PooledRaster.rgba
+					: PooledRaster.gray;
+				this.bitDepth = 8;
+				this.palette = null;
+			}
+		}
+	}
+
+	/**
+	 * The eight bytes that begin every bundle.
+	 */
+	private static final byte[] identifier =
+		{'G', 'L', 'Y', 'P', 'H', 'B', 'N', 'D'};
+
+	/**
+	 * The version of the bundle format.
+	 */
+	private static final int version = 2;
+
+	/**
+	 * The number of bytes of the header before the palette.
+	 */
+	private static final int headerBytes = 36;
+
+	/**
+	 * The number of bytes of the index entry of a glyph.
+	 */
+	private static final int indexEntryBytes = 32;
+
+	/**
+	 * The number of bytes of the trailer after the index.
+	 */
+	private static final int trailerBytes = 12;
+
+	/**
+	 * The number of glyphs, the first in code point order, the dictionary is
+	 * trained from.
+	 */
+	private static final int sampleGlyphs = 64;
+
+	/**
+	 * The most bytes of a dictionary, the window of a zlib stream.
+	 */
+	private static final int dictionaryBytes = 1 << 15;
+
+	/**
+	 * The {@link OutputMode} the glyphs are drawn in.
+	 */
+	private final @NotNull OutputMode outputMode;
+
+	/**
+	 * The width in pixels of the canvas.
+	 */
+	private final int width;
+
+	/**
+	 * The height in pixels of the canvas.
+	 */
+	private final int height;
+
+	/**
+	 * The {@link Variant}s, one for each file.
+	 */
+	private final @NotNull List<Variant> variants = new ArrayList<>();
+
+	/**
+	 * The code points of the glyphs to be drawn, in order.
+	 */
+	private final @NotNull List<Integer> expected = new ArrayList<>();
+
+	/**
+	 * The bounds on the canvas of each glyph drawn, by code point.
+	 */
+	private final @NotNull Map<Integer, Rectangle> bounds = new TreeMap<>();
+
+	/**
+	 * The pixels of each {@link Variant} of the glyphs drawn before the
+	 * dictionaries were trained, by code point.
+	 */
+	private final @NotNull Map<Integer, byte[][]> waiting = new TreeMap<>();
+
+	/**
+	 * Whether the dictionaries have been trained and the files begun.
+	 */
+	private boolean trained;
+
+	/**
+	 * Expect the glyph of the provided code point. Glyphs must be expected
+	 * in code point order, all before the first is added.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 */
+	synchronized void expect (final int codePoint)
+	{
+		expected.add(codePoint);
+	}
+
+	/**
+	 * Add a drawn glyph to each file. The glyphs the dictionaries are trained
+	 * from are held until they are all drawn; once they have been, each glyph
+	 * is compressed by the thread that drew it.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 * @param cropped
+	 *        The {@link GlyphLayers} of the glyph, cropped to its bounds.
+	 * @param glyphBounds
+	 *        The bounds of the glyph on its canvas.
+	 */
+	void add (
+		final int codePoint,
+		final @NotNull GlyphLayers cropped,
+		final @NotNull Rectangle glyphBounds)
+	{
+		final byte[][] pixels = new byte[variants.size()][];
+		for (int v = 0; v < pixels.length; v++)
+		{
+			pixels[v] = variants.get(v).pixels(cropped);
+		}
+		synchronized (this)
+		{
+			bounds.put(codePoint, glyphBounds);
+			if (!trained)
+			{
+				waiting.put(codePoint, pixels);
+				final int samples = Math.min(sampleGlyphs, expected.size());
+				if (waiting.keySet().containsAll(
+					expected.subList(0, samples)))
+				{
+					begin();
+				}
+				return;
+			}
+		}
+		final byte[][] compressed = new byte[pixels.length][];
+		for (int v = 0; v < pixels.length; v++)
+		{
+			compressed[v] = compress(pixels[v], variants.get(v).dictionary);
+		}
+		synchronized (this)
+		{
+			append(codePoint, compressed);
+		}
+	}
+
+	/**
+	 * Make the dictionary of each {@link Variant} from the glyphs trained
+	 * from, in code point order, begin its file, and then append the glyphs
+	 * held.
+	 */
+	private void begin ()
+	{
+		trained = true;
+		final List<Integer> sampled =
+			expected.subList(0, Math.min(sampleGlyphs, expected.size()));
+		for (int v = 0; v < variants.size(); v++)
+		{
+			final Variant variant = variants.get(v);
+			final List<byte[]> samples = new ArrayList<>();
+			for (final int codePoint : sampled)
+			{
+				final byte[][] pixels = waiting.get(codePoint);
+				if (pixels != null)
+				{
+					samples.add(pixels[v]);
+				}
+			}
+			try
+			{
+				variant.begin(samples);
+			}
+			catch (IOException ex)
+			{
+				System.err.println("Could not write " + variant.fileName);
+				ex.printStackTrace();
+			}
+		}
+		waiting.forEach((codePoint, pixels) ->
+		{
+			final byte[][] compressed = new byte[pixels.length][];
+			for (int v = 0; v < pixels.length; v++)
+			{
+				compressed[v] =
+					compress(pixels[v], variants.get(v).dictionary);
+			}
+			append(codePoint, compressed);
+		});
+		waiting.clear();
+	}
+
+	/**
+	 * Append the compressed pixels of a glyph to the file of each {@link
+	 * Variant}.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 * @param compressed
+	 *        The compressed pixels of each {@code Variant}.
+	 */
+	private void append (
+		final int codePoint,
+		final @NotNull byte[][] compressed)
+	{
+		for (int v = 0; v < compressed.length; v++)
+		{
+			final Variant variant = variants.get(v);
+			if (variant.channel == null)
+			{
+				continue;
+			}
+			try
+			{
+				variant.append(codePoint, compressed[v]);
+			}
+			catch (IOException ex)
+			{
+				System.err.println("Could not write " + variant.fileName);
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Write the index of each file and close it. If fewer glyphs were drawn
+	 * than were expected, the dictionaries are trained from those there are.
+	 */
+	synchronized void finish ()
+	{
+		if (!trained)
+		{
+			begin();
+		}
+		for (final Variant variant : variants)
+		{
+			if (variant.channel == null)
+			{
+				continue;
+			}
+			try
+			{
+				variant.finish();
+			}
+			catch (IOException ex)
+			{
+				System.err.println("Could not write " + variant.fileName);
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Add every glyph of each file to a {@link Manifest.Part}. The files must
+	 * have been {@linkplain #finish() finished}.
+	 *
+	 * @param part
+	 *        The {@code Manifest.Part} of the selection.
+	 */
+	synchronized void describe (final @NotNull Manifest.Part part)
+	{
+		for (final Variant variant : variants)
+		{
+			variant.index.forEach((codePoint, place) ->
+			{
+				final Rectangle glyphBounds = bounds.get(codePoint);
+				part.add(
+					variant.name,
+					codePoint,
+					variant.fileName,
+					place[0],
+					(int) place[1],
+					new Rectangle(
+						0, 0, glyphBounds.width, glyphBounds.height),
+					glyphBounds);
+			});
+		}
+	}
+
+	/**
+	 * Answer a preset dictionary made from the provided pixels: as many of
+	 * the last of them, laid end to end, as a zlib window holds. Whole glyphs
+	 * serve better than their most frequent strings, since a match may then
+	 * run on across the edges and runs of a glyph as it would in another.
+	 *
+	 * @param samples
+	 *        The pixels of the glyphs to make the dictionary from, in order.
+	 * @return The dictionary, at most {@link #dictionaryBytes} long.
+	 */
+	private static @NotNull byte[] dictionary (
+		final @NotNull List<byte[]> samples)
+	{
+		int total = 0;
+		for (final byte[] sample : samples)
+		{
+			total += sample.length;
+		}
+		final byte[] dictionary = new byte[Math.min(dictionaryBytes, total)];
+		int at = dictionary.length;
+		for (int s = samples.size() - 1; s >= 0 && at > 0; s--)
+		{
+			final byte[] sample = samples.get(s);
+			final int length = Math.min(at, sample.length);
+			at -= length;
+			System.arraycopy(
+				sample, sample.length - length, dictionary, at, length);
+		}
+		return dictionary;
+	}
+
+	/**
+	 * Compress pixels as a zlib stream against a preset dictionary.
+	 *
+	 * @param pixels
+	 *        The pixels to compress.
+	 * @param dictionary
+	 *        The preset dictionary, which may be empty.
+	 * @return The zlib stream, or no bytes if there are no pixels.
+	 */
+	private static @NotNull byte[] compress (
+		final @NotNull byte[] pixels,
+		final @Nullable byte[] dictionary)
+	{
+		if (pixels.length == 0)
+		{
+			return pixels;
+		}
+		final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try
+		{
+			if (dictionary != null && dictionary.length > 0)
+			{
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(pixels);
+			deflater.finish();
+			final ByteArrayOutputStream out =
+				new ByteArrayOutputStream(pixels.length / 4 + 64);
+			final byte[] buffer = new byte[4096];
+			while (!deflater.finished())
+			{
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Write the remainder of a {@link ByteBuffer} to a {@link FileChannel}
+	 * at the provided position.
+	 *
+	 * @param channel
+	 *        The {@code FileChannel} to write to.
+	 * @param buffer
+	 *        The {@code ByteBuffer} to write.
+	 * @param position
+	 *        The position in the file to write at.
+	 * @return The position after the bytes written.
+	 * @throws IOException
+	 *         If the bytes could not be written.
+	 */
+	private static long write (
+		final @NotNull FileChannel channel,
+		final @NotNull ByteBuffer buffer,
+		final long position)
+	throws IOException
+	{
+		long at = position;
+		while (buffer.hasRemaining())
+		{
+			at += channel.write(buffer, at);
+		}
+		return at;
+	}
+
+	/**
+	 * Create a {@link GlyphBundle}.
+	 *
+	 * @param baseDirectory
+	 *        The base directory to write the files in.
+	 * @param selection
+	 *        The {@link Selection} the glyphs belong to.
+	 * @param colors
+	 *        The {@link NamedColor}s to draw in on a transparent background,
+	 *        a file each.
+	 * @param pairs
+	 *        The {@link ColorPair}s to draw with, a file each.
+	 * @param masks
+	 *        Whether to write a file of the uncolored masks of the glyphs,
+	 *        for a renderer to tint.
+	 */
+	GlyphBundle (
+		final @NotNull String baseDirectory,
+		final @NotNull Selection selection,
+		final @NotNull List<NamedColor> colors,
+		final @NotNull List<ColorPair> pairs,
+		final boolean masks)
+	{
+		this.outputMode = selection.outputMode();
+		this.width = selection.pixelWidth();
+		this.height = selection.pixelHeight();
+		for (final NamedColor color : colors)
+		{
+			variants.add(new Variant(
+				color.name(),
+				FileUtility.createSelectionFileName(
+					baseDirectory, selection, "." + color.name() + ".bundle"),
+				color,
+				null));
+		}
+		for (final ColorPair pair : pairs)
+		{
+			variants.add(new Variant(
+				pair.name(),
+				FileUtility.createSelectionFileName(
+					baseDirectory, selection, "." + pair.name() + ".bundle"),
+				null,
+				pair));
+		}
+		if (masks)
+		{
+			variants.add(new Variant(
+				ColorMode.maskName,
+				FileUtility.createSelectionFileName(
+					baseDirectory,
+					selection,
+					"." + ColorMode.maskName + ".bundle"),
+				null,
+				null));
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * GlyphClassifier.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+
+/**
+ * A {@code GlyphClassifier} decides whether a character has anything to draw
+ * before any image is rendered for it.
+ *
+ * <p>
+ * A character is not drawable when it is a control, format, separator,
+ * surrogate, or unassigned code point, when the {@link Font} maps it to the
+ * {@linkplain Font#getMissingGlyphCode() missing glyph}, or when its glyph
+ * outline is empty. This does not depend on the canvas size, and the glyph
+ * is looked up through the {@link GlyphOutlineCache} so that later sizes and
+ * renders reuse it.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class GlyphClassifier
+{
+	/**
+	 * Answer whether the {@link Character#getType(int) character type} of the
+	 * code point can never have visible ink.
+	 *
+	 * @param codePoint
+	 *        The character code point to check.
+	 * @return {@code true} if the code point is never drawable; {@code false}
+	 *         otherwise.
+	 */
+	private static boolean isNonDrawableType (final int codePoint)
+	{
+		switch (Character.getType(codePoint))
+		{
+			case Character.CONTROL:
+			case Character.FORMAT:
+			case Character.SPACE_SEPARATOR:
+			case Character.LINE_SEPARATOR:
+			case Character.PARAGRAPH_SEPARATOR:
+			case Character.SURROGATE:
+			case Character.UNASSIGNED:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Answer whether the single-character {@code String} produces any visible
+	 * ink when rendered in the provided {@link Font}.
+	 *
+	 * @param font
+	 *        The target {@code Font} for the character.
+	 * @param text
+	 *        The single-character {@code String} to classify.
+	 * @return {@code true} if the character is drawable; {@code false}
+	 *         otherwise.
+	 */
+	static boolean isDrawable (
+		final @NotNull Font font,
+		final @NotNull String text)
+	{
+		if (isNonDrawableType(text.codePointAt(0)))
+		{
+			return false;
+		}
+		final GlyphOutlineCache.CachedGlyph glyph =
+			GlyphOutlineCache.glyph(font, text);
+		return !glyph.isMissing() && !glyph.isEmpty();
+	}
+
+	// Should never be instantiated as it just provides static methods.
+	private GlyphClassifier ()
+	{
+		// No implementation.
+	}
+}
@@ -0,0 +1,345 @@
+/*
+ * GlyphLayers.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import raa.configuration.State.Effect;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@code GlyphLayers} is the {@link GlyphMask} of a glyph together with the
+ * coverage layers of its {@linkplain Effect effects}, drawn beneath it in
+ * their own colors.
+ *
+ * <p>
+ * The effect layers are computed once per glyph and composited once into a
+ * color independent underlay; each color then costs a single pass that
+ * draws the glyph over the underlay.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class GlyphLayers
+{
+	/**
+	 * The {@link GlyphMask} of the glyph.
+	 */
+	private final @NotNull GlyphMask glyph;
+
+	/**
+	 * Answer the {@link GlyphMask} of the glyph.
+	 *
+	 * @return A {@code GlyphMask}.
+	 */
+	@NotNull GlyphMask glyph ()
+	{
+		return glyph;
+	}
+
+	/**
+	 * The coverage layers of the effects, bottom first.
+	 */
+	private final @NotNull List<GlyphMask> layers;
+
+	/**
+	 * The {@link Color} of each of the {@link #layers}.
+	 */
+	private final @NotNull List<Color> colors;
+
+	/**
+	 * The premultiplied alpha, red, green, and blue of the composited {@link
+	 * #layers}, each from {@code 0} to {@code 1}, four per pixel; {@code null}
+	 * until the first {@link #image(OutputMode, Color) image} with effects.
+	 */
+	private float[] underlay;
+
+	/**
+	 * Answer a {@link GlyphLayers} for the {@link GlyphMask} of a glyph with
+	 * the layers of the provided {@link Effect}s.
+	 *
+	 * @param glyph
+	 *        The {@code GlyphMask} of the glyph.
+	 * @param effects
+	 *        The {@code Effect}s, bottom first.
+	 * @return A {@code GlyphLayers}.
+	 */
+	static @NotNull GlyphLayers of (
+		final @NotNull GlyphMask glyph,
+		final @NotNull List<Effect> effects)
+	{
+		if (effects.isEmpty())
+		{
+			return new GlyphLayers(
+				glyph, Collections.emptyList(), Collections.emptyList());
+		}
+		final List<GlyphMask> layers = new ArrayList<>(effects.size());
+		final List<Color> colors = new ArrayList<>(effects.size());
+		for (final Effect effect : effects)
+		{
+			layers.add(effect.kind().layer(glyph, effect));
+			colors.add(effect.color());
+		}
+		return new GlyphLayers(glyph, layers, colors);
+	}
+
+	/**
+	 * Answer these {@link GlyphLayers} reduced to a smaller canvas.
+	 *
+	 * @param filter
+	 *        The {@link MipmapFilter} to reduce each mask with.
+	 * @param width
+	 *        The width in pixels of the smaller canvas.
+	 * @param height
+	 *        The height in pixels of the smaller canvas.
+	 * @return A {@code GlyphLayers}.
+	 */
+	@NotNull GlyphLayers downsample (
+		final @NotNull MipmapFilter filter,
+		final int width,
+		final int height)
+	{
+		final List<GlyphMask> reduced = new ArrayList<>(layers.size());
+		for (final GlyphMask layer : layers)
+		{
+			reduced.add(filter.downsample(layer, width, height));
+		}
+		return new GlyphLayers(
+			filter.downsample(glyph, width, height), reduced, colors);
+	}
+
+	/**
+	 * Answer the smallest rectangle that holds every covered pixel of the
+	 * glyph and of its effects.
+	 *
+	 * @return A {@link Rectangle} of at least one pixel.
+	 */
+	@NotNull Rectangle bounds ()
+	{
+		final Rectangle bounds = glyph.bounds();
+		for (final GlyphMask layer : layers)
+		{
+			bounds.add(layer.bounds());
+		}
+		return bounds;
+	}
+
+	/**
+	 * Answer the part of these {@link GlyphLayers} inside the provided
+	 * rectangle.
+	 *
+	 * @param bounds
+	 *        The {@link Rectangle} to keep.
+	 * @return A {@code GlyphLayers} the size of {@code bounds}.
+	 */
+	@NotNull GlyphLayers crop (final @NotNull Rectangle bounds)
+	{
+		final List<GlyphMask> cropped = new ArrayList<>(layers.size());
+		for (final GlyphMask layer : layers)
+		{
+			cropped.add(layer.crop(bounds));
+		}
+		return new GlyphLayers(glyph.crop(bounds), cropped, colors);
+	}
+
+	/**
+	 * Answer the {@link PooledRaster} of the glyph drawn in the provided
+	 * {@link Color} over its effects.
+	 *
+	 * @param mode
+	 *        The {@link OutputMode} that draws the glyph when there are no
+	 *        effects.
+	 * @param color
+	 *        The {@code Color} to draw the glyph in.
+	 * @return A {@code PooledRaster}, to be released once encoded.
+	 */
+	@NotNull PooledRaster raster (
+		final @NotNull OutputMode mode,
+		final @NotNull Color color)
+	{
+		if (layers.isEmpty())
+		{
+			return mode.raster(glyph, color);
+		}
+		final PooledRaster raster = PooledRaster.direct(
+			glyph.width(), glyph.height(), PooledRaster.rgba);
+		final IntBuffer pixels = raster.pixels.asIntBuffer();
+		for (int i = 0; i < pixels.limit(); i++)
+		{
+			final int argb = over(i, color);
+			pixels.put(i, (argb << 8) | (argb >>> 24));
+		}
+		return raster;
+	}
+
+	/**
+	 * Answer the {@link PooledRaster} of the coverage of the glyph, for a
+	 * renderer to tint. A plan in palette mode has no effects, which have
+	 * colors of their own.
+	 *
+	 * @return A {@link PooledRaster#gray} {@code PooledRaster}, to be
+	 *         released once encoded.
+	 */
+	@NotNull PooledRaster grayRaster ()
+	{
+		return glyph.grayRaster();
+	}
+
+	/**
+	 * Answer the opaque {@link PooledRaster} of the glyph drawn in the
+	 * foreground of the provided {@link ColorPair} over its effects and the
+	 * background.
+	 *
+	 * @param mode
+	 *        The {@link OutputMode} that draws the glyph when there are no
+	 *        effects.
+	 * @param pair
+	 *        The {@code ColorPair} to draw with.
+	 * @return A {@code PooledRaster}, to be released once encoded.
+	 */
+	@NotNull PooledRaster raster (
+		final @NotNull OutputMode mode,
+		final @NotNull ColorPair pair)
+	{
+		if (layers.isEmpty())
+		{
+			return mode.raster(glyph, pair);
+		}
+		final PooledRaster raster = PooledRaster.direct(
+			glyph.width(), glyph.height(), PooledRaster.rgb);
+		final ByteBuffer pixels = raster.pixels;
+		final Color background = pair.background();
+		final int count = glyph.width() * glyph.height();
+		for (int i = 0, p = 0; i < count; i++, p += 3)
+		{
+			final int argb = over(i, pair.foreground());
+			final int a = argb >>> 24;
+			pixels.put(p, (byte) ColorPair.mix(
+				background.getRed(), (argb >> 16) & 0xFF, a));
+			pixels.put(p + 1, (byte) ColorPair.mix(
+				background.getGreen(), (argb >> 8) & 0xFF, a));
+			pixels.put(p + 2, (byte) ColorPair.mix(
+				background.getBlue(), argb & 0xFF, a));
+		}
+		return raster;
+	}
+
+	/**
+	 * Answer a pixel of the glyph drawn in the provided {@link Color} over the
+	 * composited {@link #layers}.
+	 *
+	 * @param i
+	 *        The index of the pixel.
+	 * @param color
+	 *        The {@code Color} to draw the glyph in.
+	 * @return The ARGB of the pixel, not premultiplied.
+	 */
+	private int over (final int i, final @NotNull Color color)
+	{
+		if (underlay == null)
+		{
+			underlay = composite();
+		}
+		final int u = i << 2;
+		final float a =
+			(glyph.coverage()[i] & 0xFF) / 255f * (color.getAlpha() / 255f);
+		final float under = 1 - a;
+		final float outA = a + underlay[u] * under;
+		if (outA <= 0)
+		{
+			return 0;
+		}
+		final float outR = color.getRed() / 255f * a + underlay[u + 1] * under;
+		final float outG =
+			color.getGreen() / 255f * a + underlay[u + 2] * under;
+		final float outB = color.getBlue() / 255f * a + underlay[u + 3] * under;
+		return (Math.round(outA * 255) << 24)
+			| (Math.round(outR / outA * 255) << 16)
+			| (Math.round(outG / outA * 255) << 8)
+			| Math.round(outB / outA * 255);
+	}
+
+	/**
+	 * Answer the {@link #layers} composited bottom first in their {@link
+	 * #colors}.
+	 *
+	 * @return The premultiplied alpha, red, green, and blue of each pixel.
+	 */
+	private float[] composite ()
+	{
+		final float[] composite = new float[glyph.coverage().length * 4];
+		for (int l = 0; l < layers.size(); l++)
+		{
+			final byte[] coverage = layers.get(l).coverage();
+			final Color color = colors.get(l);
+			final float alpha = color.getAlpha() / 255f;
+			final float red = color.getRed() / 255f;
+			final float green = color.getGreen() / 255f;
+			final float blue = color.getBlue() / 255f;
+			for (int i = 0, u = 0; i < coverage.length; i++, u += 4)
+			{
+				final float a = (coverage[i] & 0xFF) / 255f * alpha;
+				final float under = 1 - a;
+				composite[u] = a + composite[u] * under;
+				composite[u + 1] = red * a + composite[u + 1] * under;
+				composite[u + 2] = green * a + composite[u + 2] * under;
+				composite[u + 3] = blue * a + composite[u + 3] * under;
+			}
+		}
+		return composite;
+	}
+
+	/**
+	 * Create a {@link GlyphLayers}.
+	 *
+	 * @param glyph
+	 *        The {@link GlyphMask} of the glyph.
+	 * @param layers
+	 *        The coverage layers of the effects, bottom first.
+	 * @param colors
+	 *        The {@link Color} of each of the layers.
+	 */
+	private GlyphLayers (
+		final @NotNull GlyphMask glyph,
+		final @NotNull List<GlyphMask> layers,
+		final @NotNull List<Color> colors)
+	{
+		this.glyph = glyph;
+		this.layers = layers;
+		this.colors = colors;
+	}
+}
@@ -0,0 +1,330 @@
+/*
+ * GlyphMask.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@code GlyphMask} is the 8-bit coverage of a rendered glyph on a canvas,
+ * independent of any {@link Color}. A coverage of {@code 0} is untouched by
+ * the glyph and {@code 255} is fully covered.
+ *
+ * <p>
+ * A glyph is rasterized once into a {@code GlyphMask} and then {@linkplain
+ * #tint(Color) tinted} for each color it is generated in.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class GlyphMask
+{
+	/**
+	 * The width in pixels of the mask.
+	 */
+	private final int width;
+
+	/**
+	 * Answer the width in pixels of the mask.
+	 *
+	 * @return A positive integer.
+	 */
+	int width ()
+	{
+		return width;
+	}
+
+	/**
+	 * The height in pixels of the mask.
+	 */
+	private final int height;
+
+	/**
+	 * Answer the height in pixels of the mask.
+	 *
+	 * @return A positive integer.
+	 */
+	int height ()
+	{
+		return height;
+	}
+
+	/**
+	 * The row-major coverage values, one unsigned byte per pixel.
+	 */
+	private final byte[] coverage;
+
+	/**
+	 * Answer the row-major coverage values, one unsigned byte per pixel.
+	 *
+	 * @return A {@code byte} array of {@link #width} * {@link #height}.
+	 */
+	byte[] coverage ()
+	{
+		return coverage;
+	}
+
+	/**
+	 * Answer the coverage at the given pixel.
+	 *
+	 * @param x
+	 *        The column of the pixel.
+	 * @param y
+	 *        The row of the pixel.
+	 * @return A value from {@code 0} to {@code 255}.
+	 */
+	int coverageAt (final int x, final int y)
+	{
+		return coverage[y * width + x] & 0xFF;
+	}
+
+	/**
+	 * Answer a {@link BufferedImage} of this mask drawn in the provided {@link
+	 * Color}. The color of every pixel is the provided color and its alpha is
+	 * the alpha of the color scaled by the coverage.
+	 *
+	 * @param color
+	 *        The {@code Color} to draw the mask in.
+	 * @return A {@link BufferedImage#TYPE_INT_ARGB} {@code BufferedImage}.
+	 */
+	@NotNull BufferedImage tint (final @NotNull Color color)
+	{
+		final BufferedImage img =
+			new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		final int[] pixels =
+			((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+		MaskKernels.kernels.tint(
+			coverage,
+			color.getRGB() & 0x00FFFFFF,
+			color.getAlpha(),
+			pixels);
+		return img;
+	}
+
+	/**
+	 * Answer the smallest rectangle that holds every pixel of this mask with
+	 * coverage, or the top left pixel if none has any.
+	 *
+	 * @return A {@link Rectangle} of at least one pixel.
+	 */
+	@NotNull Rectangle bounds ()
+	{
+		final MaskKernels kernels = MaskKernels.kernels;
+		int top = 0;
+		while (top < height && kernels.isEmpty(coverage, top * width, width))
+		{
+			top++;
+		}
+		if (top == height)
+		{
+			return new Rectangle(0, 0, 1, 1);
+		}
+		int bottom = height - 1;
+		while (kernels.isEmpty(coverage, bottom * width, width))
+		{
+			bottom--;
+		}
+		final byte[] columns = new byte[width];
+		kernels.combineRows(coverage, width, height, columns);
+		int left = 0;
+		while (columns[left] == 0)
+		{
+			left++;
+		}
+		int right = width - 1;
+		while (columns[right] == 0)
+		{
+			right--;
+		}
+		return new Rectangle(left, top, right - left + 1, bottom - top + 1);
+	}
+
+	/**
+	 * Answer the part of this mask inside the provided rectangle.
+	 *
+	 * @param bounds
+	 *        The {@link Rectangle} to keep, inside this mask.
+	 * @return A {@code GlyphMask} the size of {@code bounds}.
+	 */
+	@NotNull GlyphMask crop (final @NotNull Rectangle bounds)
+	{
+		final byte[] cropped = new byte[bounds.width * bounds.height];
+		for (int y = 0; y < bounds.height; y++)
+		{
+			System.arraycopy(
+				coverage,
+				(bounds.y + y) * width + bounds.x,
+				cropped,
+				y * bounds.width,
+				bounds.width);
+		}
+		return new GlyphMask(bounds.width, bounds.height, cropped);
+	}
+
+	/**
+	 * Answer the number of bytes in each row of this mask {@linkplain
+	 * #packBits() packed} one bit per pixel.
+	 *
+	 * @return A positive integer.
+	 */
+	int packedRowBytes ()
+	{
+		return (width + 7) >> 3;
+	}
+
+	/**
+	 * Answer this mask packed one bit per pixel, set where the coverage is at
+	 * least half. Each row starts on a byte boundary and the leftmost pixel of
+	 * a byte is its most significant bit.
+	 *
+	 * @return A {@code byte} array of {@link #packedRowBytes()} * {@link
+	 *         #height}.
+	 */
+	byte[] packBits ()
+	{
+		final int rowBytes = packedRowBytes();
+		final byte[] bits = new byte[rowBytes * height];
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				if ((coverage[y * width + x] & 0xFF) >= 128)
+				{
+					final int i = y * rowBytes + (x >> 3);
+					bits[i] = (byte) (bits[i] | (0x80 >>> (x & 7)));
+				}
+			}
+		}
+		return bits;
+	}
+
+	/**
+	 * Answer a {@link PooledRaster} of this mask drawn in the provided {@link
+	 * Color}, as {@link #tint(Color)} draws it.
+	 *
+	 * @param color
+	 *        The {@code Color} to draw the mask in.
+	 * @return A {@link PooledRaster#rgba} {@code PooledRaster}.
+	 */
+	@NotNull PooledRaster tintRaster (final @NotNull Color color)
+	{
+		final PooledRaster raster =
+			PooledRaster.direct(width, height, PooledRaster.rgba);
+		MaskKernels.kernels.tintRgba(
+			coverage,
+			color.getRGB() & 0xFFFFFF,
+			color.getAlpha(),
+			raster.pixels);
+		return raster;
+	}
+
+	/**
+	 * Answer a {@link PooledRaster} of the coverage of this mask as eight bit
+	 * gray, for a renderer to tint.
+	 *
+	 * @return A {@link PooledRaster#gray} {@code PooledRaster}.
+	 */
+	@NotNull PooledRaster grayRaster ()
+	{
+		final PooledRaster raster =
+			PooledRaster.direct(width, height, PooledRaster.gray);
+		raster.pixels.put(0, coverage);
+		return raster;
+	}
+
+	/**
+	 * Answer a one bit per pixel {@link PooledRaster} of this mask drawn in
+	 * the provided {@link Color} over another. A pixel is the color where the
+	 * coverage is at least half and the background elsewhere.
+	 *
+	 * @param background
+	 *        The {@code Color} of the pixels without coverage.
+	 * @param color
+	 *        The {@code Color} to draw the mask in.
+	 * @return A {@link PooledRaster#indexed} {@code PooledRaster} with a two
+	 *         entry palette.
+	 */
+	@NotNull PooledRaster binaryRaster (
+		final @NotNull Color background,
+		final @NotNull Color color)
+	{
+		final PooledRaster raster = PooledRaster.indexed(
+			width, height, 1, new int[] {background.getRGB(), color.getRGB()});
+		raster.pixels.put(0, packBits());
+		return raster;
+	}
+
+	/**
+	 * Answer an opaque {@link PooledRaster} of this mask drawn with the
+	 * provided blend table, which maps each coverage to an RGB.
+	 *
+	 * @param blend
+	 *        The 256 entry blend table, such as that of a {@link ColorPair}.
+	 * @return A {@link PooledRaster#rgb} {@code PooledRaster}.
+	 */
+	@NotNull PooledRaster blendRaster (final int[] blend)
+	{
+		final PooledRaster raster =
+			PooledRaster.direct(width, height, PooledRaster.rgb);
+		final ByteBuffer pixels = raster.pixels;
+		for (int i = 0, p = 0; i < coverage.length; i++, p += 3)
+		{
+			final int rgb = blend[coverage[i] & 0xFF];
+			pixels.put(p, (byte) (rgb >> 16));
+			pixels.put(p + 1, (byte) (rgb >> 8));
+			pixels.put(p + 2, (byte) rgb);
+		}
+		return raster;
+	}
+
+	/**
+	 * Create a {@link GlyphMask}.
+	 *
+	 * @param width
+	 *        The width in pixels of the mask.
+	 * @param height
+	 *        The height in pixels of the mask.
+	 * @param coverage
+	 *        The row-major coverage values, one unsigned byte per pixel.
+	 */
+	GlyphMask (final int width, final int height, final byte[] coverage)
+	{
+		assert coverage.length == width * height;
+		this.width = width;
+		this.height = height;
+		this.coverage = coverage;
+	}
+}
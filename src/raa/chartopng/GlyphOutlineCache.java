@@ -0,0 +1,317 @@
+/*
+ * GlyphOutlineCache.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@code GlyphOutlineCache} holds the unhinted outline of each glyph, taken
+ * once at a {@linkplain #referenceSize reference size} and shared by every
+ * size and every selection that uses the same face and style.
+ *
+ * <p>
+ * The outline, bounds, and advance of a glyph at any point size are the
+ * cached ones scaled by an {@link AffineTransform}, so after the first lookup
+ * no further trips through font lookup and shaping are needed.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class GlyphOutlineCache
+{
+	/**
+	 * The point size at which outlines are cached.
+	 */
+	private static final float referenceSize = 1000f;
+
+	/**
+	 * A {@code CachedGlyph} is what is known about one glyph at the {@link
+	 * #referenceSize}.
+	 */
+	static final class CachedGlyph
+	{
+		/**
+		 * The outline of the glyph with its origin at {@code (0, 0)}.
+		 */
+		private final @NotNull Shape outline;
+
+		/**
+		 * Answer the outline of the glyph with its origin at {@code (0, 0)}.
+		 *
+		 * @return A {@link Shape}.
+		 */
+		@NotNull Shape outline ()
+		{
+			return outline;
+		}
+
+		/**
+		 * The bounds of the {@link #outline}.
+		 */
+		private final @NotNull Rectangle2D bounds;
+
+		/**
+		 * The horizontal advance of the glyph.
+		 */
+		private final float advance;
+
+		/**
+		 * Whether the {@link Font} maps the character to its {@linkplain
+		 * Font#getMissingGlyphCode() missing glyph}.
+		 */
+		private final boolean missing;
+
+		/**
+		 * Answer whether the {@link Font} maps the character to its
+		 * {@linkplain Font#getMissingGlyphCode() missing glyph}.
+		 *
+		 * @return {@code true} if the glyph is missing; {@code false}
+		 *         otherwise.
+		 */
+		boolean isMissing ()
+		{
+			return missing;
+		}
+
+		/**
+		 * Answer whether the outline of the glyph encloses no area.
+		 *
+		 * @return {@code true} if the outline is empty; {@code false}
+		 *         otherwise.
+		 */
+		boolean isEmpty ()
+		{
+			return bounds.isEmpty();
+		}
+
+		/**
+		 * Create a {@link CachedGlyph}.
+		 *
+		 * @param glyphs
+		 *        The single-glyph {@link GlyphVector} at the {@link
+		 *        #referenceSize}.
+		 * @param missingGlyphCode
+		 *        The {@linkplain Font#getMissingGlyphCode() missing glyph
+		 *        code} of the {@code Font}.
+		 */
+		CachedGlyph (
+			final @NotNull GlyphVector glyphs,
+			final int missingGlyphCode)
+		{
+			this.outline = glyphs.getOutline();
+			this.bounds = outline.getBounds2D();
+			this.advance = glyphs.getGlyphMetrics(0).getAdvanceX();
+			this.missing = glyphs.getGlyphCode(0) == missingGlyphCode;
+		}
+	}
+
+	/**
+	 * A {@code Key} identifies a glyph independent of point size.
+	 */
+	private static final class Key
+	{
+		/** The {@linkplain Font#getFontName() face name}. */
+		private final @NotNull String fontName;
+
+		/** The {@linkplain Font#getStyle() style} the font is derived with. */
+		private final int style;
+
+		/** The character code point. */
+		private final int codePoint;
+
+		@Override
+		public boolean equals (final Object o)
+		{
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			final Key other = (Key) o;
+			return codePoint == other.codePoint
+				&& style == other.style
+				&& fontName.equals(other.fontName);
+		}
+
+		@Override
+		public int hashCode ()
+		{
+			return Objects.hash(fontName, style, codePoint);
+		}
+
+		/**
+		 * Create a {@link Key}.
+		 *
+		 * @param font
+		 *        The {@link Font} of the glyph.
+		 * @param codePoint
+		 *        The character code point of the glyph.
+		 */
+		Key (final @NotNull Font font, final int codePoint)
+		{
+			this.fontName = font.getFontName();
+			this.style = font.getStyle();
+			this.codePoint = codePoint;
+		}
+	}
+
+	/**
+	 * The cached glyphs.
+	 */
+	private static final Map<Key, CachedGlyph> glyphs =
+		new ConcurrentHashMap<>();
+
+	/**
+	 * Answer the {@link CachedGlyph} of the single-character {@code String},
+	 * taking its outline from the font engine the first time it is asked
+	 * for.
+	 *
+	 * @param font
+	 *        The {@link Font} of the glyph; its size does not matter.
+	 * @param text
+	 *        The single-character {@code String} of the glyph.
+	 * @return A {@code CachedGlyph}.
+	 */
+	static @NotNull CachedGlyph glyph (
+		final @NotNull Font font,
+		final @NotNull String text)
+	{
+		return glyphs.computeIfAbsent(
+			new Key(font, text.codePointAt(0)),
+			key -> new CachedGlyph(
+				font.deriveFont(referenceSize)
+					.createGlyphVector(PNGGenerator.renderContext, text),
+				font.getMissingGlyphCode()));
+	}
+
+	/**
+	 * Answer the {@link AffineTransform} that takes a cached outline to the
+	 * size of the {@link Font} with its origin at the provided position.
+	 *
+	 * @param font
+	 *        The derived {@code Font} whose size is wanted.
+	 * @param x
+	 *        The horizontal position of the glyph origin.
+	 * @param y
+	 *        The vertical position of the baseline.
+	 * @return An {@code AffineTransform}.
+	 */
+	static @NotNull AffineTransform transform (
+		final @NotNull Font font,
+		final float x,
+		final float y)
+	{
+		final double scale = font.getSize2D() / referenceSize;
+		return new AffineTransform(scale, 0, 0, scale, x, y);
+	}
+
+	/**
+	 * Answer the bounds of the glyph outline at the size of the {@link Font}
+	 * with its origin at {@code (0, 0)}.
+	 *
+	 * @param font
+	 *        The derived {@code Font} of the glyph.
+	 * @param text
+	 *        The single-character {@code String} of the glyph.
+	 * @return A {@link Rectangle2D}.
+	 */
+	static @NotNull Rectangle2D bounds (
+		final @NotNull Font font,
+		final @NotNull String text)
+	{
+		final Rectangle2D bounds = glyph(font, text).bounds;
+		final double scale = font.getSize2D() / referenceSize;
+		return new Rectangle2D.Double(
+			bounds.getX() * scale,
+			bounds.getY() * scale,
+			bounds.getWidth() * scale,
+			bounds.getHeight() * scale);
+	}
+
+	/**
+	 * Answer the bounds of the whole pixels the glyph touches at the size of
+	 * the {@link Font} with its origin at {@code (0, 0)}.
+	 *
+	 * @param font
+	 *        The derived {@code Font} of the glyph.
+	 * @param text
+	 *        The single-character {@code String} of the glyph.
+	 * @return A {@link Rectangle}.
+	 */
+	static @NotNull Rectangle pixelBounds (
+		final @NotNull Font font,
+		final @NotNull String text)
+	{
+		final Rectangle2D bounds = bounds(font, text);
+		if (bounds.isEmpty())
+		{
+			return new Rectangle();
+		}
+		final int left = (int) Math.floor(bounds.getMinX());
+		final int top = (int) Math.floor(bounds.getMinY());
+		return new Rectangle(
+			left,
+			top,
+			(int) Math.ceil(bounds.getMaxX()) - left,
+			(int) Math.ceil(bounds.getMaxY()) - top);
+	}
+
+	/**
+	 * Answer the horizontal advance of the glyph at the size of the {@link
+	 * Font}.
+	 *
+	 * @param font
+	 *        The derived {@code Font} of the glyph.
+	 * @param text
+	 *        The single-character {@code String} of the glyph.
+	 * @return The advance in pixels.
+	 */
+	static float advance (
+		final @NotNull Font font,
+		final @NotNull String text)
+	{
+		return glyph(font, text).advance * font.getSize2D() / referenceSize;
+	}
+
+	// Should never be instantiated as it just provides static methods.
+	private GlyphOutlineCache ()
+	{
+		// No implementation.
+	}
+}
@@ -0,0 +1,200 @@
+/*
+ * GlyphPlacement.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+
+/**
+ * A {@code GlyphPlacement} is the position of a single character on the
+ * canvas of its PNG, as decided by a {@link LayoutMode}, ready to be
+ * {@linkplain #rasterize(GlyphRasterizer) rasterized}.
+ *
+ * @author Richard Arriaga
+ */
+final class GlyphPlacement
+{
+	/**
+	 * The single-character {@code String} that holds the character targeted
+	 * for PNG generation.
+	 */
+	private final @NotNull String text;
+
+	/**
+	 * Answer the single-character {@code String} that holds the character
+	 * targeted for PNG generation.
+	 *
+	 * @return A {@code String}.
+	 */
+	@NotNull String text ()
+	{
+		return text;
+	}
+
+	/**
+	 * The target {@link Font} for the character.
+	 */
+	private final @NotNull Font font;
+
+	/**
+	 * Answer the target {@link Font} for the character.
+	 *
+	 * @return A {@code Font}.
+	 */
+	@NotNull Font font ()
+	{
+		return font;
+	}
+
+	/**
+	 * The total height in pixels of the PNG.
+	 */
+	private final int pixelHeight;
+
+	/**
+	 * The total width in pixels of the PNG.
+	 */
+	private final int pixelWidth;
+
+	/**
+	 * The number of pixels to move the font away from the origin along the
+	 * horizontal axis.
+	 */
+	private final float widthOffset;
+
+	/**
+	 * Answer the number of pixels to move the font away from the origin along
+	 * the horizontal axis.
+	 *
+	 * @return A {@code float}.
+	 */
+	float widthOffset ()
+	{
+		return widthOffset;
+	}
+
+	/**
+	 * The number of pixels to move the font away from the origin along the
+	 * vertical axis; this is where the baseline of the glyph falls.
+	 */
+	private final float heightOffset;
+
+	/**
+	 * Answer the number of pixels to move the font away from the origin along
+	 * the vertical axis; this is where the baseline of the glyph falls.
+	 *
+	 * @return A {@code float}.
+	 */
+	float heightOffset ()
+	{
+		return heightOffset;
+	}
+
+	/**
+	 * Answer the {@link GlyphMask} of the placed character.
+	 *
+	 * @param rasterizer
+	 *        The {@link GlyphRasterizer} to render with.
+	 * @param hints
+	 *        The {@link RenderingHints} to render with.
+	 * @return A {@code GlyphMask}.
+	 */
+	@NotNull GlyphMask rasterize (
+		final @NotNull GlyphRasterizer rasterizer,
+		final @NotNull RenderingHints hints)
+	{
+		return rasterizer.rasterize(
+			text,
+			font,
+			hints,
+			pixelHeight,
+			pixelWidth,
+			widthOffset,
+			heightOffset);
+	}
+
+	/**
+	 * Answer this {@link GlyphPlacement} enlarged by a whole factor: the
+	 * font size, canvas, and offsets are all multiplied by it, so the glyph
+	 * lands on the same place of the larger canvas.
+	 *
+	 * @param factor
+	 *        The positive factor to enlarge by.
+	 * @return A {@code GlyphPlacement}.
+	 */
+	@NotNull GlyphPlacement scaled (final int factor)
+	{
+		return new GlyphPlacement(
+			text,
+			font.deriveFont(font.getSize2D() * factor),
+			pixelHeight * factor,
+			pixelWidth * factor,
+			widthOffset * factor,
+			heightOffset * factor);
+	}
+
+	/**
+	 * Create a {@link GlyphPlacement}.
+	 *
+	 * @param text
+	 *        The single-character {@code String} that holds the character
+	 *        targeted for PNG generation.
+	 * @param font
+	 *        The target {@link Font} for the character.
+	 * @param pixelHeight
+	 *        The total height in pixels of the PNG.
+	 * @param pixelWidth
+	 *        The total width in pixels of the PNG.
+	 * @param widthOffset
+	 *        The number of pixels to move the font away from the origin along
+	 *        the horizontal axis.
+	 * @param heightOffset
+	 *        The number of pixels to move the font away from the origin along
+	 *        the vertical axis.
+	 */
+	GlyphPlacement (
+		final @NotNull String text,
+		final @NotNull Font font,
+		final int pixelHeight,
+		final int pixelWidth,
+		final float widthOffset,
+		final float heightOffset)
+	{
+		this.text = text;
+		this.font = font;
+		this.pixelHeight = pixelHeight;
+		this.pixelWidth = pixelWidth;
+		this.widthOffset = widthOffset;
+		this.heightOffset = heightOffset;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * GlyphRasterizer.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+
+/**
+ * A {@code GlyphRasterizer} renders a single character into a {@link
+ * GlyphMask}.
+ *
+ * <p>
+ * Implementations must be safe to use from many threads at once, as glyphs
+ * are generated concurrently.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+interface GlyphRasterizer
+{
+	/**
+	 * Answer a {@link GlyphMask} of the indicated character.
+	 *
+	 * @param text
+	 *        The single-character {@code String} that holds the character
+	 *        targeted for PNG generation.
+	 * @param font
+	 *        The target {@link Font} for the character.
+	 * @param hints
+	 *        The {@link RenderingHints} to render with. A rasterizer that does
+	 *        not render through Java2D honors only those it can.
+	 * @param pixelHeight
+	 *        The total height in pixels of the mask.
+	 * @param pixelWidth
+	 *        The total width in pixels of the mask.
+	 * @param widthOffset
+	 *        The number of pixels to move the font away from the origin along
+	 *        the horizontal axis.
+	 * @param heightOffset
+	 *        The number of pixels to move the font away from the origin along
+	 *        the vertical axis. <em>NOTE: The vertical origin is equal to the
+	 *        pixel height of the entire mask.</em>
+	 * @return A {@code GlyphMask}.
+	 */
+	@NotNull GlyphMask rasterize (
+		@NotNull String text,
+		@NotNull Font font,
+		@NotNull RenderingHints hints,
+		int pixelHeight,
+		int pixelWidth,
+		float widthOffset,
+		float heightOffset);
+
+	/**
+	 * Release whatever the current thread holds to render glyphs. Called as
+	 * a worker thread ends.
+	 */
+	default void releaseThread ()
+	{
+		// Most rasterizers hold nothing for a thread.
+	}
+
+	/**
+	 * Release whatever every thread holds to render glyphs. Called once the
+	 * run has rendered its last glyph.
+	 */
+	default void release ()
+	{
+		// Most rasterizers hold nothing for a thread.
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Java2DRasterizer.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+/**
+ * A {@code Java2DRasterizer} is the {@link GlyphRasterizer} that renders
+ * glyphs through {@link Graphics2D#drawString(String, float, float)}.
+ *
+ * @author Richard Arriaga
+ */
+final class Java2DRasterizer
+implements GlyphRasterizer
+{
+	@Override
+	public @NotNull GlyphMask rasterize (
+		final @NotNull String text,
+		final @NotNull Font font,
+		final @NotNull RenderingHints hints,
+		final int pixelHeight,
+		final int pixelWidth,
+		final float widthOffset,
+		final float heightOffset)
+	{
+		BufferedImage img = new BufferedImage(
+			pixelWidth,
+			pixelHeight,
+			BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g2d = createGraphics2D(img, hints);
+		g2d.setFont(font);
+		g2d.setColor(Color.WHITE);
+		g2d.drawString(text, widthOffset, heightOffset);
+
+		g2d.dispose();
+
+		final int[] pixels =
+			((DataBufferInt) img.getRaster().getDataBuffer()).getData();
+		final byte[] coverage = new byte[pixels.length];
+		for (int i = 0; i < pixels.length; i++)
+		{
+			coverage[i] = (byte) (pixels[i] >>> 24);
+		}
+		return new GlyphMask(pixelWidth, pixelHeight, coverage);
+	}
+
+	/**
+	 * Answer a {@link Graphics2D} with the provided preferences.
+	 *
+	 * @param img
+	 *        The {@link BufferedImage} to create the {@code Graphics2D} from.
+	 * @param hints
+	 *        The {@link RenderingHints} to render with.
+	 * @return A {@code Graphics2D}.
+	 */
+	private static Graphics2D createGraphics2D (
+		final @NotNull BufferedImage img,
+		final @NotNull RenderingHints hints)
+	{
+		Graphics2D g2d = img.createGraphics();
+		g2d.setRenderingHints(hints);
+
+		return g2d;
+	}
+}
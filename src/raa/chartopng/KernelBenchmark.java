@@ -0,0 +1,235 @@
+/*
+ * KernelBenchmark.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A main application class that compares the {@link ScalarMaskKernels} with
+ * the {@link VectorMaskKernels} on synthetic glyph masks, checking that both
+ * produce the same results and printing the throughput of each kernel.
+ *
+ * <p>
+ * Arguments (all optional): canvas size, number of masks. Run with {@code
+ * --add-modules jdk.incubator.vector}.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+public class KernelBenchmark
+{
+	public static void main(String[] args)
+	{
+		final int canvas = args.length > 0 ? Integer.parseInt(args[0]) : 128;
+		final int count = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+		final MaskKernels scalar = new ScalarMaskKernels();
+		final MaskKernels vector = MaskKernels.kernels;
+		if (vector instanceof ScalarMaskKernels)
+		{
+			System.out.println(
+				"The jdk.incubator.vector module is not present.");
+			return;
+		}
+
+		// Masks shaped like glyphs: empty margins around a covered body.
+		final Random random = new Random(canvas);
+		final byte[][] masks = new byte[count][canvas * canvas];
+		for (final byte[] mask : masks)
+		{
+			final int top = random.nextInt(canvas / 3);
+			final int left = random.nextInt(canvas / 3);
+			for (int y = top; y < canvas - top; y++)
+			{
+				for (int x = left; x < canvas - left; x++)
+				{
+					mask[y * canvas + x] = (byte) random.nextInt(256);
+				}
+			}
+		}
+		final int[][] pixels = new int[count][canvas * canvas];
+		for (int i = 0; i < count; i++)
+		{
+			scalar.tint(masks[i], 0x336699, 200, pixels[i]);
+		}
+
+		verify(scalar, vector, masks, pixels, canvas);
+
+		System.out.printf(
+			"%d masks of %dx%d, %s%n",
+			count, canvas, canvas, vector.getClass().getSimpleName());
+		System.out.printf(
+			"%-12s %14s %14s %10s%n",
+			"kernel", "scalar Mpx/s", "vector Mpx/s", "speedup");
+		// The early passes only warm up the JIT.
+		final int passes = 5;
+		final long pixelCount = (long) count * canvas * canvas;
+		final byte[] columns = new byte[canvas];
+		final int[] tinted = new int[canvas * canvas];
+		final ByteBuffer raster =
+			ByteBuffer.allocateDirect(canvas * canvas * 4);
+		final byte[] grayAlpha = new byte[canvas * canvas * 2];
+		for (int pass = 0; pass < passes; pass++)
+		{
+			final long[] nanos = new long[10];
+			final MaskKernels[] candidates = {scalar, vector};
+			for (int k = 0; k < candidates.length; k++)
+			{
+				final MaskKernels kernels = candidates[k];
+				long t0 = System.nanoTime();
+				int rows = 0;
+				for (final byte[] mask : masks)
+				{
+					for (int y = 0; y < canvas; y++)
+					{
+						if (kernels.isEmpty(mask, y * canvas, canvas))
+						{
+							rows++;
+						}
+					}
+				}
+				long t1 = System.nanoTime();
+				nanos[k] = t1 - t0;
+				for (final byte[] mask : masks)
+				{
+					kernels.combineRows(mask, canvas, canvas, columns);
+					rows += columns[0];
+				}
+				t0 = System.nanoTime();
+				nanos[2 + k] = t0 - t1;
+				for (final byte[] mask : masks)
+				{
+					Arrays.fill(tinted, 0);
+					kernels.tint(mask, 0x336699, 200, tinted);
+				}
+				t1 = System.nanoTime();
+				nanos[4 + k] = t1 - t0;
+				for (final byte[] mask : masks)
+				{
+					kernels.tintRgba(mask, 0x336699, 200, raster);
+				}
+				t0 = System.nanoTime();
+				nanos[6 + k] = t0 - t1;
+				for (final int[] argb : pixels)
+				{
+					kernels.grayAlpha(argb, grayAlpha);
+				}
+				nanos[8 + k] = System.nanoTime() - t0;
+				if (rows == Integer.MIN_VALUE)
+				{
+					System.out.println(rows);
+				}
+			}
+			if (pass == passes - 1)
+			{
+				final String[] names =
+					{"rows", "columns", "tint", "tint rgba", "gray+alpha"};
+				for (int n = 0; n < names.length; n++)
+				{
+					final double s = pixelCount * 1e3 / nanos[2 * n];
+					final double v = pixelCount * 1e3 / nanos[2 * n + 1];
+					System.out.printf(
+						"%-12s %14.1f %14.1f %9.2fx%n",
+						names[n], s, v, v / s);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check that the two {@link MaskKernels} agree on every mask.
+	 *
+	 * @param scalar
+	 *        The reference {@code MaskKernels}.
+	 * @param vector
+	 *        The {@code MaskKernels} to check.
+	 * @param masks
+	 *        The coverage masks.
+	 * @param pixels
+	 *        The ARGB rasters.
+	 * @param canvas
+	 *        The width and height in pixels of each mask.
+	 */
+	private static void verify (
+		final MaskKernels scalar,
+		final MaskKernels vector,
+		final byte[][] masks,
+		final int[][] pixels,
+		final int canvas)
+	{
+		for (int i = 0; i < masks.length; i++)
+		{
+			final byte[] mask = masks[i];
+			for (int y = 0; y < canvas; y++)
+			{
+				if (scalar.isEmpty(mask, y * canvas, canvas)
+					!= vector.isEmpty(mask, y * canvas, canvas))
+				{
+					throw new AssertionError("isEmpty differs on row " + y);
+				}
+			}
+			final byte[] expectedColumns = new byte[canvas];
+			final byte[] actualColumns = new byte[canvas];
+			scalar.combineRows(mask, canvas, canvas, expectedColumns);
+			vector.combineRows(mask, canvas, canvas, actualColumns);
+			final int[] expectedPixels = new int[mask.length];
+			final int[] actualPixels = new int[mask.length];
+			final ByteBuffer expectedRgba =
+				ByteBuffer.allocate(mask.length * 4);
+			final ByteBuffer actualRgba = ByteBuffer.allocate(mask.length * 4);
+			for (int alpha = 0; alpha < 256; alpha += 51)
+			{
+				scalar.tint(mask, 0xABCDEF, alpha, expectedPixels);
+				vector.tint(mask, 0xABCDEF, alpha, actualPixels);
+				scalar.tintRgba(mask, 0xABCDEF, alpha, expectedRgba);
+				Arrays.fill(actualRgba.array(), (byte) -1);
+				vector.tintRgba(mask, 0xABCDEF, alpha, actualRgba);
+				if (!expectedRgba.equals(actualRgba))
+				{
+					throw new AssertionError("tintRgba differs on mask " + i);
+				}
+			}
+			final byte[] expectedGray = new byte[mask.length * 2];
+			final byte[] actualGray = new byte[mask.length * 2];
+			scalar.grayAlpha(pixels[i], expectedGray);
+			vector.grayAlpha(pixels[i], actualGray);
+			if (!Arrays.equals(expectedColumns, actualColumns)
+				|| !Arrays.equals(expectedPixels, actualPixels)
+				|| !Arrays.equals(expectedGray, actualGray))
+			{
+				throw new AssertionError("kernels differ on mask " + i);
+			}
+		}
+	}
+}
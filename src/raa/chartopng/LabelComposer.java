@@ -0,0 +1,422 @@
+/*
+ * LabelComposer.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.awt.font.LineMetrics;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * A {@code LabelComposer} builds the {@link GlyphMask} of a multi-character
+ * label by copying the cached mask of each character to its pen position
+ * along a shared baseline. A character is rasterized only the first time any
+ * label uses it, so composing a label costs little more than copying memory.
+ *
+ * <p>
+ * Pen positions are rounded to whole pixels so that cached masks can be
+ * copied as they are; a label may differ from one drawn whole by up to half a
+ * pixel per character.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class LabelComposer
+{
+	/**
+	 * A {@code Stamp} is the mask of a single character positioned relative to
+	 * the pen on the baseline.
+	 */
+	private static final class Stamp
+	{
+		/**
+		 * The coverage of the character, or {@code null} if it draws nothing.
+		 */
+		final @Nullable GlyphMask mask;
+
+		/**
+		 * The horizontal position of the left of the {@link #mask} relative to
+		 * the pen.
+		 */
+		final int x;
+
+		/**
+		 * The vertical position of the top of the {@link #mask} relative to
+		 * the baseline.
+		 */
+		final int y;
+
+		/**
+		 * The distance in pixels the pen moves past the character.
+		 */
+		final float advance;
+
+		/**
+		 * Create a {@link Stamp}.
+		 *
+		 * @param mask
+		 *        The coverage of the character, or {@code null} if it draws
+		 *        nothing.
+		 * @param x
+		 *        The left of the mask relative to the pen.
+		 * @param y
+		 *        The top of the mask relative to the baseline.
+		 * @param advance
+		 *        The distance in pixels the pen moves past the character.
+		 */
+		Stamp (
+			final @Nullable GlyphMask mask,
+			final int x,
+			final int y,
+			final float advance)
+		{
+			this.mask = mask;
+			this.x = x;
+			this.y = y;
+			this.advance = advance;
+		}
+	}
+
+	/**
+	 * A {@code Key} identifies a character, or a pair of adjacent characters,
+	 * in a {@link Font} of a particular size.
+	 */
+	private static final class Key
+	{
+		/** The {@link Font}, including its size and style. */
+		private final @NotNull Font font;
+
+		/** The character code point. */
+		private final int codePoint;
+
+		/** The following code point, or {@code -1} for a lone character. */
+		private final int next;
+
+		@Override
+		public boolean equals (final Object o)
+		{
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			final Key other = (Key) o;
+			return codePoint == other.codePoint
+				&& next == other.next
+				&& font.equals(other.font);
+		}
+
+		@Override
+		public int hashCode ()
+		{
+			return Objects.hash(font, codePoint, next);
+		}
+
+		/**
+		 * Create a {@link Key}.
+		 *
+		 * @param font
+		 *        The {@link Font} of the characters.
+		 * @param codePoint
+		 *        The character code point.
+		 * @param next
+		 *        The following code point, or {@code -1}.
+		 */
+		Key (final @NotNull Font font, final int codePoint, final int next)
+		{
+			this.font = font;
+			this.codePoint = codePoint;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * The {@link GlyphRasterizer} that draws each character once.
+	 */
+	private final @NotNull GlyphRasterizer rasterizer;
+
+	/**
+	 * The {@link RenderingHints} characters are drawn with.
+	 */
+	private final @NotNull RenderingHints hints;
+
+	/**
+	 * Answer the sized {@link Font} that draws a code point, or {@code null}
+	 * if no selected font can.
+	 */
+	private final @NotNull IntFunction<Font> fontFor;
+
+	/**
+	 * Whether the pen is moved by the kerning of adjacent characters.
+	 */
+	private final boolean kerning;
+
+	/**
+	 * The height in pixels of every label.
+	 */
+	private final int pixelHeight;
+
+	/**
+	 * The {@link Stamp} of each character drawn so far.
+	 */
+	private final Map<Key, Stamp> stamps = new ConcurrentHashMap<>();
+
+	/**
+	 * The kerning in pixels of each pair of adjacent characters measured so
+	 * far.
+	 */
+	private final Map<Key, Float> kerns = new ConcurrentHashMap<>();
+
+	/**
+	 * Answer the {@link Stamp} of a character, drawing it if no label has used
+	 * it before.
+	 *
+	 * @param font
+	 *        The sized {@link Font} of the character.
+	 * @param codePoint
+	 *        The character code point.
+	 * @return A {@code Stamp}.
+	 */
+	private @NotNull Stamp stamp (final @NotNull Font font, final int codePoint)
+	{
+		return stamps.computeIfAbsent(new Key(font, codePoint, -1), key ->
+		{
+			final String text = new String(Character.toChars(codePoint));
+			final float advance = GlyphOutlineCache.advance(font, text);
+			final Rectangle bounds = GlyphOutlineCache.pixelBounds(font, text);
+			if (bounds.isEmpty() || !GlyphClassifier.isDrawable(font, text))
+			{
+				return new Stamp(null, 0, 0, advance);
+			}
+			// A pixel of room on each side for coverage that hinting moves
+			// past the outline.
+			final GlyphMask mask = rasterizer.rasterize(
+				text,
+				font,
+				hints,
+				bounds.height + 2,
+				bounds.width + 2,
+				1 - bounds.x,
+				1 - bounds.y);
+			return new Stamp(mask, bounds.x - 1, bounds.y - 1, advance);
+		});
+	}
+
+	/**
+	 * Answer the kerning in pixels between two adjacent characters, measuring
+	 * it if no label has used the pair before.
+	 *
+	 * @param font
+	 *        The sized {@link Font} of both characters.
+	 * @param codePoint
+	 *        The first character code point.
+	 * @param next
+	 *        The second character code point.
+	 * @return The distance the pen moves in addition to the advance of the
+	 *         first character, usually negative.
+	 */
+	private float kern (
+		final @NotNull Font font,
+		final int codePoint,
+		final int next)
+	{
+		return kerns.computeIfAbsent(new Key(font, codePoint, next), key ->
+		{
+			final String pair = new StringBuilder()
+				.appendCodePoint(codePoint)
+				.appendCodePoint(next)
+				.toString();
+			final Font kerned = font.deriveFont(Collections.singletonMap(
+				TextAttribute.KERNING, TextAttribute.KERNING_ON));
+			return new TextLayout(pair, kerned, PNGGenerator.renderContext)
+					.getAdvance()
+				- new TextLayout(pair, font, PNGGenerator.renderContext)
+					.getAdvance();
+		});
+	}
+
+	/**
+	 * Answer the {@link GlyphMask} of a label, {@link #pixelHeight} tall and
+	 * as wide as the characters it draws.
+	 *
+	 * @param label
+	 *        The text of the label.
+	 * @return A {@code GlyphMask}, or {@code null} if no selected font can
+	 *         draw any character of the label.
+	 */
+	@Nullable GlyphMask compose (final @NotNull String label)
+	{
+		final List<Stamp> placed = new ArrayList<>();
+		final List<Integer> pens = new ArrayList<>();
+		float ascent = 0;
+		float descent = 0;
+		float pen = 0;
+		int left = 0;
+		int right = 0;
+		boolean drawable = false;
+		Font previousFont = null;
+		int previous = -1;
+		for (final int codePoint : label.codePoints().toArray())
+		{
+			final Font font = fontFor.apply(codePoint);
+			if (font == null)
+			{
+				previousFont = null;
+				continue;
+			}
+			if (kerning && font.equals(previousFont))
+			{
+				pen += kern(font, previous, codePoint);
+			}
+			drawable = true;
+			final LineMetrics metrics = font.getLineMetrics(
+				new String(Character.toChars(codePoint)),
+				PNGGenerator.renderContext);
+			ascent = Math.max(ascent, metrics.getAscent());
+			descent = Math.max(descent, metrics.getDescent());
+			final Stamp stamp = stamp(font, codePoint);
+			final int x = Math.round(pen);
+			if (stamp.mask != null)
+			{
+				placed.add(stamp);
+				pens.add(x);
+				left = Math.min(left, x + stamp.x);
+				right = Math.max(right, x + stamp.x + stamp.mask.width());
+			}
+			pen += stamp.advance;
+			previousFont = font;
+			previous = codePoint;
+		}
+		if (!drawable)
+		{
+			return null;
+		}
+		right = Math.max(right, (int) Math.ceil(pen));
+		final int width = Math.max(1, right - left);
+		final int baseline =
+			Math.round((pixelHeight - ascent - descent) / 2f + ascent);
+		final byte[] coverage = new byte[width * pixelHeight];
+		for (int s = 0; s < placed.size(); s++)
+		{
+			final Stamp stamp = placed.get(s);
+			blit(
+				stamp.mask,
+				coverage,
+				width,
+				pens.get(s) + stamp.x - left,
+				baseline + stamp.y);
+		}
+		return new GlyphMask(width, pixelHeight, coverage);
+	}
+
+	/**
+	 * Add the coverage of a {@link GlyphMask} into a larger coverage array at
+	 * the provided position, saturating where characters overlap and clipping
+	 * rows that fall outside.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask} to copy.
+	 * @param coverage
+	 *        The coverage to copy into, row by row.
+	 * @param width
+	 *        The width in pixels of a row of {@code coverage}.
+	 * @param x
+	 *        The column of the left of the mask.
+	 * @param y
+	 *        The row of the top of the mask.
+	 */
+	private void blit (
+		final @NotNull GlyphMask mask,
+		final byte[] coverage,
+		final int width,
+		final int x,
+		final int y)
+	{
+		final byte[] source = mask.coverage();
+		final int height = coverage.length / width;
+		final int fromRow = Math.max(0, -y);
+		final int toRow = Math.min(mask.height(), height - y);
+		final int columns = mask.width();
+		for (int row = fromRow; row < toRow; row++)
+		{
+			final int from = row * columns;
+			final int to = (y + row) * width + x;
+			for (int column = 0; column < columns; column++)
+			{
+				final int value = source[from + column] & 0xFF;
+				if (value != 0)
+				{
+					coverage[to + column] = (byte) Math.min(
+						255, (coverage[to + column] & 0xFF) + value);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create a {@link LabelComposer}.
+	 *
+	 * @param rasterizer
+	 *        The {@link GlyphRasterizer} that draws each character once.
+	 * @param hints
+	 *        The {@link RenderingHints} characters are drawn with.
+	 * @param fontFor
+	 *        Answers the sized {@link Font} that draws a code point, or
+	 *        {@code null} if no selected font can.
+	 * @param kerning
+	 *        Whether the pen is moved by the kerning of adjacent characters.
+	 * @param pixelHeight
+	 *        The height in pixels of every label.
+	 */
+	LabelComposer (
+		final @NotNull GlyphRasterizer rasterizer,
+		final @NotNull RenderingHints hints,
+		final @NotNull IntFunction<Font> fontFor,
+		final boolean kerning,
+		final int pixelHeight)
+	{
+		this.rasterizer = rasterizer;
+		this.hints = hints;
+		this.fontFor = fontFor;
+		this.kerning = kerning;
+		this.pixelHeight = pixelHeight;
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * LayoutMode.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@code LayoutMode} is an enum that describes how a glyph is positioned on
+ * the canvas of its PNG.
+ *
+ * @author Richard Arriaga
+ */
+public enum LayoutMode
+{
+	/**
+	 * Center each glyph vertically and horizontally on the canvas based on
+	 * the measured pixel bounds of that glyph.
+	 */
+	CENTER("center"),
+
+	/**
+	 * Place every glyph of a font on the same baseline, computed once from the
+	 * ascent and descent of the font, and center each glyph horizontally on
+	 * its advance width. Rows of tiles line up the way a line of text does.
+	 */
+	BASELINE("baseline");
+
+	/**
+	 * The name of the {@link LayoutMode} as used in the generator plan.
+	 */
+	final String name;
+
+	/**
+	 * Create a {@link LayoutMode}.
+	 *
+	 * @param name
+	 *        The name of the {@code LayoutMode}.
+	 */
+	LayoutMode (final String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * A map that provides a lookup from the {@link LayoutMode#name} to the
+	 * {@link LayoutMode}.
+	 */
+	private static Map<String, LayoutMode> modeMap = new HashMap<>();
+	static
+	{
+		for (LayoutMode mode : LayoutMode.values())
+		{
+			modeMap.put(mode.name, mode);
+		}
+	}
+
+	/**
+	 * Answer the {@link LayoutMode} for the given name.
+	 *
+	 * @param modeName
+	 *        The name of the layout mode to get.
+	 * @return A {@code LayoutMode}, or {@code null} if there is none.
+	 */
+	public static LayoutMode layoutMode (final @NotNull String modeName)
+	{
+		return modeMap.get(modeName);
+	}
+}
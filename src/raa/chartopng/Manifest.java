@@ -0,0 +1,673 @@
+/*
+ * Manifest.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import raa.configuration.State.Selection;
+import raa.utility.FileUtility;
+
+import java.awt.*;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A {@code Manifest} is the index of every glyph image a run writes, so that
+ * a consumer may find a glyph by its selection, color, and code point
+ * instead of by listing directories and parsing file names.
+ *
+ * <p>
+ * Each {@link Selection} adds a {@link Part}, to which an entry is added for
+ * each image of each glyph: a PNG of its own, a place on an atlas page, or a
+ * range of bytes of a texture array or a bundle. The manifest is written to
+ * the base directory, as {@code manifest.bin} and, if asked for, {@code
+ * manifest.json}, once every part is complete.
+ * </p>
+ *
+ * <p>
+ * {@code manifest.bin} takes the form, in little-endian order:
+ * </p>
+ * <ul>
+ * <li>the eight bytes {@code GLYPHMAN} and the 32-bit version;</li>
+ * <li>the 32-bit number of strings, and each string as a 16-bit length and
+ * that many bytes of UTF-8;</li>
+ * <li>the 32-bit number of selections, and for each, the index of its name
+ * among the strings, its canvas width and height, the number and then the
+ * code points no font supports, and the number and then the code points
+ * that draw nothing, each a 32-bit integer;</li>
+ * <li>the 32-bit number of entries, and a 72-byte entry for each image: the
+ * indices among the strings of its selection, its color, the font it is
+ * drawn in, and its file, with its code point between the color and the
+ * font, each a 32-bit integer; the 64-bit offset and 32-bit length of its
+ * bytes in the file, both zero for a PNG of its own; the x, y, width, and
+ * height of its pixels in the image, and of the glyph on its canvas; and
+ * the width and height of its canvas, each a 32-bit integer.</li>
+ * </ul>
+ *
+ * @author Richard Arriaga
+ */
+final class Manifest
+{
+	/**
+	 * An {@code Entry} is where one image of a glyph is.
+	 */
+	private static final class Entry
+	{
+		/** The name of the color or color pair, or of the masks. */
+		final @NotNull String variant;
+
+		/** The code point of the glyph. */
+		final int codePoint;
+
+		/** The name of the {@link Font} the glyph is drawn in. */
+		final @NotNull String font;
+
+		/** The path of the file, relative to the base directory. */
+		final @NotNull String path;
+
+		/** The offset of the bytes of the glyph in the file. */
+		final long offset;
+
+		/** The number of bytes of the glyph in the file. */
+		final int length;
+
+		/** Where the pixels of the glyph are in the image. */
+		final @NotNull Rectangle image;
+
+		/** Where the glyph is on its canvas. */
+		final @NotNull Rectangle bounds;
+
+		/** The size of the canvas. */
+		final @NotNull Dimension canvas;
+
+		/**
+		 * Create an {@link Entry}.
+		 *
+		 * @param variant
+		 *        The name of the color or color pair, or of the masks.
+		 * @param codePoint
+		 *        The code point of the glyph.
+		 * @param font
+		 *        The name of the {@link Font} the glyph is drawn in.
+		 * @param path
+		 *        The path of the file, relative to the base directory.
+		 * @param offset
+		 *        The offset of the bytes of the glyph in the file.
+		 * @param length
+		 *        The number of bytes of the glyph in the file.
+		 * @param image
+		 *        Where the pixels of the glyph are in the image.
+		 * @param bounds
+		 *        Where the glyph is on its canvas.
+		 * @param canvas
+		 *        The size of the canvas.
+		 */
+		Entry (
+			final @NotNull String variant,
+			final int codePoint,
+			final @NotNull String font,
+			final @NotNull String path,
+			final long offset,
+			final int length,
+			final @NotNull Rectangle image,
+			final @NotNull Rectangle bounds,
+			final @NotNull Dimension canvas)
+		{
+			this.variant = variant;
+			this.codePoint = codePoint;
+			this.font = font;
+			this.path = path;
+			this.offset = offset;
+			this.length = length;
+			this.image = image;
+			this.bounds = bounds;
+			this.canvas = canvas;
+		}
+	}
+
+	/**
+	 * A {@code Part} is the share of the {@link Manifest} of one {@link
+	 * Selection}.
+	 */
+	final class Part
+	{
+		/** The {@link Selection} described. */
+		private final @NotNull Selection selection;
+
+		/** The code points of the selection no font supports. */
+		private final @NotNull List<Integer> noCodePoints;
+
+		/** The code points of the selection that draw nothing. */
+		private final @NotNull List<Integer> noImage;
+
+		/**
+		 * The name of the {@link Font} each glyph is drawn in, by code point.
+		 */
+		private final @NotNull Map<Integer, String> fonts = new HashMap<>();
+
+		/**
+		 * Where each glyph is on its canvas, by code point, for the images
+		 * that do not know it themselves.
+		 */
+		private final @NotNull Map<Integer, Rectangle> bounds =
+			new HashMap<>();
+
+		/** The {@link Entry}s, in the order added. */
+		private final @NotNull List<Entry> entries = new ArrayList<>();
+
+		/**
+		 * Record where a glyph is on the canvas of the selection.
+		 *
+		 * @param codePoint
+		 *        The code point of the glyph.
+		 * @param glyphBounds
+		 *        Where the glyph is on its canvas.
+		 */
+		synchronized void bounds (
+			final int codePoint,
+			final @NotNull Rectangle glyphBounds)
+		{
+			bounds.put(codePoint, glyphBounds);
+		}
+
+		/**
+		 * Add an image of a glyph drawn on the canvas of the selection.
+		 *
+		 * @param variant
+		 *        The name of the color or color pair, or of the masks.
+		 * @param codePoint
+		 *        The code point of the glyph.
+		 * @param fileName
+		 *        The name of the file.
+		 * @param offset
+		 *        The offset of the bytes of the glyph in the file.
+		 * @param length
+		 *        The number of bytes of the glyph in the file.
+		 * @param image
+		 *        Where the pixels of the glyph are in the image.
+		 * @param glyphBounds
+		 *        Where the glyph is on its canvas, or {@code null} if it was
+		 *        {@linkplain #bounds(int, Rectangle) recorded}.
+		 */
+		void add (
+			final @NotNull String variant,
+			final int codePoint,
+			final @NotNull String fileName,
+			final long offset,
+			final int length,
+			final @NotNull Rectangle image,
+			final @Nullable Rectangle glyphBounds)
+		{
+			add(
+				variant,
+				codePoint,
+				fileName,
+				offset,
+				length,
+				image,
+				glyphBounds,
+				new Dimension(selection.pixelWidth(), selection.pixelHeight()));
+		}
+
+		/**
+		 * Add an image of a glyph.
+		 *
+		 * @param variant
+		 *        The name of the color or color pair, or of the masks.
+		 * @param codePoint
+		 *        The code point of the glyph.
+		 * @param fileName
+		 *        The name of the file.
+		 * @param offset
+		 *        The offset of the bytes of the glyph in the file.
+		 * @param length
+		 *        The number of bytes of the glyph in the file.
+		 * @param image
+		 *        Where the pixels of the glyph are in the image.
+		 * @param glyphBounds
+		 *        Where the glyph is on its canvas, or {@code null} if it was
+		 *        {@linkplain #bounds(int, Rectangle) recorded}.
+		 * @param canvas
+		 *        The size of the canvas.
+		 */
+		synchronized void add (
+			final @NotNull String variant,
+			final int codePoint,
+			final @NotNull String fileName,
+			final long offset,
+			final int length,
+			final @NotNull Rectangle image,
+			final @Nullable Rectangle glyphBounds,
+			final @NotNull Dimension canvas)
+		{
+			final Rectangle where = glyphBounds != null
+				? glyphBounds
+				: bounds.getOrDefault(
+					codePoint,
+					new Rectangle(0, 0, canvas.width, canvas.height));
+			entries.add(new Entry(
+				variant,
+				codePoint,
+				fonts.computeIfAbsent(codePoint, cp ->
+					selection.fontFor(cp).map(Font::getName).orElse("")),
+				relativePath(fileName),
+				offset,
+				length,
+				image,
+				where,
+				canvas));
+		}
+
+		/**
+		 * Report that every image of the selection has been added. The
+		 * manifest is written once every {@code Part} is complete.
+		 */
+		void complete ()
+		{
+			Manifest.this.complete();
+		}
+
+		/**
+		 * Create a {@link Part}.
+		 *
+		 * @param selection
+		 *        The {@link Selection} described.
+		 * @param noCodePoints
+		 *        The code points of the selection no font supports.
+		 * @param noImage
+		 *        The code points of the selection that draw nothing.
+		 */
+		Part (
+			final @NotNull Selection selection,
+			final @NotNull List<Integer> noCodePoints,
+			final @NotNull List<Integer> noImage)
+		{
+			this.selection = selection;
+			this.noCodePoints = noCodePoints;
+			this.noImage = noImage;
+		}
+	}
+
+	/**
+	 * The eight bytes that begin {@code manifest.bin}.
+	 */
+	private static final byte[] identifier =
+		{'G', 'L', 'Y', 'P', 'H', 'M', 'A', 'N'};
+
+	/**
+	 * The version of the manifest format.
+	 */
+	private static final int version = 1;
+
+	/**
+	 * The number of bytes of an entry of {@code manifest.bin}.
+	 */
+	private static final int entryBytes = 72;
+
+	/**
+	 * The order of the entries of a {@link Part}: by color, then largest
+	 * canvas first, then by code point.
+	 */
+	private static final Comparator<Entry> entryOrder =
+		Comparator.<Entry, String>comparing(entry -> entry.variant)
+			.thenComparing(entry -> -entry.canvas.height)
+			.thenComparingInt(entry -> entry.codePoint);
+
+	/**
+	 * The base directory the run writes to.
+	 */
+	private final @NotNull String baseDirectory;
+
+	/**
+	 * Whether to write {@code manifest.json} as well.
+	 */
+	private final boolean json;
+
+	/**
+	 * The {@link Part}s, one for each {@link Selection}, in order.
+	 */
+	private final @NotNull List<Part> parts = new ArrayList<>();
+
+	/**
+	 * The number of {@link Part}s not yet complete.
+	 */
+	private int pending;
+
+	/**
+	 * Add the {@link Part} of a {@link Selection}.
+	 *
+	 * @param selection
+	 *        The {@code Selection} described.
+	 * @param noCodePoints
+	 *        The code points of the selection no font supports.
+	 * @param noImage
+	 *        The code points of the selection that draw nothing.
+	 * @return The {@code Part}, to be {@linkplain Part#complete() completed}
+	 *         once every image of the selection has been added.
+	 */
+	synchronized @NotNull Part part (
+		final @NotNull Selection selection,
+		final @NotNull List<Integer> noCodePoints,
+		final @NotNull List<Integer> noImage)
+	{
+		final Part part = new Part(selection, noCodePoints, noImage);
+		parts.add(part);
+		pending++;
+		return part;
+	}
+
+	/**
+	 * Count one {@link Part} complete and, when it was the last, write the
+	 * manifest.
+	 */
+	private synchronized void complete ()
+	{
+		if (--pending == 0)
+		{
+			parts.forEach(part -> part.entries.sort(entryOrder));
+			write();
+		}
+	}
+
+	/**
+	 * Answer the path of a file relative to the base directory, with {@code
+	 * /} between its names.
+	 *
+	 * @param fileName
+	 *        The name of the file.
+	 * @return The relative path.
+	 */
+	private @NotNull String relativePath (final @NotNull String fileName)
+	{
+		final Path base = Paths.get(baseDirectory).toAbsolutePath();
+		return base.relativize(Paths.get(fileName).toAbsolutePath())
+			.toString()
+			.replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Write {@code manifest.bin} and, if asked for, {@code manifest.json}.
+	 */
+	private void write ()
+	{
+		FileUtility.createDir(baseDirectory);
+		final String fileName = baseDirectory + File.separator + "manifest";
+		try
+		{
+			writeBinary(fileName + ".bin");
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + fileName + ".bin");
+			ex.printStackTrace();
+		}
+		if (json)
+		{
+			writeJson(fileName + ".json");
+		}
+	}
+
+	/**
+	 * Write the manifest in its binary form.
+	 *
+	 * @param fileName
+	 *        The name of the file.
+	 * @throws IOException
+	 *         If the file could not be written.
+	 */
+	private void writeBinary (final @NotNull String fileName)
+	throws IOException
+	{
+		final Map<String, Integer> strings = new LinkedHashMap<>();
+		int entryCount = 0;
+		for (final Part part : parts)
+		{
+			strings.putIfAbsent(part.selection.selectionName(), strings.size());
+			for (final Entry entry : part.entries)
+			{
+				strings.putIfAbsent(entry.variant, strings.size());
+				strings.putIfAbsent(entry.font, strings.size());
+				strings.putIfAbsent(entry.path, strings.size());
+			}
+			entryCount += part.entries.size();
+		}
+		final OutputFiles.Buffer file = OutputFiles.buffer();
+		final DataOutputStream out = file.data;
+		final ByteBuffer buffer = ByteBuffer
+			.allocate(entryBytes)
+			.order(ByteOrder.LITTLE_ENDIAN);
+		out.write(identifier);
+		writeInt(out, buffer, version);
+		writeInt(out, buffer, strings.size());
+		for (final String string : strings.keySet())
+		{
+			final byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			buffer.clear().putShort((short) bytes.length);
+			out.write(buffer.array(), 0, 2);
+			out.write(bytes);
+		}
+		writeInt(out, buffer, parts.size());
+		for (final Part part : parts)
+		{
+			writeInt(
+				out, buffer, strings.get(part.selection.selectionName()));
+			writeInt(out, buffer, part.selection.pixelWidth());
+			writeInt(out, buffer, part.selection.pixelHeight());
+			for (final List<Integer> codePoints :
+				List.of(part.noCodePoints, part.noImage))
+			{
+				writeInt(out, buffer, codePoints.size());
+				for (final int codePoint : codePoints)
+				{
+					writeInt(out, buffer, codePoint);
+				}
+			}
+		}
+		writeInt(out, buffer, entryCount);
+		for (final Part part : parts)
+		{
+			final int selection =
+				strings.get(part.selection.selectionName());
+			for (final Entry entry : part.entries)
+			{
+				buffer.clear()
+					.putInt(selection)
+					.putInt(strings.get(entry.variant))
+					.putInt(entry.codePoint)
+					.putInt(strings.get(entry.font))
+					.putInt(strings.get(entry.path))
+					.putLong(entry.offset)
+					.putInt(entry.length)
+					.putInt(entry.image.x)
+					.putInt(entry.image.y)
+					.putInt(entry.image.width)
+					.putInt(entry.image.height)
+					.putInt(entry.bounds.x)
+					.putInt(entry.bounds.y)
+					.putInt(entry.bounds.width)
+					.putInt(entry.bounds.height)
+					.putInt(entry.canvas.width)
+					.putInt(entry.canvas.height);
+				out.write(buffer.array(), 0, entryBytes);
+			}
+		}
+		OutputFiles.write(fileName, file);
+	}
+
+	/**
+	 * Write a little-endian 32-bit integer.
+	 *
+	 * @param out
+	 *        The {@link DataOutputStream} to write to.
+	 * @param buffer
+	 *        A little-endian {@link ByteBuffer} of at least four bytes.
+	 * @param value
+	 *        The integer to write.
+	 * @throws IOException
+	 *         If the integer could not be written.
+	 */
+	private static void writeInt (
+		final @NotNull DataOutputStream out,
+		final @NotNull ByteBuffer buffer,
+		final int value)
+	throws IOException
+	{
+		buffer.clear().putInt(value);
+		out.write(buffer.array(), 0, 4);
+	}
+
+	/**
+	 * Write the manifest as JSON, an object of each selection with an object
+	 * of each image on a line of its own.
+	 *
+	 * @param fileName
+	 *        The name of the file.
+	 */
+	private void writeJson (final @NotNull String fileName)
+	{
+		try
+		{
+			final OutputFiles.Buffer buffer = OutputFiles.buffer();
+			final PrintWriter out = buffer.text;
+			out.println("{");
+			out.println("  \"version\": " + version + ",");
+			out.println("  \"selections\": [");
+			for (int p = 0; p < parts.size(); p++)
+			{
+				final Part part = parts.get(p);
+				out.println("    {");
+				out.println("      \"name\": "
+					+ quote(part.selection.selectionName()) + ",");
+				out.printf(
+					"      \"canvas\": [%d, %d],%n",
+					part.selection.pixelWidth(),
+					part.selection.pixelHeight());
+				out.println("      \"no_font_support\": "
+					+ part.noCodePoints + ",");
+				out.println("      \"control_characters\": "
+					+ part.noImage + ",");
+				out.println("      \"glyphs\": [");
+				for (int e = 0; e < part.entries.size(); e++)
+				{
+					final Entry entry = part.entries.get(e);
+					out.printf(
+						"        {\"color\": %s, \"code_point\": %d, "
+							+ "\"font\": %s, \"path\": %s, \"offset\": %d, "
+							+ "\"length\": %d, \"image\": %s, "
+							+ "\"bounds\": %s, \"canvas\": [%d, %d]}%s%n",
+						quote(entry.variant),
+						entry.codePoint,
+						quote(entry.font),
+						quote(entry.path),
+						entry.offset,
+						entry.length,
+						rectangle(entry.image),
+						rectangle(entry.bounds),
+						entry.canvas.width,
+						entry.canvas.height,
+						e < part.entries.size() - 1 ? "," : "");
+				}
+				out.println("      ]");
+				out.println(p < parts.size() - 1 ? "    }," : "    }");
+			}
+			out.println("  ]");
+			out.println("}");
+			OutputFiles.write(fileName, buffer);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + fileName);
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Answer a {@link Rectangle} as a JSON array of its x, y, width, and
+	 * height.
+	 *
+	 * @param rectangle
+	 *        The {@code Rectangle}.
+	 * @return A JSON array.
+	 */
+	private static @NotNull String rectangle (
+		final @NotNull Rectangle rectangle)
+	{
+		return "[" + rectangle.x + ", " + rectangle.y + ", "
+			+ rectangle.width + ", " + rectangle.height + "]";
+	}
+
+	/**
+	 * Answer a string as a JSON string.
+	 *
+	 * @param string
+	 *        The string.
+	 * @return The quoted and escaped string.
+	 */
+	private static @NotNull String quote (final @NotNull String string)
+	{
+		return string.codePoints()
+			.mapToObj(c -> c == '"' || c == '\\'
+				? "\\" + (char) c
+				: c < 0x20
+					? String.format("\\u%04x", c)
+					: new String(Character.toChars(c)))
+			.collect(Collectors.joining("", "\"", "\""));
+	}
+
+	/**
+	 * Create a {@link Manifest}.
+	 *
+	 * @param baseDirectory
+	 *        The base directory the run writes to.
+	 * @param json
+	 *        Whether to write {@code manifest.json} as well.
+	 */
+	Manifest (final @NotNull String baseDirectory, final boolean json)
+	{
+		this.baseDirectory = baseDirectory;
+		this.json = json;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * MaskFilters.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * {@code MaskFilters} provides the {@link GlyphMask} operations that glyph
+ * {@linkplain EffectKind effects} are built from. Each runs in time
+ * proportional to the number of pixels, whatever its radius.
+ *
+ * @author Richard Arriaga
+ */
+final class MaskFilters
+{
+	/**
+	 * Answer the provided {@link GlyphMask} grown by a radius with round
+	 * corners. A pixel is covered by how far it lies within the radius of the
+	 * nearest pixel at least half covered, and never less than it is in the
+	 * provided mask.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask} to grow.
+	 * @param radius
+	 *        The distance in pixels to grow by.
+	 * @return A {@code GlyphMask} of the same size.
+	 */
+	static @NotNull GlyphMask dilate (
+		final @NotNull GlyphMask mask,
+		final float radius)
+	{
+		final byte[] coverage = mask.coverage();
+		final float[] distances = new float[coverage.length];
+		for (int i = 0; i < coverage.length; i++)
+		{
+			distances[i] = (coverage[i] & 0xFF) >= 128 ? 0 : DistanceField.far;
+		}
+		DistanceField.squaredDistances(distances, mask.width(), mask.height());
+		final byte[] grown = new byte[coverage.length];
+		for (int i = 0; i < coverage.length; i++)
+		{
+			final float reach =
+				radius + 0.5f - (float) Math.sqrt(distances[i]);
+			final int value = Math.max(
+				coverage[i] & 0xFF,
+				Math.round(255 * Math.max(0, Math.min(1, reach))));
+			grown[i] = (byte) value;
+		}
+		return new GlyphMask(mask.width(), mask.height(), grown);
+	}
+
+	/**
+	 * Answer the provided {@link GlyphMask} blurred by three passes of a
+	 * separable box filter, which approximates a Gaussian that reaches about
+	 * the radius.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask} to blur.
+	 * @param radius
+	 *        The distance in pixels the blur reaches.
+	 * @return A {@code GlyphMask} of the same size.
+	 */
+	static @NotNull GlyphMask blur (
+		final @NotNull GlyphMask mask,
+		final int radius)
+	{
+		final int width = mask.width();
+		final int height = mask.height();
+		final byte[] coverage = mask.coverage();
+		if (radius < 1)
+		{
+			return new GlyphMask(width, height, coverage.clone());
+		}
+		final int box = (radius + 2) / 3;
+		int[] values = new int[coverage.length];
+		for (int i = 0; i < coverage.length; i++)
+		{
+			values[i] = coverage[i] & 0xFF;
+		}
+		int[] scratch = new int[coverage.length];
+		for (int pass = 0; pass < 3; pass++)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				boxLine(values, scratch, y * width, 1, width, box);
+			}
+			for (int x = 0; x < width; x++)
+			{
+				boxLine(scratch, values, x, width, height, box);
+			}
+		}
+		final byte[] blurred = new byte[coverage.length];
+		for (int i = 0; i < blurred.length; i++)
+		{
+			blurred[i] = (byte) values[i];
+		}
+		return new GlyphMask(width, height, blurred);
+	}
+
+	/**
+	 * Average each value of one line of a raster with its neighbors within
+	 * the radius, with a running sum, counting values past either end as
+	 * {@code 0}.
+	 *
+	 * @param source
+	 *        The raster to read.
+	 * @param target
+	 *        The raster to write.
+	 * @param start
+	 *        The index of the first value of the line.
+	 * @param step
+	 *        The distance between consecutive values of the line.
+	 * @param length
+	 *        The number of values in the line.
+	 * @param radius
+	 *        The number of neighbors on each side to average with.
+	 */
+	private static void boxLine (
+		final int[] source,
+		final int[] target,
+		final int start,
+		final int step,
+		final int length,
+		final int radius)
+	{
+		final int size = 2 * radius + 1;
+		int sum = 0;
+		for (int k = 0; k < Math.min(radius, length); k++)
+		{
+			sum += source[start + k * step];
+		}
+		for (int k = 0; k < length; k++)
+		{
+			final int entering = k + radius;
+			if (entering < length)
+			{
+				sum += source[start + entering * step];
+			}
+			final int leaving = k - radius - 1;
+			if (leaving >= 0)
+			{
+				sum -= source[start + leaving * step];
+			}
+			target[start + k * step] = (sum + (size >> 1)) / size;
+		}
+	}
+
+	/**
+	 * Answer the provided {@link GlyphMask} moved by an offset, with the
+	 * pixels moved in from outside uncovered.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask} to move.
+	 * @param dx
+	 *        The pixels to move right; negative moves left.
+	 * @param dy
+	 *        The pixels to move down; negative moves up.
+	 * @return A {@code GlyphMask} of the same size.
+	 */
+	static @NotNull GlyphMask shift (
+		final @NotNull GlyphMask mask,
+		final int dx,
+		final int dy)
+	{
+		final int width = mask.width();
+		final int height = mask.height();
+		final byte[] coverage = mask.coverage();
+		final byte[] moved = new byte[coverage.length];
+		final int fromX = Math.max(0, -dx);
+		final int toX = Math.min(width, width - dx);
+		final int fromY = Math.max(0, -dy);
+		final int toY = Math.min(height, height - dy);
+		if (fromX < toX)
+		{
+			for (int y = fromY; y < toY; y++)
+			{
+				System.arraycopy(
+					coverage,
+					y * width + fromX,
+					moved,
+					(y + dy) * width + fromX + dx,
+					toX - fromX);
+			}
+		}
+		return new GlyphMask(width, height, moved);
+	}
+
+	/**
+	 * Answer the provided {@link GlyphMask} with every coverage multiplied by
+	 * a factor and clamped to full coverage.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask} to strengthen.
+	 * @param factor
+	 *        The factor to multiply by.
+	 * @return A {@code GlyphMask} of the same size.
+	 */
+	static @NotNull GlyphMask strengthen (
+		final @NotNull GlyphMask mask,
+		final int factor)
+	{
+		final byte[] coverage = mask.coverage();
+		final byte[] strong = new byte[coverage.length];
+		for (int i = 0; i < coverage.length; i++)
+		{
+			strong[i] = (byte) Math.min(255, (coverage[i] & 0xFF) * factor);
+		}
+		return new GlyphMask(mask.width(), mask.height(), strong);
+	}
+
+	// Should never be instantiated as it just provides static methods.
+	private MaskFilters ()
+	{
+		// No implementation.
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * MaskKernels.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A {@code MaskKernels} provides the per-pixel loops that scan, tint, and
+ * convert glyph rasters.
+ *
+ * <p>
+ * The {@linkplain #kernels chosen} implementation is the {@link
+ * VectorMaskKernels} when the {@code jdk.incubator.vector} module is present
+ * (run with {@code --add-modules jdk.incubator.vector}) and the {@link
+ * ScalarMaskKernels} otherwise. Both produce identical results.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+interface MaskKernels
+{
+	/**
+	 * The {@link MaskKernels} used by the generator.
+	 */
+	MaskKernels kernels = select();
+
+	/**
+	 * Answer the fastest {@link MaskKernels} this runtime supports.
+	 *
+	 * @return A {@code MaskKernels}.
+	 */
+	private static @NotNull MaskKernels select ()
+	{
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent())
+		{
+			try
+			{
+				return (MaskKernels) Class
+					.forName("raa.chartopng.VectorMaskKernels")
+					.getDeclaredConstructor()
+					.newInstance();
+			}
+			catch (final ReflectiveOperationException|LinkageError e)
+			{
+				// Fall through to the scalar kernels.
+			}
+		}
+		return new ScalarMaskKernels();
+	}
+
+	/**
+	 * Answer whether every value in the range is zero.
+	 *
+	 * @param values
+	 *        The values to test.
+	 * @param from
+	 *        The index of the first value to test.
+	 * @param length
+	 *        The number of values to test.
+	 * @return {@code true} if all are zero; {@code false} otherwise.
+	 */
+	boolean isEmpty (byte[] values, int from, int length);
+
+	/**
+	 * Combine the rows of a row-major raster into one row that is nonzero in
+	 * every column where any row is nonzero.
+	 *
+	 * @param values
+	 *        The row-major raster.
+	 * @param stride
+	 *        The number of values in a row of the raster.
+	 * @param rows
+	 *        The number of rows to combine, from the first.
+	 * @param columns
+	 *        The array of at least {@code stride} values that receives the
+	 *        combined row.
+	 */
+	void combineRows (byte[] values, int stride, int rows, byte[] columns);
+
+	/**
+	 * Fill an ARGB raster with a color whose alpha is scaled by coverage,
+	 * leaving the pixels with no coverage untouched.
+	 *
+	 * @param coverage
+	 *        The coverage values, one unsigned byte per pixel.
+	 * @param rgb
+	 *        The red, green, and blue of the color, in the low 24 bits.
+	 * @param alpha
+	 *        The alpha of the color, from {@code 0} to {@code 255}.
+	 * @param pixels
+	 *        The ARGB pixels, at least as many as coverage values.
+	 */
+	void tint (byte[] coverage, int rgb, int alpha, int[] pixels);
+
+	/**
+	 * Write every pixel of an RGBA raster as a color whose alpha is scaled by
+	 * coverage, and as transparent black where there is no coverage. Each
+	 * pixel is four bytes, red first and alpha last, the layout of a PNG
+	 * truecolor with alpha image.
+	 *
+	 * @param coverage
+	 *        The coverage values, one unsigned byte per pixel.
+	 * @param rgb
+	 *        The red, green, and blue of the color, in the low 24 bits.
+	 * @param alpha
+	 *        The alpha of the color, from {@code 0} to {@code 255}.
+	 * @param pixels
+	 *        The RGBA raster, from its first byte, with at least as many
+	 *        pixels as coverage values.
+	 */
+	void tintRgba (byte[] coverage, int rgb, int alpha, ByteBuffer pixels);
+
+	/**
+	 * Answer an {@link IntBuffer} view of an RGBA raster in the native byte
+	 * order, so that whole pixels are stored without swapping their bytes.
+	 *
+	 * @param pixels
+	 *        The RGBA raster.
+	 * @return An {@code IntBuffer}.
+	 */
+	static @NotNull IntBuffer nativePixels (final @NotNull ByteBuffer pixels)
+	{
+		return pixels.duplicate()
+			.order(ByteOrder.nativeOrder())
+			.asIntBuffer();
+	}
+
+	/**
+	 * Answer the RGBA pixel of the provided color and alpha as it is stored
+	 * in an {@link #nativePixels(ByteBuffer) IntBuffer of native order}.
+	 *
+	 * @param rgb
+	 *        The red, green, and blue of the color, in the low 24 bits.
+	 * @param alpha
+	 *        The alpha, from {@code 0} to {@code 255}.
+	 * @return The pixel.
+	 */
+	static int nativeRgba (final int rgb, final int alpha)
+	{
+		final int rgba = (rgb << 8) | alpha;
+		return ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN
+			? rgba
+			: Integer.reverseBytes(rgba);
+	}
+
+	/**
+	 * Convert ARGB pixels into interleaved 8-bit gray and alpha samples, the
+	 * layout of a PNG gray+alpha image. The gray is the Rec. 601 luma of the
+	 * color.
+	 *
+	 * @param pixels
+	 *        The ARGB pixels.
+	 * @param grayAlpha
+	 *        The samples, two per pixel.
+	 */
+	void grayAlpha (int[] pixels, byte[] grayAlpha);
+}
@@ -0,0 +1,209 @@
+/*
+ * MipmapFilter.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A {@code MipmapFilter} derives a smaller {@link GlyphMask} from a rendered
+ * one by area averaging: each derived pixel is the mean of the source pixels
+ * it covers, weighted by how much of each it covers.
+ *
+ * <p>
+ * Coverage is decoded with a gamma before it is averaged and encoded again
+ * afterwards, both through lookup tables, so that thin strokes keep their
+ * weight at small sizes. A gamma of {@code 1} averages the coverage as is.
+ * The filter is separable, horizontal then vertical.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class MipmapFilter
+{
+	/**
+	 * The highest index of the {@link #encode} table.
+	 */
+	private static final int encodeSteps = 0xFFFF;
+
+	/**
+	 * The decoded value of each coverage, from {@code 0} to {@code 1}.
+	 */
+	private final float[] decode = new float[256];
+
+	/**
+	 * The coverage of each decoded value scaled to {@link #encodeSteps}.
+	 */
+	private final byte[] encode = new byte[encodeSteps + 1];
+
+	/**
+	 * The {@code AreaWeights} of one axis of a downsample: which source
+	 * pixels each target pixel covers, and by how much.
+	 */
+	private static final class AreaWeights
+	{
+		/** The first source pixel of each target pixel. */
+		final int[] first;
+
+		/** The number of source pixels of each target pixel. */
+		final int[] count;
+
+		/** The maximum number of source pixels of any target pixel. */
+		final int span;
+
+		/**
+		 * The weight of each source pixel of each target pixel, {@link
+		 * #span} per target pixel; the weights of a target pixel sum to
+		 * {@code 1}.
+		 */
+		final float[] weights;
+
+		/**
+		 * Create the {@link AreaWeights} from one length to another.
+		 *
+		 * @param source
+		 *        The number of source pixels.
+		 * @param target
+		 *        The number of target pixels, no more than {@code source}.
+		 */
+		AreaWeights (final int source, final int target)
+		{
+			final double scale = (double) source / target;
+			this.first = new int[target];
+			this.count = new int[target];
+			this.span = (int) Math.ceil(scale) + 1;
+			this.weights = new float[target * span];
+			for (int j = 0; j < target; j++)
+			{
+				final double low = j * scale;
+				final double high = Math.min(source, low + scale);
+				final int start = (int) Math.floor(low);
+				final int end = Math.min(source, (int) Math.ceil(high));
+				first[j] = start;
+				count[j] = end - start;
+				for (int k = start; k < end; k++)
+				{
+					weights[j * span + k - start] = (float)
+						((Math.min(high, k + 1) - Math.max(low, k)) / scale);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Answer a {@link GlyphMask} of the provided size that is the area
+	 * average of the provided {@code GlyphMask}.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask} to downsample.
+	 * @param width
+	 *        The width in pixels of the derived mask, no more than that of
+	 *        {@code mask}.
+	 * @param height
+	 *        The height in pixels of the derived mask, no more than that of
+	 *        {@code mask}.
+	 * @return A {@code GlyphMask}.
+	 */
+	@NotNull GlyphMask downsample (
+		final @NotNull GlyphMask mask,
+		final int width,
+		final int height)
+	{
+		final int sourceWidth = mask.width();
+		final byte[] source = mask.coverage();
+		final AreaWeights columns = new AreaWeights(sourceWidth, width);
+		final AreaWeights rows = new AreaWeights(mask.height(), height);
+
+		// Horizontal pass: every source row, derived columns.
+		final float[] narrow = new float[mask.height() * width];
+		for (int y = 0; y < mask.height(); y++)
+		{
+			final int row = y * sourceWidth;
+			for (int x = 0; x < width; x++)
+			{
+				final int first = row + columns.first[x];
+				final int weight = x * columns.span;
+				float sum = 0;
+				for (int k = 0; k < columns.count[x]; k++)
+				{
+					sum += decode[source[first + k] & 0xFF]
+						* columns.weights[weight + k];
+				}
+				narrow[y * width + x] = sum;
+			}
+		}
+
+		// Vertical pass: derived rows, encoded.
+		final byte[] coverage = new byte[width * height];
+		final float[] sums = new float[width];
+		for (int y = 0; y < height; y++)
+		{
+			Arrays.fill(sums, 0);
+			for (int k = 0; k < rows.count[y]; k++)
+			{
+				final int row = (rows.first[y] + k) * width;
+				final float weight = rows.weights[y * rows.span + k];
+				for (int x = 0; x < width; x++)
+				{
+					sums[x] += narrow[row + x] * weight;
+				}
+			}
+			for (int x = 0; x < width; x++)
+			{
+				coverage[y * width + x] = encode[
+					Math.min(encodeSteps, Math.round(sums[x] * encodeSteps))];
+			}
+		}
+		return new GlyphMask(width, height, coverage);
+	}
+
+	/**
+	 * Create a {@link MipmapFilter}.
+	 *
+	 * @param gamma
+	 *        The gamma coverage is decoded with before it is averaged; {@code
+	 *        1} averages the coverage as is.
+	 */
+	MipmapFilter (final float gamma)
+	{
+		for (int c = 0; c < decode.length; c++)
+		{
+			decode[c] = (float) Math.pow(c / 255.0, gamma);
+		}
+		for (int i = 0; i <= encodeSteps; i++)
+		{
+			encode[i] = (byte) Math.round(
+				255 * Math.pow((double) i / encodeSteps, 1 / gamma));
+		}
+	}
+}
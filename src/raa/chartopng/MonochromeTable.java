@@ -0,0 +1,142 @@
+/*
+ * MonochromeTable.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A {@code MonochromeTable} collects the {@linkplain GlyphMask#packBits()
+ * one bit per pixel} glyphs of a selection and writes them as a single
+ * binary font table.
+ *
+ * <p>
+ * The table is big-endian: the magic number {@code "MONO"}, then the format
+ * version, the pixel width, the pixel height, and the glyph count as {@code
+ * int}s, then for each glyph in code point order its code point as an {@code
+ * int} followed by its packed rows. An 8x8 glyph is exactly one {@code long}
+ * whose most significant byte is the top row.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class MonochromeTable
+{
+	/**
+	 * The magic number that starts a table, {@code "MONO"} in ASCII.
+	 */
+	private static final int magic = 0x4D4F4E4F;
+
+	/**
+	 * The version of the table format.
+	 */
+	private static final int version = 1;
+
+	/**
+	 * The width in pixels of every glyph.
+	 */
+	private final int pixelWidth;
+
+	/**
+	 * The height in pixels of every glyph.
+	 */
+	private final int pixelHeight;
+
+	/**
+	 * The packed rows of each glyph by code point.
+	 */
+	private final Map<Integer, byte[]> glyphs =
+		new ConcurrentSkipListMap<>();
+
+	/**
+	 * Add the glyph of a code point. This may be called from any thread.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 * @param mask
+	 *        The {@link GlyphMask} of the glyph.
+	 */
+	void add (final int codePoint, final @NotNull GlyphMask mask)
+	{
+		assert mask.width() == pixelWidth && mask.height() == pixelHeight;
+		glyphs.put(codePoint, mask.packBits());
+	}
+
+	/**
+	 * Write the table to the indicated file.
+	 *
+	 * @param fileName
+	 *        The name of the file that will hold the table.
+	 */
+	void write (final @NotNull String fileName)
+	{
+		try
+		{
+			final OutputFiles.Buffer buffer = OutputFiles.buffer();
+			final DataOutputStream out = buffer.data;
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeInt(pixelWidth);
+			out.writeInt(pixelHeight);
+			out.writeInt(glyphs.size());
+			for (final Map.Entry<Integer, byte[]> glyph : glyphs.entrySet())
+			{
+				out.writeInt(glyph.getKey());
+				out.write(glyph.getValue());
+			}
+			OutputFiles.write(fileName, buffer);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + fileName);
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Create a {@link MonochromeTable}.
+	 *
+	 * @param pixelWidth
+	 *        The width in pixels of every glyph.
+	 * @param pixelHeight
+	 *        The height in pixels of every glyph.
+	 */
+	MonochromeTable (final int pixelWidth, final int pixelHeight)
+	{
+		this.pixelWidth = pixelWidth;
+		this.pixelHeight = pixelHeight;
+	}
+}
@@ -0,0 +1,303 @@
+/*
+ * OutputFiles.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code OutputFiles} writes whole files from memory and forces the files a
+ * run writes to storage as its {@link SyncPolicy} asks.
+ *
+ * <p>
+ * A file encoded into the {@linkplain #buffer() buffer} of its thread, which
+ * is kept from one file to the next, is written with a single {@link
+ * FileChannel} write, so each file costs an open, a write, and a close, and
+ * no buffer is made for it. On network file systems, where each call is a
+ * round trip, that is most of the time a small file takes. Binary files are
+ * encoded through its {@linkplain Buffer#data data} stream and text files
+ * through its {@linkplain Buffer#text text} writer. A buffer that a large
+ * file grew past a megabyte is dropped once that file is written.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class OutputFiles
+{
+	/**
+	 * A {@code Buffer} is the reusable memory a file is encoded into before
+	 * it is written.
+	 */
+	static final class Buffer
+	extends ByteArrayOutputStream
+	{
+		/**
+		 * A {@link DataOutputStream} that writes to this {@link Buffer}.
+		 */
+		final @NotNull DataOutputStream data = new DataOutputStream(this);
+
+		/**
+		 * A {@link PrintWriter} that writes text to this {@link Buffer} in
+		 * the default charset. It is flushed before the buffer is written.
+		 */
+		final @NotNull PrintWriter text = new PrintWriter(this);
+
+		/**
+		 * Answer the bytes written since the buffer was last reset.
+		 *
+		 * @return A {@link ByteBuffer} of the bytes, which are not copied.
+		 */
+		@NotNull ByteBuffer contents ()
+		{
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+
+		/**
+		 * Answer the number of bytes the buffer holds before it must grow.
+		 *
+		 * @return The capacity in bytes.
+		 */
+		int capacity ()
+		{
+			return buf.length;
+		}
+
+		/**
+		 * Create a {@link Buffer}.
+		 */
+		Buffer ()
+		{
+			super(initialBytes);
+		}
+	}
+
+	/**
+	 * The number of bytes a {@link Buffer} starts with.
+	 */
+	private static final int initialBytes = 1 << 16;
+
+	/**
+	 * The largest {@link Buffer} a thread keeps once its file is written. A
+	 * buffer grown past it by one large file is dropped, so that each thread
+	 * does not hold the largest file it ever wrote for the rest of the run.
+	 */
+	private static final int retainedBytes = 1 << 20;
+
+	/**
+	 * The {@link Buffer} of each thread.
+	 */
+	private static final ThreadLocal<Buffer> buffers =
+		ThreadLocal.withInitial(Buffer::new);
+
+	/**
+	 * The number of files of a directory forced together under {@link
+	 * SyncPolicy#DIRECTORY}.
+	 */
+	private static final int batchFiles = 256;
+
+	/**
+	 * The {@link SyncPolicy} of the run.
+	 */
+	private static volatile @NotNull SyncPolicy policy = SyncPolicy.NONE;
+
+	/**
+	 * The files written but not yet forced to storage, by directory.
+	 */
+	private static final Map<String, List<String>> unsynced = new HashMap<>();
+
+	/**
+	 * Set the {@link SyncPolicy} of the run. It must be set before any file
+	 * is written.
+	 *
+	 * @param syncPolicy
+	 *        The {@code SyncPolicy}.
+	 */
+	static void syncPolicy (final @NotNull SyncPolicy syncPolicy)
+	{
+		policy = syncPolicy;
+	}
+
+	/**
+	 * Answer the {@link Buffer} of the current thread, emptied.
+	 *
+	 * @return A {@code Buffer}.
+	 */
+	static @NotNull Buffer buffer ()
+	{
+		final Buffer buffer = buffers.get();
+		buffer.text.flush();
+		buffer.reset();
+		return buffer;
+	}
+
+	/**
+	 * Write the contents of a {@link Buffer} as the whole of a file,
+	 * replacing any file already there.
+	 *
+	 * @param fileName
+	 *        The name of the file.
+	 * @param buffer
+	 *        The {@code Buffer} that holds the file.
+	 * @throws IOException
+	 *         If the file could not be written.
+	 */
+	static void write (
+		final @NotNull String fileName,
+		final @NotNull Buffer buffer)
+	throws IOException
+	{
+		buffer.text.flush();
+		final ByteBuffer contents = buffer.contents();
+		try (final FileChannel channel = FileChannel.open(
+			Paths.get(fileName),
+			StandardOpenOption.CREATE,
+			StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.WRITE))
+		{
+			while (contents.hasRemaining())
+			{
+				channel.write(contents);
+			}
+		}
+		finally
+		{
+			if (buffer.capacity() > retainedBytes && buffers.get() == buffer)
+			{
+				buffers.remove();
+			}
+		}
+		written(fileName);
+	}
+
+	/**
+	 * Note that a file has been written and closed, to be forced to storage
+	 * as the {@link SyncPolicy} asks.
+	 *
+	 * @param fileName
+	 *        The name of the file.
+	 */
+	static void written (final @NotNull String fileName)
+	{
+		if (policy == SyncPolicy.NONE)
+		{
+			return;
+		}
+		final String directory =
+			new File(fileName).getAbsoluteFile().getParent();
+		final List<String> batch;
+		synchronized (unsynced)
+		{
+			final List<String> files =
+				unsynced.computeIfAbsent(directory, d -> new ArrayList<>());
+			files.add(fileName);
+			if (policy != SyncPolicy.DIRECTORY || files.size() < batchFiles)
+			{
+				return;
+			}
+			batch = new ArrayList<>(files);
+			files.clear();
+		}
+		sync(directory, batch);
+	}
+
+	/**
+	 * Force every file not yet forced to storage, and then its directory.
+	 * Called once every file of the run has been written.
+	 */
+	static void finish ()
+	{
+		final Map<String, List<String>> remaining;
+		synchronized (unsynced)
+		{
+			remaining = new HashMap<>(unsynced);
+			unsynced.clear();
+		}
+		remaining.forEach(OutputFiles::sync);
+	}
+
+	/**
+	 * Force files to storage, and then the directory that holds them, so
+	 * that their names are as durable as their contents.
+	 *
+	 * @param directory
+	 *        The directory.
+	 * @param files
+	 *        The names of the files in the directory.
+	 */
+	private static void sync (
+		final @NotNull String directory,
+		final @NotNull List<String> files)
+	{
+		for (final String fileName : files)
+		{
+			try (final FileChannel channel = FileChannel.open(
+				Paths.get(fileName), StandardOpenOption.WRITE))
+			{
+				channel.force(true);
+			}
+			catch (IOException ex)
+			{
+				System.err.println("Could not sync " + fileName);
+				ex.printStackTrace();
+			}
+		}
+		try (final FileChannel channel = FileChannel.open(
+			Paths.get(directory), StandardOpenOption.READ))
+		{
+			channel.force(true);
+		}
+		catch (IOException ex)
+		{
+			// Not every platform can open a directory; its entries are then
+			// as durable as the platform makes them.
+		}
+	}
+
+	// Should never be instantiated as it just provides static methods.
+	private OutputFiles ()
+	{
+		// No implementation.
+	}
+}
@@ -0,0 +1,323 @@
+/*
+ * OutputMode.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+import org.jetbrains.annotations.NotNull;
+import raa.configuration.State.Selection;
+
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@code OutputMode} is an enum that describes what the alpha channel of
+ * each generated PNG holds.
+ *
+ * @author Richard Arriaga
+ */
+public enum OutputMode
+{
+	/**
+	 * The antialiased coverage of the glyph.
+	 */
+	COVERAGE("coverage")
+	{
+		@Override
+		@NotNull GlyphMask mask (
+			final @NotNull GlyphPlacement placement,
+			final @NotNull GlyphRasterizer rasterizer,
+			final @NotNull RenderingHints hints,
+			final @NotNull Selection selection)
+		{
+			return placement.rasterize(rasterizer, hints);
+		}
+	},
+
+	/**
+	 * The signed distance to the outline of the glyph, computed from a render
+	 * {@linkplain Selection#distanceFieldScale() enlarged} by a whole factor
+	 * and averaged back down to the canvas. The outline is at {@code 128},
+	 * inside is above it, and a distance of {@linkplain
+	 * Selection#distanceFieldSpread() spread} canvas pixels reaches {@code
+	 * 0} or {@code 255}.
+	 */
+	DISTANCE_FIELD("distance_field")
+	{
+		@Override
+		@NotNull GlyphMask mask (
+			final @NotNull GlyphPlacement placement,
+			final @NotNull GlyphRasterizer rasterizer,
+			final @NotNull RenderingHints hints,
+			final @NotNull Selection selection)
+		{
+			final int scale = selection.distanceFieldScale();
+			return DistanceField.distanceField(
+				placement.scaled(scale).rasterize(rasterizer, hints),
+				scale,
+				selection.distanceFieldSpread());
+		}
+	},
+
+	/**
+	 * Fully opaque or fully transparent pixels, rendered without
+	 * antialiasing and written as one bit per pixel PNGs.
+	 */
+	MONOCHROME("monochrome")
+	{
+		@Override
+		@NotNull RenderingHints hints (final @NotNull RenderingHints hints)
+		{
+			final RenderingHints aliased = (RenderingHints) hints.clone();
+			aliased.put(
+				RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_OFF);
+			aliased.put(
+				RenderingHints.KEY_TEXT_ANTIALIASING,
+				RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+			return aliased;
+		}
+
+		@Override
+		@NotNull GlyphMask mask (
+			final @NotNull GlyphPlacement placement,
+			final @NotNull GlyphRasterizer rasterizer,
+			final @NotNull RenderingHints hints,
+			final @NotNull Selection selection)
+		{
+			// Rasterizers that ignore the hints still antialias.
+			final GlyphMask mask = placement.rasterize(rasterizer, hints);
+			final byte[] coverage = mask.coverage();
+			for (int i = 0; i < coverage.length; i++)
+			{
+				coverage[i] = (coverage[i] & 0xFF) >= 128 ? (byte) 255 : 0;
+			}
+			return mask;
+		}
+
+		@Override
+		@NotNull PooledRaster raster (
+			final @NotNull GlyphMask mask,
+			final @NotNull Color color)
+		{
+			return mask.binaryRaster(new Color(0, 0, 0, 0), color);
+		}
+
+		@Override
+		@NotNull PooledRaster raster (
+			final @NotNull GlyphMask mask,
+			final @NotNull ColorPair pair)
+		{
+			return mask.binaryRaster(pair.background(), pair.foreground());
+		}
+	},
+
+	/**
+	 * Like {@link #MONOCHROME}, but the antialiased coverage is kept as the
+	 * density of an 8x8 ordered dither.
+	 */
+	MONOCHROME_DITHER("monochrome_dither")
+	{
+		/**
+		 * The 8x8 Bayer matrix of dither thresholds, from {@code 0} to {@code
+		 * 63}.
+		 */
+		private final int[] bayer = {
+			 0, 32,  8, 40,  2, 34, 10, 42,
+			48, 16, 56, 24, 50, 18, 58, 26,
+			12, 44,  4, 36, 14, 46,  6, 38,
+			60, 28, 52, 20, 62, 30, 54, 22,
+			 3, 35, 11, 43,  1, 33,  9, 41,
+			51, 19, 59, 27, 49, 17, 57, 25,
+			15, 47,  7, 39, 13, 45,  5, 37,
+			63, 31, 55, 23, 61, 29, 53, 21};
+
+		@Override
+		@NotNull GlyphMask mask (
+			final @NotNull GlyphPlacement placement,
+			final @NotNull GlyphRasterizer rasterizer,
+			final @NotNull RenderingHints hints,
+			final @NotNull Selection selection)
+		{
+			final GlyphMask mask = placement.rasterize(rasterizer, hints);
+			final byte[] coverage = mask.coverage();
+			for (int y = 0; y < mask.height(); y++)
+			{
+				for (int x = 0; x < mask.width(); x++)
+				{
+					final int i = y * mask.width() + x;
+					// On when coverage / 255 > (threshold + 0.5) / 64.
+					coverage[i] = (coverage[i] & 0xFF) * 128
+						> (2 * bayer[((y & 7) << 3) | (x & 7)] + 1) * 255
+							? (byte) 255
+							: 0;
+				}
+			}
+			return mask;
+		}
+
+		@Override
+		@NotNull PooledRaster raster (
+			final @NotNull GlyphMask mask,
+			final @NotNull Color color)
+		{
+			return mask.binaryRaster(new Color(0, 0, 0, 0), color);
+		}
+
+		@Override
+		@NotNull PooledRaster raster (
+			final @NotNull GlyphMask mask,
+			final @NotNull ColorPair pair)
+		{
+			return mask.binaryRaster(pair.background(), pair.foreground());
+		}
+	};
+
+	/**
+	 * Answer whether this {@link OutputMode} produces pixels that are either
+	 * fully on or fully off.
+	 *
+	 * @return {@code true} if it does; {@code false} otherwise.
+	 */
+	boolean isMonochrome ()
+	{
+		return this == MONOCHROME || this == MONOCHROME_DITHER;
+	}
+
+	/**
+	 * Answer the {@link RenderingHints} this {@link OutputMode} renders and
+	 * measures glyphs with, given those of the {@linkplain RenderProfile
+	 * render profile}.
+	 *
+	 * @param hints
+	 *        The {@code RenderingHints} of the render profile.
+	 * @return A {@code RenderingHints}.
+	 */
+	@NotNull RenderingHints hints (final @NotNull RenderingHints hints)
+	{
+		return hints;
+	}
+
+	/**
+	 * Answer the {@link PooledRaster} that a {@link GlyphMask} of this {@link
+	 * OutputMode} is written as.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask} to draw.
+	 * @param color
+	 *        The {@link Color} to draw it in.
+	 * @return A {@code PooledRaster}, to be released once encoded.
+	 */
+	@NotNull PooledRaster raster (
+		final @NotNull GlyphMask mask,
+		final @NotNull Color color)
+	{
+		return mask.tintRaster(color);
+	}
+
+	/**
+	 * Answer the opaque {@link PooledRaster} that a {@link GlyphMask} of this
+	 * {@link OutputMode} is written as over a background.
+	 *
+	 * @param mask
+	 *        The {@code GlyphMask} to draw.
+	 * @param pair
+	 *        The {@link ColorPair} to draw it in.
+	 * @return A {@code PooledRaster}, to be released once encoded.
+	 */
+	@NotNull PooledRaster raster (
+		final @NotNull GlyphMask mask,
+		final @NotNull ColorPair pair)
+	{
+		return mask.blendRaster(pair.blend());
+	}
+
+	/**
+	 * Answer the {@link GlyphMask} of the placed glyph in this {@link
+	 * OutputMode}.
+	 *
+	 * @param placement
+	 *        The {@link GlyphPlacement} of the glyph.
+	 * @param rasterizer
+	 *        The {@link GlyphRasterizer} to render with.
+	 * @param hints
+	 *        The {@link RenderingHints} to render with.
+	 * @param selection
+	 *        The {@link Selection} being generated.
+	 * @return A {@code GlyphMask} the size of the canvas.
+	 */
+	abstract @NotNull GlyphMask mask (
+		final @NotNull GlyphPlacement placement,
+		final @NotNull GlyphRasterizer rasterizer,
+		final @NotNull RenderingHints hints,
+		final @NotNull Selection selection);
+
+	/**
+	 * The name of the {@link OutputMode} as used in the generator plan.
+	 */
+	final String name;
+
+	/**
+	 * Create an {@link OutputMode}.
+	 *
+	 * @param name
+	 *        The name of the {@code OutputMode}.
+	 */
+	OutputMode (final String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * A map that provides a lookup from the {@link OutputMode#name} to the
+	 * {@link OutputMode}.
+	 */
+	private static Map<String, OutputMode> modeMap = new HashMap<>();
+	static
+	{
+		for (OutputMode mode : OutputMode.values())
+		{
+			modeMap.put(mode.name, mode);
+		}
+	}
+
+	/**
+	 * Answer the {@link OutputMode} for the given name.
+	 *
+	 * @param name
+	 *        The name of the {@code OutputMode} to retrieve.
+	 * @return An {@code OutputMode} if the name is valid, {@code null}
+	 *         otherwise.
+	 */
+	public static OutputMode outputMode (final @NotNull String name)
+	{
+		return modeMap.get(name);
+	}
+}
@@ -34,24 +34,29 @@ package raa.chartopng;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import raa.chartopng.AppRuntime.ExitCode;
+import raa.configuration.State.Effect;
 import raa.configuration.State.Selection;
 import raa.utility.FileUtility;
 
 import javax.imageio.ImageIO;
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineMetrics;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.io.PrintWriter;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Function;
 import java.util.stream.IntStream;
 
 /**
@@ -63,50 +68,15 @@ import java.util.stream.IntStream;
 class PNGGenerator
 {
 	/**
-	 * Create a {@link BufferedImage} for the indicated {@link Character}.
-	 *
-	 * @param text
-	 *        The single-character {@code String} that holds the character
-	 *        targeted for PNG generation.
-	 * @param font
-	 *        The target {@link Font} for the character.
-	 * @param color
-	 *        The target {@link Color} for the {@code Font}.
-	 * @param pixelHeight
-	 *        The total height in pixels of the PNG.
-	 * @param pixelWidth
-	 *        The total width in pixels of the PNG.
-	 * @param widthOffset
-	 *        The number of pixels to move the font away from the origin along
-	 *        the horizontal axis.
-	 * @param heightOffset
-	 *        The number of pixels to move the font away from the origin along
-	 *        the vertical axis. <em>NOTE: The vertical origin is equal to the
-	 *        pixel height of the entire PNG.</em>
-	 * @return A {@code BufferedImage}
+	 * The {@link FontRenderContext} used to measure glyphs without rendering
+	 * them. It matches the antialiasing and fractional metrics settings that
+	 * glyphs are rendered with.
 	 */
-	private static BufferedImage renderPNG (
-		final @NotNull String text,
-		final @NotNull Font font,
-		final @NotNull Color color,
-		final int pixelHeight,
-		final int pixelWidth,
-		final float widthOffset,
-		final float heightOffset)
-	{
-		BufferedImage img = new BufferedImage(
-			pixelWidth,
-			pixelHeight,
-			BufferedImage.TYPE_INT_ARGB);
-		Graphics2D g2d = createGraphics2D(img);
-		g2d.setFont(font);
-		g2d.setColor(color);
-		g2d.drawString(text, widthOffset, heightOffset);
-
-		g2d.dispose();
-
-		return img;
-	}
+	static final FontRenderContext renderContext =
+		new FontRenderContext(
+			null,
+			RenderingHints.VALUE_TEXT_ANTIALIAS_ON,
+			RenderingHints.VALUE_FRACTIONALMETRICS_ON);
 
 	/**
 	 * Create the PNG files for the given {@link Selection}.
@@ -123,6 +93,9 @@ class PNGGenerator
 	 * @param startTime
 	 *        The time the work starts for the purpose to report how long the
 	 *        generation took.
+	 * @param manifest
+	 *        The {@link Manifest} of the run, to which the images of the
+	 *        selection are added.
 	 * @return The {@link Collection} of directory names where files were
 	 *         saved.
 	 */
@@ -131,66 +104,435 @@ class PNGGenerator
 		final @NotNull Selection selection,
 		final @NotNull List<Runnable> creationJobs,
 		final @NotNull AtomicInteger workCount,
-		final @NotNull AtomicLong startTime)
+		final @NotNull AtomicLong startTime,
+		final @NotNull Manifest manifest)
 	{
-		final int colorCount = selection.colors().size();
-		final Map<NamedColor, String> directoryMap = new HashMap<>();
+		final OutputMode outputMode = selection.outputMode();
+		final MonochromeTable table =
+			outputMode.isMonochrome() && selection.monochromeTable()
+				? new MonochromeTable(
+					selection.pixelWidth(), selection.pixelHeight())
+				: null;
+		// In palette mode an uncolored mask takes the place of every color
+		// and color pair, and the colors are written to a palette instead.
+		final boolean palette =
+			table == null && selection.colorMode() == ColorMode.PALETTE;
+		// Distance fields and the packed table are never drawn over a
+		// background; otherwise each color is drawn over each background in
+		// place of a transparent canvas.
+		final List<ColorPair> pairs = new ArrayList<>();
+		if (table == null
+			&& !palette
+			&& outputMode != OutputMode.DISTANCE_FIELD)
+		{
+			selection.colors().forEach(color ->
+				selection.backgroundColors().forEach(background ->
+					pairs.add(new ColorPair(color, background))));
+		}
+		final List<NamedColor> colors =
+			table == null && !palette && pairs.isEmpty()
+				? selection.colors()
+				: Collections.emptyList();
+		final List<String> variants = new ArrayList<>();
+		colors.forEach(color -> variants.add(color.name()));
+		pairs.forEach(pair -> variants.add(pair.name()));
+		if (palette)
+		{
+			variants.add(ColorMode.maskName);
+		}
 		final List<Integer> noCodePoints = new ArrayList<>();
 		final List<Integer> noImage = new ArrayList<>();
-		selection.colors().forEach(color ->
-			directoryMap.put(
-				color,
-				FileUtility.createStringDir(
-					baseDirectory,
-					color.name(),
-					selection)));
+		final Manifest.Part part =
+			manifest.part(selection, noCodePoints, noImage);
+		// An atlas or texture arrays take the place of the files of each
+		// glyph.
+		final GlyphAtlas atlas = table == null && selection.atlasWidth() > 0
+			? new GlyphAtlas(baseDirectory, selection, colors, pairs, palette)
+			: null;
+		// The coverage alone is the mask of a texture array.
+		final TextureFormat textureFormat =
+			palette && selection.textureArray() != null
+				? TextureFormat.R8
+				: selection.textureArray();
+		final TextureArray textureArray =
+			table == null && textureFormat != null
+				? new TextureArray(
+					baseDirectory, selection, textureFormat, colors, pairs)
+				: null;
+		final GlyphBundle bundle = table == null && selection.bundle()
+			? new GlyphBundle(baseDirectory, selection, colors, pairs, palette)
+			: null;
+		final BitmapFont bitmapFont =
+			atlas != null && selection.atlasBitmapFont()
+				? new BitmapFont(selection)
+				: null;
+		final boolean perGlyphFiles =
+			atlas == null && textureArray == null && bundle == null;
+
+		// The canvas of the selection and then those of its mipmap sizes,
+		// each with the directory of every color or color pair, by name.
+		final List<Dimension> canvases = new ArrayList<>();
+		final List<Map<String, String>> directoryMaps = new ArrayList<>();
+		final Map<String, String> directoryMap = new HashMap<>();
+		if (perGlyphFiles)
+		{
+			variants.forEach(name ->
+				directoryMap.put(
+					name,
+					FileUtility.createStringDir(
+						baseDirectory, name, selection)));
+		}
+		canvases.add(
+			new Dimension(selection.pixelWidth(), selection.pixelHeight()));
+		directoryMaps.add(directoryMap);
+		if (table == null && perGlyphFiles)
+		{
+			selection.mipmapSizes().forEach(height ->
+			{
+				final int width = Math.max(
+					1,
+					Math.round(
+						(float) selection.pixelWidth() * height
+							/ selection.pixelHeight()));
+				final Map<String, String> directories = new HashMap<>();
+				variants.forEach(name ->
+					directories.put(
+						name,
+						FileUtility.createStringDir(
+							baseDirectory,
+							name,
+							height,
+							width,
+							selection)));
+				canvases.add(new Dimension(width, height));
+				directoryMaps.add(directories);
+			});
+		}
+		final int filesPerGlyph = table == null && perGlyphFiles
+			? variants.size() * canvases.size()
+			: 1;
+		// Distances average linearly; only coverage is gamma encoded.
+		final MipmapFilter mipmapFilter = new MipmapFilter(
+			outputMode == OutputMode.COVERAGE
+				? selection.mipmapGamma()
+				: 1f);
+		// Effects are drawn in color, so they apply only to coverage.
+		final List<Effect> effects = outputMode == OutputMode.COVERAGE
+			? selection.effects()
+			: Collections.emptyList();
+		final TrimOffsets trimOffsets =
+			table == null && perGlyphFiles && selection.trim()
+				? new TrimOffsets()
+				: null;
+
+		// Whole-selection output is written by the job of the last glyph,
+		// before that job exports its own files, so it always precedes the
+		// shutdown that follows the last file.
+		final List<Runnable> completionJobs = new ArrayList<>();
+		final AtomicInteger remainingGlyphs = new AtomicInteger(0);
+		if (table != null)
+		{
+			final String fileName = FileUtility.createSelectionFileName(
+				baseDirectory, selection, ".bin");
+			completionJobs.add(() -> table.write(fileName));
+		}
+		if (trimOffsets != null)
+		{
+			final String fileName = FileUtility.createSelectionFileName(
+				baseDirectory, selection, ".offsets.csv");
+			completionJobs.add(() -> trimOffsets.write(fileName));
+		}
+		if (atlas != null)
+		{
+			completionJobs.add(atlas::finish);
+		}
+		if (bitmapFont != null)
+		{
+			completionJobs.add(() -> bitmapFont.write(atlas));
+		}
+		if (textureArray != null)
+		{
+			final String fileName = FileUtility.createSelectionFileName(
+				baseDirectory, selection, ".layers.csv");
+			completionJobs.add(() -> textureArray.finish(fileName));
+		}
+		if (bundle != null)
+		{
+			completionJobs.add(bundle::finish);
+		}
+		if (palette)
+		{
+			final String fileName = FileUtility.createSelectionFileName(
+				baseDirectory, selection, ".palette.csv");
+			completionJobs.add(() -> writePalette(selection, fileName));
+		}
+		// The part of the manifest is completed last, once every file it
+		// describes has been finished.
+		final boolean selectionFiles = !completionJobs.isEmpty();
+		completionJobs.add(() ->
+		{
+			if (atlas != null)
+			{
+				atlas.describe(part);
+			}
+			if (textureArray != null)
+			{
+				textureArray.describe(part);
+			}
+			if (bundle != null)
+			{
+				bundle.describe(part);
+			}
+			part.complete();
+		});
+		final Map<Font, Integer> fittedSizes =
+			selection.autoFontSize() && !selection.autoSizePerGlyph()
+				? FontAutosizer.fitFontSizes(selection)
+				: Collections.emptyMap();
+		final Map<Font, LineMetrics> lineMetrics = new HashMap<>();
+		final GlyphRasterizer rasterizer = selection.rasterizer().rasterizer();
+		final RenderingHints renderingHints =
+			outputMode.hints(selection.renderProfile().renderingHints());
+		final RenderingHints measurementHints =
+			outputMode.hints(selection.renderProfile().measurementHints());
 		selection.ranges().forEach(range ->
 			IntStream.range(range.start(), range.end()).forEach(i ->
 			{
-				Optional<Font> optional = selection.selectedFonts().stream()
-					.filter(font -> font.canDisplay(i)).findFirst();
+				// A glyph already on an incremental atlas is not drawn again
+				// unless it is needed for a texture array or a bundle, though
+				// it is still measured for a bitmap font.
+				final boolean toAtlas = atlas != null && !atlas.contains(i);
+				final boolean drawn = atlas == null
+					|| toAtlas
+					|| textureArray != null
+					|| bundle != null;
+				if (!drawn && bitmapFont == null)
+				{
+					return;
+				}
+				Optional<Font> optional = selection.fontFor(i);
 				if (optional.isPresent())
 				{
-					final Font targetFont = optional.get().deriveFont(
-						selection.fontStyle(), selection.fontSize());
 					final String text = new String(Character.toChars(i));
+					final int fontSize;
+					if (!selection.autoFontSize())
+					{
+						fontSize = selection.fontSize();
+					}
+					else if (selection.autoSizePerGlyph())
+					{
+						fontSize = FontAutosizer.fitFontSize(
+							optional.get(),
+							selection.fontStyle(),
+							text,
+							selection.pixelHeight(),
+							selection.pixelWidth(),
+							selection.autoSizeMargin());
+					}
+					else
+					{
+						fontSize = fittedSizes.get(optional.get());
+					}
+					final Font targetFont = optional.get().deriveFont(
+						selection.fontStyle(), fontSize);
 
-					final Function<Color, BufferedImage> f =
-						centerImageFunction(
+					final GlyphPlacement placement;
+					if (selection.layoutMode() == LayoutMode.BASELINE)
+					{
+						placement = baselinePlacement(
 							text,
 							targetFont,
+							lineMetrics.computeIfAbsent(
+								targetFont,
+								font -> font.getLineMetrics(
+									text, renderContext)),
 							selection.pixelHeight(),
 							selection.pixelWidth());
-					if (f != null)
+					}
+					else
+					{
+						placement = centerPlacement(
+							text,
+							targetFont,
+							rasterizer,
+							measurementHints,
+							selection.pixelHeight(),
+							selection.pixelWidth());
+					}
+					if (bitmapFont != null)
+					{
+						bitmapFont.add(i, targetFont, placement);
+					}
+					if (!drawn)
 					{
-						workCount.addAndGet(colorCount);
-						creationJobs.add(() -> selection
-							.colors()
-							.forEach(color ->
+						return;
+					}
+					if (placement != null)
+					{
+						workCount.addAndGet(filesPerGlyph);
+						remainingGlyphs.incrementAndGet();
+						if (toAtlas)
+						{
+							atlas.expect(i);
+						}
+						if (bundle != null)
+						{
+							bundle.expect(i);
+						}
+						final int layer = textureArray != null
+							? textureArray.expect(i)
+							: -1;
+						creationJobs.add(() ->
+						{
+							final GlyphMask mask = outputMode.mask(
+								placement,
+								rasterizer,
+								renderingHints,
+								selection);
+							if (table != null)
+							{
+								table.add(i, mask);
+							}
+							final List<GlyphLayers> levels = new ArrayList<>();
+							levels.add(GlyphLayers.of(mask, effects));
+							for (int m = 1; m < canvases.size(); m++)
+							{
+								final Dimension size = canvases.get(m);
+								levels.add(levels.get(0).downsample(
+									mipmapFilter, size.width, size.height));
+							}
+							final List<Rectangle> levelBounds =
+								new ArrayList<>(levels.size());
+							levels.forEach(level ->
+								levelBounds.add(level.bounds()));
+							if (trimOffsets != null)
+							{
+								for (int m = 0; m < levels.size(); m++)
+								{
+									final Rectangle bounds = levelBounds.get(m);
+									trimOffsets.add(
+										canvases.get(m),
+										i,
+										FileUtility.createFileName(
+											targetFont, text, ".png"),
+										bounds);
+									levels.set(m, levels.get(m).crop(bounds));
+								}
+							}
+							if (textureArray != null)
+							{
+								part.bounds(i, levelBounds.get(0));
+								textureArray.write(layer, mask, levels.get(0));
+							}
+							if (toAtlas || bundle != null)
+							{
+								final Rectangle bounds = levelBounds.get(0);
+								final GlyphLayers cropped =
+									levels.get(0).crop(bounds);
+								if (toAtlas)
+								{
+									atlas.add(i, cropped, bounds);
+								}
+								if (bundle != null)
+								{
+									bundle.add(i, cropped, bounds);
+								}
+							}
+							if (table == null && perGlyphFiles)
+							{
+								for (int m = 0; m < levels.size(); m++)
+								{
+									final Map<String, String> directories =
+										directoryMaps.get(m);
+									final Dimension canvas = canvases.get(m);
+									final Rectangle bounds = levelBounds.get(m);
+									final Rectangle image = trimOffsets != null
+										? new Rectangle(
+											0, 0, bounds.width, bounds.height)
+										: new Rectangle(
+											0, 0, canvas.width, canvas.height);
+									variants.forEach(name ->
+										part.add(
+											name,
+											i,
+											FileUtility.createFileName(
+												directories.get(name),
+												targetFont,
+												text,
+												".png"),
+											0,
+											0,
+											image,
+											bounds,
+											canvas));
+								}
+							}
+							if (remainingGlyphs.decrementAndGet() == 0)
+							{
+								completionJobs.forEach(Runnable::run);
+							}
+							if (table != null || !perGlyphFiles)
+							{
+								reportIfDone(
+									workCount,
+									startTime,
+									noCodePoints,
+									noImage);
+								return;
+							}
+							for (int m = 0; m < levels.size(); m++)
 							{
-								final String dir = directoryMap.get(color);
-								exportPNG(
-									f.apply(color),
-									FileUtility.createFileName(
-										dir, targetFont, text, ".png"));
-								if (workCount.decrementAndGet() == 0)
+								final GlyphLayers level = levels.get(m);
+								final Map<String, String> directories =
+									directoryMaps.get(m);
+								colors.forEach(color ->
 								{
-									long time = Instant.now().toEpochMilli()
-										- startTime.get();
-									AppRuntime.console().printf(
-										"Run time (millis): %d%n",
-										time);
-									AppRuntime.console().println(
-										AppRuntime.codePointReport(
-											"No font support: ",
-											noCodePoints));
-									AppRuntime.console().println(
-										AppRuntime.codePointReport(
-											"Control characters: ",
-											noImage));
-									ExitCode.NORMAL_EXIT.shutdown();
+									exportPNG(
+										level.raster(outputMode, color),
+										FileUtility.createFileName(
+											directories.get(color.name()),
+											targetFont,
+											text,
+											".png"));
+									reportIfDone(
+										workCount,
+										startTime,
+										noCodePoints,
+										noImage);
+								});
+								pairs.forEach(pair ->
+								{
+									exportPNG(
+										level.raster(outputMode, pair),
+										FileUtility.createFileName(
+											directories.get(pair.name()),
+											targetFont,
+											text,
+											".png"));
+									reportIfDone(
+										workCount,
+										startTime,
+										noCodePoints,
+										noImage);
+								});
+								if (palette)
+								{
+									exportPNG(
+										level.grayRaster(),
+										FileUtility.createFileName(
+											directories.get(
+												ColorMode.maskName),
+											targetFont,
+											text,
+											".png"));
+									reportIfDone(
+										workCount,
+										startTime,
+										noCodePoints,
+										noImage);
 								}
-							}));
+							}
+						});
 					}
 					else
 					{
@@ -202,7 +544,286 @@ class PNGGenerator
 					noCodePoints.add(i);
 				}
 			}));
-		return directoryMap.values();
+		if (remainingGlyphs.get() == 0 && !completionJobs.isEmpty())
+		{
+			// With no glyph to draw, such as when every glyph is already on
+			// an incremental atlas, whole-selection output is a job of its
+			// own.
+			workCount.incrementAndGet();
+			creationJobs.add(() ->
+			{
+				completionJobs.forEach(Runnable::run);
+				reportIfDone(workCount, startTime, noCodePoints, noImage);
+			});
+		}
+		final List<String> directories = new ArrayList<>();
+		directoryMaps.forEach(map -> directories.addAll(map.values()));
+		if (atlas != null)
+		{
+			directories.addAll(atlas.directories());
+		}
+		if (!selection.labels().isEmpty())
+		{
+			directories.addAll(generateLabels(
+				baseDirectory,
+				selection,
+				rasterizer,
+				fittedSizes,
+				creationJobs,
+				workCount,
+				startTime,
+				noCodePoints,
+				noImage));
+		}
+		if (selectionFiles)
+		{
+			directories.add(baseDirectory + File.separator
+				+ selection.selectionName());
+		}
+		return directories;
+	}
+
+	/**
+	 * Schedule the composition of each multi-character label of the provided
+	 * {@link Selection} in each of its colors, or color pairs when it has
+	 * background colors, or as a single mask in {@linkplain ColorMode#PALETTE
+	 * palette mode}. Labels are always drawn as coverage; the output mode and
+	 * mipmap sizes of the selection do not apply to them.
+	 *
+	 * @param baseDirectory
+	 *        The base directory to place the created labels in.
+	 * @param selection
+	 *        The {@code Selection} whose labels are composed.
+	 * @param rasterizer
+	 *        The {@link GlyphRasterizer} that draws each character once.
+	 * @param fittedSizes
+	 *        The point size fitted to each {@link Font}, empty when sizes are
+	 *        not fitted for the whole selection.
+	 * @param creationJobs
+	 *        The {@link List} to add the composition jobs to.
+	 * @param workCount
+	 *        The number of files left to generate.
+	 * @param startTime
+	 *        The time in milliseconds the run started.
+	 * @param noCodePoints
+	 *        The code points of the selection no font supports, for the run
+	 *        report.
+	 * @param noImage
+	 *        The code points of the selection that draw nothing, for the run
+	 *        report.
+	 * @return The {@link List} of directories the labels are saved in.
+	 */
+	private static @NotNull List<String> generateLabels (
+		final @NotNull String baseDirectory,
+		final @NotNull Selection selection,
+		final @NotNull GlyphRasterizer rasterizer,
+		final @NotNull Map<Font, Integer> fittedSizes,
+		final @NotNull List<Runnable> creationJobs,
+		final @NotNull AtomicInteger workCount,
+		final @NotNull AtomicLong startTime,
+		final @NotNull List<Integer> noCodePoints,
+		final @NotNull List<Integer> noImage)
+	{
+		final Map<Font, Integer> sizes =
+			selection.autoFontSize() && fittedSizes.isEmpty()
+				? FontAutosizer.fitFontSizes(selection)
+				: fittedSizes;
+		final Map<Font, Font> sizedFonts = new ConcurrentHashMap<>();
+		final LabelComposer composer = new LabelComposer(
+			rasterizer,
+			selection.renderProfile().renderingHints(),
+			codePoint -> selection.fontFor(codePoint)
+				.map(font -> sizedFonts.computeIfAbsent(font, f ->
+					f.deriveFont(
+						selection.fontStyle(),
+						selection.autoFontSize()
+							? sizes.getOrDefault(f, selection.fontSize())
+							: selection.fontSize())))
+				.orElse(null),
+			selection.labelKerning(),
+			selection.pixelHeight());
+		final boolean palette = selection.colorMode() == ColorMode.PALETTE;
+		final List<NamedColor> colors = new ArrayList<>();
+		final List<ColorPair> pairs = new ArrayList<>();
+		if (!palette)
+		{
+			selection.colors().forEach(color ->
+			{
+				if (selection.backgroundColors().isEmpty())
+				{
+					colors.add(color);
+				}
+				selection.backgroundColors().forEach(background ->
+					pairs.add(new ColorPair(color, background)));
+			});
+		}
+		final Map<String, String> directories = new HashMap<>();
+		final List<String> variants = new ArrayList<>();
+		colors.forEach(color -> variants.add(color.name()));
+		pairs.forEach(pair -> variants.add(pair.name()));
+		if (palette)
+		{
+			variants.add(ColorMode.maskName);
+		}
+		variants.forEach(name -> directories.put(
+			name,
+			FileUtility.createLabelDir(baseDirectory, name, selection)));
+		final List<Effect> effects = selection.effects();
+		selection.labels().forEach(label ->
+		{
+			workCount.addAndGet(directories.size());
+			creationJobs.add(() ->
+			{
+				final GlyphMask mask = composer.compose(label);
+				if (mask == null)
+				{
+					AppRuntime.console().println(
+						"No font support for label: " + label);
+				}
+				final GlyphLayers layers = mask == null
+					? null
+					: GlyphLayers.of(mask, effects);
+				colors.forEach(color ->
+				{
+					if (layers != null)
+					{
+						exportPNG(
+							layers.raster(OutputMode.COVERAGE, color),
+							FileUtility.createLabelFileName(
+								directories.get(color.name()), label));
+					}
+					reportIfDone(workCount, startTime, noCodePoints, noImage);
+				});
+				pairs.forEach(pair ->
+				{
+					if (layers != null)
+					{
+						exportPNG(
+							layers.raster(OutputMode.COVERAGE, pair),
+							FileUtility.createLabelFileName(
+								directories.get(pair.name()), label));
+					}
+					reportIfDone(workCount, startTime, noCodePoints, noImage);
+				});
+				if (palette)
+				{
+					if (layers != null)
+					{
+						exportPNG(
+							layers.grayRaster(),
+							FileUtility.createLabelFileName(
+								directories.get(ColorMode.maskName), label));
+					}
+					reportIfDone(workCount, startTime, noCodePoints, noImage);
+				}
+			});
+		});
+		return new ArrayList<>(directories.values());
+	}
+
+	/**
+	 * Count one generated file and, when it was the last, print the run
+	 * report and shut down.
+	 *
+	 * @param workCount
+	 *        The number of files left to generate.
+	 * @param startTime
+	 *        The time in milliseconds the run started.
+	 * @param noCodePoints
+	 *        The code points no font supports.
+	 * @param noImage
+	 *        The code points with nothing to draw.
+	 */
+	private static void reportIfDone (
+		final @NotNull AtomicInteger workCount,
+		final @NotNull AtomicLong startTime,
+		final @NotNull List<Integer> noCodePoints,
+		final @NotNull List<Integer> noImage)
+	{
+		if (workCount.decrementAndGet() == 0)
+		{
+			RasterizerOption.release();
+			OutputFiles.finish();
+			long time = Instant.now().toEpochMilli() - startTime.get();
+			AppRuntime.console().printf("Run time (millis): %d%n", time);
+			AppRuntime.console().println(
+				AppRuntime.codePointReport("No font support: ", noCodePoints));
+			AppRuntime.console().println(
+				AppRuntime.codePointReport("Control characters: ", noImage));
+			ExitCode.NORMAL_EXIT.shutdown();
+		}
+	}
+
+	/**
+	 * Write the palette of a {@link Selection} in {@linkplain
+	 * ColorMode#PALETTE palette mode} as a CSV file: its colors, in order,
+	 * and then its background colors, each with the role it has.
+	 *
+	 * @param selection
+	 *        The {@code Selection} whose colors are written.
+	 * @param fileName
+	 *        The name of the file that will hold the palette.
+	 */
+	private static void writePalette (
+		final @NotNull Selection selection,
+		final @NotNull String fileName)
+	{
+		try
+		{
+			final OutputFiles.Buffer buffer = OutputFiles.buffer();
+			final PrintWriter out = buffer.text;
+			out.println("role,name,red,green,blue,alpha");
+			selection.colors().forEach(color ->
+				out.printf(
+					"color,%s,%d,%d,%d,%d%n",
+					color.name(),
+					color.getRed(),
+					color.getGreen(),
+					color.getBlue(),
+					color.getAlpha()));
+			selection.backgroundColors().forEach(color ->
+				out.printf(
+					"background,%s,%d,%d,%d,%d%n",
+					color.name(),
+					color.getRed(),
+					color.getGreen(),
+					color.getBlue(),
+					color.getAlpha()));
+			OutputFiles.write(fileName, buffer);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + fileName);
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Encode the {@link PooledRaster} to the indicated file name and then
+	 * release it.
+	 *
+	 * @param raster
+	 *        The raster to export.
+	 * @param fileName
+	 *        The name of the file that will hold this image.
+	 */
+	static void exportPNG (
+		final @NotNull PooledRaster raster,
+		final @NotNull String fileName)
+	{
+		try
+		{
+			PngEncoder.write(raster, fileName);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + fileName);
+			ex.printStackTrace();
+		}
+		finally
+		{
+			raster.release();
+		}
 	}
 
 	/**
@@ -219,7 +840,9 @@ class PNGGenerator
 	{
 		try
 		{
-			ImageIO.write(img, "png", new File(fileName));
+			final OutputFiles.Buffer buffer = OutputFiles.buffer();
+			ImageIO.write(img, "png", buffer);
+			OutputFiles.write(fileName, buffer);
 		}
 		catch (IOException ex)
 		{
@@ -229,76 +852,104 @@ class PNGGenerator
 	}
 
 	/**
-	 * Answer a {@link Function} that accepts a {@link Color} and answers a
-	 * {@link BufferedImage} that is centered vertically and
-	 * horizontally on the canvas based on the pixel width and pixel height of
-	 * the font relative to the desired font size and the pixel width and pixel
-	 * height of the whole image.
+	 * Answer the {@link GlyphPlacement} that centers the character vertically
+	 * and horizontally on the canvas based on the pixel width and pixel height
+	 * of the font relative to the desired font size and the pixel width and
+	 * pixel height of the whole image.
 	 *
 	 * @param text
 	 *        The single-character {@code String} that holds the character
 	 *        targeted for PNG generation.
 	 * @param font
 	 *        The target {@link Font} for the character.
+	 * @param rasterizer
+	 *        The {@link GlyphRasterizer} used to measure the character.
+	 * @param hints
+	 *        The {@link RenderingHints} used to measure the character.
 	 * @param pixelHeight
 	 *        The total height in pixels of the PNG.
 	 * @param pixelWidth
 	 *        The total width in pixels of the PNG.
-	 * @return A {@code Function}.
+	 * @return A {@code GlyphPlacement}, or {@code null} if the character is
+	 *         not {@linkplain GlyphClassifier#isDrawable(Font, String)
+	 *         drawable}.
+	 * @throws IllegalStateException
+	 *         If a drawable character left no ink on the canvas.
 	 */
-	static @Nullable Function<Color, BufferedImage> centerImageFunction (
+	static @Nullable GlyphPlacement centerPlacement (
 		final @NotNull String text,
 		final @NotNull Font font,
+		final @NotNull GlyphRasterizer rasterizer,
+		final @NotNull RenderingHints hints,
 		final int pixelHeight,
 		final int pixelWidth)
 	{
+		if (!GlyphClassifier.isDrawable(font, text))
+		{
+			return null;
+		}
+
+		// The probes start from the cached outline bounds, so that a glyph
+		// that lies wholly below the baseline, such as '_', or to the left of
+		// its origin lands on the first canvas drawn. Each loop stops at the
+		// first offset that clears the edge of the canvas, so starting two
+		// pixels short of the bounds, which may be a pixel larger than the
+		// ink, finds the same offsets as starting from the edge.
+		final Rectangle bounds = GlyphOutlineCache.pixelBounds(font, text);
 		int bottomBoundary = 0;
 		int topBoundary = 1;
-		int bottomOffset = 0;
+		int bottomOffset =
+			Math.max(1, Math.max(bounds.y, bounds.y + bounds.height - 2)) - 1;
 
-		BufferedImage baseImg;
+		GlyphMask baseMask;
 
 		while (bottomBoundary == 0 && topBoundary > 0)
 		{
 			bottomOffset++;
-			baseImg = renderPNG(
+			baseMask = rasterizer.rasterize(
 				text,
 				font,
-				Color.BLUE,
+				hints,
 				pixelHeight + 1,
 				pixelWidth + 1,
 				1,
 				pixelHeight - bottomOffset);
 
-			topBoundary = topBoundarySpace(baseImg, pixelWidth, pixelHeight);
+			topBoundary = topBoundarySpace(baseMask, pixelWidth, pixelHeight);
 			bottomBoundary =
-				bottomBoundarySpace(baseImg, pixelWidth, pixelHeight);
+				bottomBoundarySpace(baseMask, pixelWidth, pixelHeight);
 		}
 
 		int leftBoundary = 0;
 		int rightBoundary = 1;
-		int leftOffset = 0;
+		int leftOffset = Math.max(1, -bounds.x - 1) - 1;
 		while (leftBoundary == 0 && rightBoundary < pixelWidth - 1)
 		{
 			leftOffset++;
-			baseImg = renderPNG(
+			baseMask = rasterizer.rasterize(
 				text,
 				font,
-				Color.BLUE,
+				hints,
 				pixelHeight + 1,
 				pixelWidth + 1,
 				leftOffset,
 				pixelHeight - bottomOffset);
-			leftBoundary = leftBoundary(baseImg, pixelWidth, pixelHeight);
-			rightBoundary = rightBoundary(baseImg, pixelWidth, pixelHeight);
+			final byte[] columns = columnCoverage(baseMask, pixelHeight);
+			leftBoundary = leftBoundary(columns, pixelWidth);
+			rightBoundary = rightBoundary(columns, pixelWidth);
 		}
 
-		if (topBoundary == 128
-			&& bottomBoundary == 129
-			&& leftBoundary == 128
-			&& rightBoundary == 129)
+		// A drawable glyph has ink, so the canvas can only be empty if the
+		// rasterizer drew it somewhere its outline is not.
+		if (topBoundary == pixelHeight
+			&& bottomBoundary == pixelHeight + 1
+			&& leftBoundary == pixelWidth
+			&& rightBoundary == pixelWidth + 1)
 		{
-			return null;
+			throw new IllegalStateException(
+				"Glyph U+" + Integer.toHexString(text.codePointAt(0))
+					+ " of " + font.getFontName()
+					+ " did not land on the measurement canvas.");
 		}
 
 		float heightOffset =
@@ -307,10 +958,62 @@ class PNGGenerator
 		float widthOffset =
 			(float) (((rightBoundary - leftBoundary) / 2.0) + leftOffset);
 
-		return c -> renderPNG(
+		return new GlyphPlacement(
+			text,
+			font,
+			pixelHeight,
+			pixelWidth,
+			widthOffset,
+			heightOffset);
+	}
+
+	/**
+	 * Answer the {@link GlyphPlacement} that sits the character on the
+	 * baseline of its font and centers it horizontally on its advance width.
+	 *
+	 * <p>
+	 * The baseline is placed so that the ascent and descent of the font are
+	 * centered vertically on the canvas, so every glyph of the same derived
+	 * font shares the same baseline. No rendering is needed to lay out the
+	 * glyph.
+	 * </p>
+	 *
+	 * @param text
+	 *        The single-character {@code String} that holds the character
+	 *        targeted for PNG generation.
+	 * @param font
+	 *        The target {@link Font} for the character.
+	 * @param metrics
+	 *        The {@link LineMetrics} of the {@code Font}, which are shared by
+	 *        all of its glyphs.
+	 * @param pixelHeight
+	 *        The total height in pixels of the PNG.
+	 * @param pixelWidth
+	 *        The total width in pixels of the PNG.
+	 * @return A {@code GlyphPlacement}, or {@code null} if the character is
+	 *         not {@linkplain GlyphClassifier#isDrawable(Font, String)
+	 *         drawable}.
+	 */
+	static @Nullable GlyphPlacement baselinePlacement (
+		final @NotNull String text,
+		final @NotNull Font font,
+		final @NotNull LineMetrics metrics,
+		final int pixelHeight,
+		final int pixelWidth)
+	{
+		if (!GlyphClassifier.isDrawable(font, text))
+		{
+			return null;
+		}
+		final float advance = GlyphOutlineCache.advance(font, text);
+		final float heightOffset =
+			(pixelHeight - metrics.getAscent() - metrics.getDescent()) / 2f
+				+ metrics.getAscent();
+		final float widthOffset = (pixelWidth - advance) / 2f;
+
+		return new GlyphPlacement(
 			text,
 			font,
-			c,
 			pixelHeight,
 			pixelWidth,
 			widthOffset,
@@ -343,11 +1046,20 @@ class PNGGenerator
 		final int pixelHeight,
 		final int pixelWidth)
 	{
-		Function<Color, BufferedImage> f = centerImageFunction(
-			text, font, pixelHeight, pixelWidth);
-		if (f != null)
+		final GlyphRasterizer rasterizer =
+			RasterizerOption.JAVA2D.rasterizer();
+		final GlyphPlacement placement = centerPlacement(
+			text,
+			font,
+			rasterizer,
+			RenderProfile.QUALITY.measurementHints(),
+			pixelHeight,
+			pixelWidth);
+		if (placement != null)
 		{
-			return f.apply(color);
+			return placement
+				.rasterize(rasterizer, RenderProfile.QUALITY.renderingHints())
+				.tint(color);
 		}
 		return null;
 	}
@@ -407,8 +1119,8 @@ class PNGGenerator
 	 * necessary for determining the rectangular size of the colored image
 	 * which is needed for the calculation of the centering vertical offset.
 	 *
-	 * @param img
-	 *        The image to measure.
+	 * @param mask
+	 *        The mask to measure.
 	 * @param pixelWidth
 	 *        The total width in pixels of the PNG.
 	 * @param pixelHeight
@@ -416,21 +1128,17 @@ class PNGGenerator
 	 * @return The number of translucent pixel rows at the bottom of the image.
 	 */
 	private static int bottomBoundarySpace (
-		final @NotNull BufferedImage img,
+		final @NotNull GlyphMask mask,
 		final int pixelWidth,
 		final int pixelHeight)
 	{
 		int y = pixelHeight;
 		while (y > -1)
 		{
-			int x = 0;
-			while (x < pixelWidth)
+			if (!MaskKernels.kernels.isEmpty(
+				mask.coverage(), y * mask.width(), pixelWidth))
 			{
-				if (img.getRGB(x, y) != 0)
-				{
-					return pixelHeight - y;
-				}
-				x++;
+				return pixelHeight - y;
 			}
 			y--;
 		}
@@ -445,8 +1153,8 @@ class PNGGenerator
 	 * for determining the rectangular size of the colored image which is needed
 	 * for the calculation of the centering vertical offset.
 	 *
-	 * @param img
-	 *        The image to measure.
+	 * @param mask
+	 *        The mask to measure.
 	 * @param pixelWidth
 	 *        The total width in pixels of the PNG.
 	 * @param pixelHeight
@@ -454,27 +1162,44 @@ class PNGGenerator
 	 * @return The number of translucent pixel rows at the top of the image.
 	 */
 	private static int topBoundarySpace (
-		final @NotNull BufferedImage img,
+		final @NotNull GlyphMask mask,
 		final int pixelWidth,
 		final int pixelHeight)
 	{
 		int y = 0;
 		while (y < pixelHeight)
 		{
-			int x = 0;
-			while (x < pixelWidth)
+			if (!MaskKernels.kernels.isEmpty(
+				mask.coverage(), y * mask.width(), pixelWidth))
 			{
-				if (img.getRGB(x, y) != 0)
-				{
-					return y;
-				}
-				x++;
+				return y;
 			}
 			y++;
 		}
 		return y;
 	}
 
+	/**
+	 * Answer the combined coverage of each column of the given mask over the
+	 * rows of the provided canvas; a column is nonzero where any of those
+	 * rows is.
+	 *
+	 * @param mask
+	 *        The mask to measure.
+	 * @param pixelHeight
+	 *        The total height in pixels of the PNG.
+	 * @return A {@code byte} array with one value per column of the mask.
+	 */
+	private static byte[] columnCoverage (
+		final @NotNull GlyphMask mask,
+		final int pixelHeight)
+	{
+		final byte[] columns = new byte[mask.width()];
+		MaskKernels.kernels.combineRows(
+			mask.coverage(), mask.width(), pixelHeight, columns);
+		return columns;
+	}
+
 	/**
 	 * Answer the horizontal offset for the given image from the left of the
 	 * provided canvas. This value represents the number of vertical columns
@@ -482,30 +1207,23 @@ class PNGGenerator
 	 * necessary for determining the rectangular size of the colored image
 	 * which is needed for the calculation of the centering horizontal offset.
 	 *
-	 * @param img
-	 *        The image to measure.
+	 * @param columns
+	 *        The {@linkplain #columnCoverage(GlyphMask, int) column coverage}
+	 *        of the mask to measure.
 	 * @param pixelWidth
 	 *        The total width in pixels of the PNG.
-	 * @param pixelHeight
-	 *        The total height in pixels of the PNG.
 	 * @return The number of translucent pixel columns to the left of the image.
 	 */
 	private static int leftBoundary (
-		final @NotNull BufferedImage img,
-		final int pixelWidth,
-		final int pixelHeight)
+		final byte[] columns,
+		final int pixelWidth)
 	{
 		int x = 0;
 		while (x < pixelWidth)
 		{
-			int y = 0;
-			while (y < pixelHeight)
+			if (columns[x] != 0)
 			{
-				if (img.getRGB(x, y) != 0)
-				{
-					return x;
-				}
-				y++;
+				return x;
 			}
 			x++;
 		}
@@ -520,31 +1238,24 @@ class PNGGenerator
 	 * necessary for determining the rectangular size of the colored image
 	 * which is needed for the calculation of the centering horizontal offset.
 	 *
-	 * @param img
-	 *        The image to measure.
+	 * @param columns
+	 *        The {@linkplain #columnCoverage(GlyphMask, int) column coverage}
+	 *        of the mask to measure.
 	 * @param pixelWidth
 	 *        The total width in pixels of the PNG.
-	 * @param pixelHeight
-	 *        The total height in pixels of the PNG.
 	 * @return The number of translucent pixel columns to the right of the
 	 *         image.
 	 */
 	private static int rightBoundary (
-		final @NotNull BufferedImage img,
-		final int pixelWidth,
-		final int pixelHeight)
+		final byte[] columns,
+		final int pixelWidth)
 	{
 		int x = pixelWidth;
 		while (x > -1)
 		{
-			int y = 0;
-			while (y < pixelHeight)
+			if (columns[x] != 0)
 			{
-				if (img.getRGB(x,y) != 0)
-				{
-					return pixelWidth - x;
-				}
-				y++;
+				return pixelWidth - x;
 			}
 			x--;
 		}
@@ -552,66 +1263,6 @@ class PNGGenerator
 		return pixelWidth - x;
 	}
 
-	/**
-	 * Answer a {@link Graphics2D} with the following preferences:
-	 *
-	 * <p>
-	 * <ul>
-	 * <li>{@link RenderingHints#KEY_ALPHA_INTERPOLATION},
-	 *     {@link RenderingHints#VALUE_ALPHA_INTERPOLATION_QUALITY}</li>
-	 * <li>{@link RenderingHints#KEY_ANTIALIASING},
-	 *     {@link RenderingHints#VALUE_ANTIALIAS_ON}</li>
-	 * <li>{@link RenderingHints#KEY_COLOR_RENDERING},
-	 *     {@link RenderingHints#VALUE_COLOR_RENDER_QUALITY}</li>
-	 * <li>{@link RenderingHints#KEY_DITHERING},
-	 *     {@link RenderingHints#VALUE_DITHER_ENABLE}</li>
-	 * <li>{@link RenderingHints#KEY_FRACTIONALMETRICS},
-	 *     {@link RenderingHints#VALUE_FRACTIONALMETRICS_ON}</li>
-	 * <li>{@link RenderingHints#KEY_INTERPOLATION},
-	 *     {@link RenderingHints#VALUE_INTERPOLATION_BILINEAR}</li>
-	 * <li>{@link RenderingHints#KEY_RENDERING},
-	 *     {@link RenderingHints#VALUE_RENDER_QUALITY}</li>
-	 * <li>{@link RenderingHints#KEY_STROKE_CONTROL},
-	 *     {@link RenderingHints#VALUE_STROKE_PURE}</li>
-	 * </ul>
-	 * </p>
-	 *
-	 * @param img
-	 *        The {@link BufferedImage} to create the {@code Graphics2D} from.
-	 * @return A {@code Graphics2D}.
-	 */
-	private static Graphics2D createGraphics2D (
-		final @NotNull BufferedImage img)
-	{
-		Graphics2D g2d = img.createGraphics();
-		g2d.setRenderingHint(
-			RenderingHints.KEY_ALPHA_INTERPOLATION,
-			RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
-		g2d.setRenderingHint(
-			RenderingHints.KEY_ANTIALIASING,
-			RenderingHints.VALUE_ANTIALIAS_ON);
-		g2d.setRenderingHint(
-			RenderingHints.KEY_COLOR_RENDERING,
-			RenderingHints.VALUE_COLOR_RENDER_QUALITY);
-		g2d.setRenderingHint(
-			RenderingHints.KEY_DITHERING,
-			RenderingHints.VALUE_DITHER_ENABLE);
-		g2d.setRenderingHint(
-			RenderingHints.KEY_FRACTIONALMETRICS,
-			RenderingHints.VALUE_FRACTIONALMETRICS_ON);
-		g2d.setRenderingHint(
-			RenderingHints.KEY_INTERPOLATION,
-			RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-		g2d.setRenderingHint(
-			RenderingHints.KEY_RENDERING,
-			RenderingHints.VALUE_RENDER_QUALITY);
-		g2d.setRenderingHint(
-			RenderingHints.KEY_STROKE_CONTROL,
-			RenderingHints.VALUE_STROKE_PURE);
-
-		return g2d;
-	}
-
 	/**
 	 * Generate PNG files for all the character codes in the provided range.
 	 *
@@ -0,0 +1,369 @@
+/*
+ * PngEncoder.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * {@code PngEncoder} writes a {@link PooledRaster} as a PNG file, reading the
+ * pixels straight from its direct buffer one row at a time, so that no image
+ * of the whole raster is ever made on the Java heap.
+ *
+ * <p>
+ * Rows are not filtered. Glyph images are mostly long runs of one value,
+ * which deflate compresses better as they are than after the adaptive PNG
+ * filters.
+ * </p>
+ *
+ * <p>
+ * Large rasters are written through a {@link PngStreamWriter}, which
+ * compresses slices of their rows in parallel.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class PngEncoder
+{
+	/**
+	 * The eight bytes every PNG file begins with.
+	 */
+	private static final byte[] signature =
+		{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+	/**
+	 * The most bytes of compressed data written in one {@code IDAT} chunk.
+	 */
+	static final int chunkBytes = 1 << 16;
+
+	/**
+	 * The number of uncompressed bytes, including filter type bytes, at which
+	 * a raster is compressed in parallel.
+	 */
+	private static final int parallelBytes = 1 << 20;
+
+	/**
+	 * The {@link Deflater} of each thread, reset after each raster.
+	 */
+	private static final ThreadLocal<Deflater> deflaters =
+		ThreadLocal.withInitial(Deflater::new);
+
+	/**
+	 * The buffer of each thread that holds an {@code IDAT} chunk as it is
+	 * compressed.
+	 */
+	private static final ThreadLocal<byte[]> compressedChunks =
+		ThreadLocal.withInitial(() -> new byte[chunkBytes]);
+
+	/**
+	 * Write the provided {@link PooledRaster} as a PNG file. The raster is not
+	 * released.
+	 *
+	 * @param raster
+	 *        The {@code PooledRaster} to encode.
+	 * @param fileName
+	 *        The name of the file to write.
+	 * @throws IOException
+	 *         If the file could not be written.
+	 */
+	static void write (
+		final @NotNull PooledRaster raster,
+		final @NotNull String fileName)
+	throws IOException
+	{
+		if ((long) (raster.rowBytes + 1) * raster.height >= parallelBytes
+			&& ForkJoinPool.getCommonPoolParallelism() > 1)
+		{
+			writeParallel(raster, fileName);
+			return;
+		}
+		final OutputFiles.Buffer buffer = OutputFiles.buffer();
+		final DataOutputStream out = buffer.data;
+		writeHeader(
+			out,
+			raster.width,
+			raster.height,
+			raster.bitDepth,
+			raster.colorType,
+			raster.palette);
+		writeImageData(out, raster);
+		writeChunk(out, "IEND", new byte[0], 0);
+		OutputFiles.write(fileName, buffer);
+	}
+
+	/**
+	 * Write the signature of a PNG file, its {@code IHDR} chunk, and its
+	 * palette if it has one.
+	 *
+	 * @param out
+	 *        The {@link DataOutputStream} to write to.
+	 * @param width
+	 *        The width in pixels of the image.
+	 * @param height
+	 *        The height in pixels of the image.
+	 * @param bitDepth
+	 *        The number of bits of each sample or palette index.
+	 * @param colorType
+	 *        The PNG color type of the pixels.
+	 * @param palette
+	 *        The ARGB of each palette entry, or {@code null}.
+	 * @throws IOException
+	 *         If the header could not be written.
+	 */
+	static void writeHeader (
+		final @NotNull DataOutputStream out,
+		final int width,
+		final int height,
+		final int bitDepth,
+		final int colorType,
+		final @Nullable int[] palette)
+	throws IOException
+	{
+		out.write(signature);
+		final ByteBuffer header = ByteBuffer.allocate(13)
+			.putInt(width)
+			.putInt(height)
+			.put((byte) bitDepth)
+			.put((byte) colorType)
+			.put((byte) 0)
+			.put((byte) 0)
+			.put((byte) 0);
+		writeChunk(out, "IHDR", header.array(), header.position());
+		if (palette != null)
+		{
+			writePalette(out, palette);
+		}
+	}
+
+	/**
+	 * Write the {@code PLTE} chunk of a palette, and its {@code tRNS} chunk
+	 * if any entry is not opaque.
+	 *
+	 * @param out
+	 *        The {@link DataOutputStream} to write to.
+	 * @param palette
+	 *        The ARGB of each palette entry.
+	 * @throws IOException
+	 *         If the chunks could not be written.
+	 */
+	private static void writePalette (
+		final @NotNull DataOutputStream out,
+		final int[] palette)
+	throws IOException
+	{
+		final byte[] colors = new byte[palette.length * 3];
+		final byte[] alphas = new byte[palette.length];
+		boolean opaque = true;
+		for (int i = 0; i < palette.length; i++)
+		{
+			final int argb = palette[i];
+			colors[i * 3] = (byte) (argb >> 16);
+			colors[i * 3 + 1] = (byte) (argb >> 8);
+			colors[i * 3 + 2] = (byte) argb;
+			alphas[i] = (byte) (argb >>> 24);
+			opaque &= (argb >>> 24) == 0xFF;
+		}
+		writeChunk(out, "PLTE", colors, colors.length);
+		if (!opaque)
+		{
+			writeChunk(out, "tRNS", alphas, alphas.length);
+		}
+	}
+
+	/**
+	 * Write the compressed rows of a {@link PooledRaster} as {@code IDAT}
+	 * chunks.
+	 *
+	 * @param out
+	 *        The {@link DataOutputStream} to write to.
+	 * @param raster
+	 *        The {@code PooledRaster} to encode.
+	 * @throws IOException
+	 *         If the chunks could not be written.
+	 */
+	private static void writeImageData (
+		final @NotNull DataOutputStream out,
+		final @NotNull PooledRaster raster)
+	throws IOException
+	{
+		final Deflater deflater = deflaters.get();
+		try
+		{
+			final byte[] compressed = compressedChunks.get();
+			// Each row is preceded by its filter type, zero for none.
+			final byte[] line = new byte[raster.rowBytes + 1];
+			int length = 0;
+			for (int row = 0; row < raster.height; row++)
+			{
+				raster.pixels.get(
+					row * raster.rowBytes, line, 1, raster.rowBytes);
+				deflater.setInput(line);
+				while (!deflater.needsInput())
+				{
+					length += deflater.deflate(
+						compressed, length, compressed.length - length);
+					if (length == compressed.length)
+					{
+						writeChunk(out, "IDAT", compressed, length);
+						length = 0;
+					}
+				}
+			}
+			deflater.finish();
+			while (!deflater.finished())
+			{
+				length += deflater.deflate(
+					compressed, length, compressed.length - length);
+				if (length == compressed.length || deflater.finished())
+				{
+					writeChunk(out, "IDAT", compressed, length);
+					length = 0;
+				}
+			}
+		}
+		finally
+		{
+			deflater.reset();
+		}
+	}
+
+	/**
+	 * Write a large {@link PooledRaster} as a PNG file through a {@link
+	 * PngStreamWriter}, which compresses slices of its rows in parallel.
+	 *
+	 * @param raster
+	 *        The {@code PooledRaster} to encode.
+	 * @param fileName
+	 *        The name of the file to write.
+	 * @throws IOException
+	 *         If the file could not be written.
+	 */
+	private static void writeParallel (
+		final @NotNull PooledRaster raster,
+		final @NotNull String fileName)
+	throws IOException
+	{
+		final int rowsPerSlice =
+			Math.max(1, PngStreamWriter.sliceBytes / (raster.rowBytes + 1));
+		try (final PngStreamWriter writer = new PngStreamWriter(
+			fileName,
+			raster.width,
+			raster.height,
+			raster.bitDepth,
+			raster.colorType,
+			raster.palette))
+		{
+			for (int from = 0; from < raster.height; from += rowsPerSlice)
+			{
+				writer.writeLines(lines(
+					raster,
+					from,
+					Math.min(raster.height, from + rowsPerSlice)));
+			}
+		}
+	}
+
+	/**
+	 * Answer the rows of a {@link PooledRaster} from {@code from} to {@code
+	 * to}, each preceded by its filter type, zero for none.
+	 *
+	 * @param raster
+	 *        The {@code PooledRaster} to read.
+	 * @param from
+	 *        The first row.
+	 * @param to
+	 *        The row after the last row.
+	 * @return The rows as they are compressed.
+	 */
+	static byte[] lines (
+		final @NotNull PooledRaster raster,
+		final int from,
+		final int to)
+	{
+		final int lineBytes = raster.rowBytes + 1;
+		final byte[] lines = new byte[(to - from) * lineBytes];
+		for (int row = from; row < to; row++)
+		{
+			raster.pixels.get(
+				row * raster.rowBytes,
+				lines,
+				(row - from) * lineBytes + 1,
+				raster.rowBytes);
+		}
+		return lines;
+	}
+
+	/**
+	 * Write a PNG chunk.
+	 *
+	 * @param out
+	 *        The {@link DataOutputStream} to write to.
+	 * @param type
+	 *        The four letter type of the chunk.
+	 * @param data
+	 *        The array that holds the data of the chunk.
+	 * @param length
+	 *        The number of bytes of data, from the start of the array.
+	 * @throws IOException
+	 *         If the chunk could not be written.
+	 */
+	static void writeChunk (
+		final @NotNull DataOutputStream out,
+		final @NotNull String type,
+		final byte[] data,
+		final int length)
+	throws IOException
+	{
+		final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+		final CRC32 crc = new CRC32();
+		crc.update(typeBytes);
+		crc.update(data, 0, length);
+		out.writeInt(length);
+		out.write(typeBytes);
+		out.write(data, 0, length);
+		out.writeInt((int) crc.getValue());
+	}
+
+	// Should never be instantiated as it just provides static methods.
+	private PngEncoder ()
+	{
+		// No implementation.
+	}
+}
@@ -0,0 +1,447 @@
+/*
+ * PngStreamWriter.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * A {@code PngStreamWriter} writes a PNG file whose rows arrive a band at a
+ * time, so that the whole image never needs to be held in memory. Only the
+ * header must be known in advance.
+ *
+ * <p>
+ * Bands are compressed in the manner of pigz: each is cut into slices that
+ * are deflated independently on the common {@link ForkJoinPool}, each primed
+ * with the 32 KB of rows before it as its dictionary so that little
+ * compression is lost. Every slice ends with a {@code SYNC_FLUSH} on a byte
+ * boundary, so the slices simply follow one another in a single zlib stream,
+ * whose checksum is combined from those of the slices. Slices are written in
+ * order as they complete, and only a few are in flight at once.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class PngStreamWriter
+implements AutoCloseable
+{
+	/**
+	 * The approximate number of uncompressed bytes of each slice.
+	 */
+	static final int sliceBytes = 1 << 18;
+
+	/**
+	 * The size of the deflate window, and so the most dictionary a slice can
+	 * use.
+	 */
+	private static final int windowBytes = 1 << 15;
+
+	/**
+	 * The modulus of the Adler-32 checksum.
+	 */
+	private static final int adlerBase = 65521;
+
+	/**
+	 * A {@code Slice} is a run of rows compressed independently of the rest.
+	 */
+	private static final class Slice
+	{
+		/**
+		 * The compressed rows, from the start of the array.
+		 */
+		final byte[] compressed;
+
+		/**
+		 * The number of bytes of {@link #compressed}.
+		 */
+		final int length;
+
+		/**
+		 * The Adler-32 checksum of the uncompressed rows.
+		 */
+		final long adler;
+
+		/**
+		 * The number of uncompressed bytes, including filter type bytes.
+		 */
+		final long rawLength;
+
+		/**
+		 * Create a {@link Slice}.
+		 *
+		 * @param compressed
+		 *        The compressed rows, from the start of the array.
+		 * @param length
+		 *        The number of compressed bytes.
+		 * @param adler
+		 *        The Adler-32 checksum of the uncompressed rows.
+		 * @param rawLength
+		 *        The number of uncompressed bytes.
+		 */
+		Slice (
+			final byte[] compressed,
+			final int length,
+			final long adler,
+			final long rawLength)
+		{
+			this.compressed = compressed;
+			this.length = length;
+			this.adler = adler;
+			this.rawLength = rawLength;
+		}
+	}
+
+	/**
+	 * The name of the file.
+	 */
+	private final @NotNull String fileName;
+
+	/**
+	 * The {@link DataOutputStream} of the file.
+	 */
+	private final @NotNull DataOutputStream out;
+
+	/**
+	 * The number of bytes of each row, including its filter type byte.
+	 */
+	private final int lineBytes;
+
+	/**
+	 * The height in pixels of the image.
+	 */
+	private final int height;
+
+	/**
+	 * The number of rows written so far.
+	 */
+	private int rows = 0;
+
+	/**
+	 * The last uncompressed bytes written, up to the size of the deflate
+	 * window, that prime the next slice.
+	 */
+	private byte[] window = new byte[0];
+
+	/**
+	 * The Adler-32 checksum of the slices written to the file so far.
+	 */
+	private long adler = 1;
+
+	/**
+	 * The slices being compressed, in the order they are written.
+	 */
+	private final Deque<ForkJoinTask<Slice>> pending = new ArrayDeque<>();
+
+	/**
+	 * Whether slices are compressed on the common pool rather than on the
+	 * writing thread.
+	 */
+	private final boolean parallel =
+		ForkJoinPool.getCommonPoolParallelism() > 1;
+
+	/**
+	 * The most slices in flight before the writer waits for the oldest.
+	 */
+	private final int maximumPending =
+		ForkJoinPool.getCommonPoolParallelism() << 1;
+
+	/**
+	 * Write rows of the image, each preceded by its filter type byte.
+	 *
+	 * @param lines
+	 *        The rows, a whole number of them.
+	 * @throws IOException
+	 *         If the rows could not be written.
+	 */
+	void writeLines (final byte[] lines) throws IOException
+	{
+		assert lines.length % lineBytes == 0;
+		rows += lines.length / lineBytes;
+		if (rows > height)
+		{
+			throw new IllegalStateException(
+				"More rows written than the image holds.");
+		}
+		final int piece = Math.max(1, sliceBytes / lineBytes) * lineBytes;
+		for (int from = 0; from < lines.length; from += piece)
+		{
+			submit(
+				from == 0 && lines.length <= piece
+					? lines
+					: Arrays.copyOfRange(
+						lines, from, Math.min(lines.length, from + piece)),
+				false);
+		}
+	}
+
+	/**
+	 * Compress a slice, in parallel when the common pool has more than one
+	 * worker, and write whichever slices have completed in order.
+	 *
+	 * @param input
+	 *        The uncompressed bytes of the slice.
+	 * @param last
+	 *        Whether the slice ends the deflate stream.
+	 * @throws IOException
+	 *         If a slice could not be written.
+	 */
+	private void submit (final byte[] input, final boolean last)
+	throws IOException
+	{
+		final byte[] dictionary = window;
+		final int keep =
+			Math.min(windowBytes, dictionary.length + input.length);
+		final byte[] next = new byte[keep];
+		final int fromInput = Math.min(keep, input.length);
+		System.arraycopy(
+			dictionary,
+			dictionary.length - (keep - fromInput),
+			next,
+			0,
+			keep - fromInput);
+		System.arraycopy(
+			input, input.length - fromInput, next, keep - fromInput, fromInput);
+		window = next;
+		if (!parallel)
+		{
+			write(compress(input, dictionary, last));
+			return;
+		}
+		pending.addLast(ForkJoinPool.commonPool().submit(() ->
+			compress(input, dictionary, last)));
+		while (!pending.isEmpty()
+			&& (pending.size() > maximumPending
+				|| pending.peekFirst().isDone()))
+		{
+			write(pending.removeFirst().join());
+		}
+	}
+
+	/**
+	 * Write a compressed {@link Slice} as an {@code IDAT} chunk.
+	 *
+	 * @param slice
+	 *        The {@code Slice} that follows the last one written.
+	 * @throws IOException
+	 *         If the chunk could not be written.
+	 */
+	private void write (final @NotNull Slice slice) throws IOException
+	{
+		adler = combineAdler(adler, slice.adler, slice.rawLength);
+		PngEncoder.writeChunk(out, "IDAT", slice.compressed, slice.length);
+	}
+
+	/**
+	 * Pad the image with transparent rows if fewer rows than its height have
+	 * been written, end the compressed stream, and close the file.
+	 *
+	 * @throws IOException
+	 *         If the file could not be written.
+	 */
+	@Override
+	public void close () throws IOException
+	{
+		try
+		{
+			final int rowsPerPiece = Math.max(1, sliceBytes / lineBytes);
+			while (rows < height)
+			{
+				writeLines(new byte[
+					Math.min(rowsPerPiece, height - rows) * lineBytes]);
+			}
+			submit(new byte[0], true);
+			while (!pending.isEmpty())
+			{
+				write(pending.removeFirst().join());
+			}
+			final byte[] trailer =
+				ByteBuffer.allocate(4).putInt((int) adler).array();
+			PngEncoder.writeChunk(out, "IDAT", trailer, trailer.length);
+			PngEncoder.writeChunk(out, "IEND", new byte[0], 0);
+		}
+		finally
+		{
+			out.close();
+		}
+		OutputFiles.written(fileName);
+	}
+
+	/**
+	 * Answer the provided bytes deflated without a zlib header or trailer.
+	 * The last slice ends the deflate stream; any other ends with a {@code
+	 * SYNC_FLUSH}.
+	 *
+	 * @param input
+	 *        The uncompressed bytes.
+	 * @param dictionary
+	 *        The uncompressed bytes before them, up to the size of the
+	 *        deflate window.
+	 * @param last
+	 *        Whether the slice ends the deflate stream.
+	 * @return A {@link Slice}.
+	 */
+	private static @NotNull Slice compress (
+		final byte[] input,
+		final byte[] dictionary,
+		final boolean last)
+	{
+		final Adler32 checksum = new Adler32();
+		checksum.update(input);
+		final Deflater deflater =
+			new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try
+		{
+			if (dictionary.length > 0)
+			{
+				deflater.setDictionary(dictionary);
+			}
+			deflater.setInput(input);
+			if (last)
+			{
+				deflater.finish();
+			}
+			byte[] compressed = new byte[input.length / 2 + 64];
+			int length = 0;
+			while (true)
+			{
+				length += deflater.deflate(
+					compressed,
+					length,
+					compressed.length - length,
+					last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+				if (last ? deflater.finished() : length < compressed.length)
+				{
+					break;
+				}
+				if (length == compressed.length)
+				{
+					compressed = Arrays.copyOf(compressed, length << 1);
+				}
+			}
+			return new Slice(
+				compressed, length, checksum.getValue(), input.length);
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Answer the Adler-32 checksum of two runs of bytes, one after the other,
+	 * from the checksum of each.
+	 *
+	 * @param first
+	 *        The checksum of the first run.
+	 * @param second
+	 *        The checksum of the second run.
+	 * @param secondLength
+	 *        The number of bytes of the second run.
+	 * @return The checksum of both runs.
+	 */
+	static long combineAdler (
+		final long first,
+		final long second,
+		final long secondLength)
+	{
+		final long remainder = secondLength % adlerBase;
+		final long a = ((first & 0xFFFF) + (second & 0xFFFF) + adlerBase - 1)
+			% adlerBase;
+		final long b = (remainder * (first & 0xFFFF)
+				+ ((first >>> 16) & 0xFFFF)
+				+ ((second >>> 16) & 0xFFFF)
+				+ adlerBase - remainder)
+			% adlerBase;
+		return (b << 16) | a;
+	}
+
+	/**
+	 * Create a {@link PngStreamWriter}, writing the header of the file.
+	 *
+	 * @param fileName
+	 *        The name of the file to write.
+	 * @param width
+	 *        The width in pixels of the image.
+	 * @param height
+	 *        The height in pixels of the image.
+	 * @param bitDepth
+	 *        The number of bits of each sample or palette index.
+	 * @param colorType
+	 *        The PNG color type of the pixels.
+	 * @param palette
+	 *        The ARGB of each palette entry, or {@code null}.
+	 * @throws IOException
+	 *         If the header could not be written.
+	 */
+	PngStreamWriter (
+		final @NotNull String fileName,
+		final int width,
+		final int height,
+		final int bitDepth,
+		final int colorType,
+		final @Nullable int[] palette)
+	throws IOException
+	{
+		this.fileName = fileName;
+		this.out = new DataOutputStream(new BufferedOutputStream(
+			new FileOutputStream(fileName), PngEncoder.chunkBytes));
+		this.height = height;
+		this.lineBytes = ((width * PooledRaster.samples(colorType) * bitDepth
+			+ 7) >> 3) + 1;
+		try
+		{
+			PngEncoder.writeHeader(
+				out, width, height, bitDepth, colorType, palette);
+			// The zlib header of the default compression level.
+			PngEncoder.writeChunk(
+				out, "IDAT", new byte[] {0x78, (byte) 0x9C}, 2);
+		}
+		catch (final IOException e)
+		{
+			out.close();
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * PooledRaster.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@code PooledRaster} holds the pixels of an image ready to encode, laid
+ * out row by row as a PNG stores them, in a direct {@link ByteBuffer} lent by
+ * the {@link RasterPool}. It must be {@linkplain #release() released} once it
+ * has been encoded.
+ *
+ * @author Richard Arriaga
+ */
+final class PooledRaster
+{
+	/**
+	 * The PNG color type of eight bit gray samples.
+	 */
+	static final int gray = 0;
+
+	/**
+	 * The PNG color type of eight bit red, green, and blue samples.
+	 */
+	static final int rgb = 2;
+
+	/**
+	 * The PNG color type of palette indices.
+	 */
+	static final int indexed = 3;
+
+	/**
+	 * The PNG color type of eight bit red, green, blue, and alpha samples.
+	 */
+	static final int rgba = 6;
+
+	/**
+	 * The width in pixels of the image.
+	 */
+	final int width;
+
+	/**
+	 * The height in pixels of the image.
+	 */
+	final int height;
+
+	/**
+	 * The PNG color type of the pixels: {@link #gray}, {@link #rgb},
+	 * {@link #indexed}, or {@link #rgba}.
+	 */
+	final int colorType;
+
+	/**
+	 * The number of bits of each sample, or of each palette index.
+	 */
+	final int bitDepth;
+
+	/**
+	 * The number of bytes of each row of {@link #pixels}.
+	 */
+	final int rowBytes;
+
+	/**
+	 * The ARGB of each palette entry of an {@link #indexed} raster, or {@code
+	 * null} for any other.
+	 */
+	final @Nullable int[] palette;
+
+	/**
+	 * The pixels, row by row, from position zero to the limit.
+	 */
+	final @NotNull ByteBuffer pixels;
+
+	/**
+	 * Return the {@link #pixels} to the {@link RasterPool}. This raster must
+	 * not be used afterward.
+	 */
+	void release ()
+	{
+		RasterPool.release(pixels);
+	}
+
+	/**
+	 * Answer a {@link PooledRaster} of eight bit samples.
+	 *
+	 * @param width
+	 *        The width in pixels of the image.
+	 * @param height
+	 *        The height in pixels of the image.
+	 * @param colorType
+	 *        One of {@link #gray}, {@link #rgb}, or {@link #rgba}.
+	 * @return A {@code PooledRaster} whose pixels are undefined.
+	 */
+	static @NotNull PooledRaster direct (
+		final int width,
+		final int height,
+		final int colorType)
+	{
+		final int rowBytes = width * samples(colorType);
+		return new PooledRaster(
+			width,
+			height,
+			colorType,
+			8,
+			rowBytes,
+			null,
+			RasterPool.acquire(rowBytes * height));
+	}
+
+	/**
+	 * Answer the number of samples of each pixel of a PNG color type.
+	 *
+	 * @param colorType
+	 *        The PNG color type.
+	 * @return {@code 4} for {@link #rgba}, {@code 3} for {@link #rgb}, and
+	 *         {@code 1} for {@link #gray} or {@link #indexed}.
+	 */
+	static int samples (final int colorType)
+	{
+		return colorType == rgba ? 4 : colorType == rgb ? 3 : 1;
+	}
+
+	/**
+	 * Answer an {@link #indexed} {@link PooledRaster}.
+	 *
+	 * @param width
+	 *        The width in pixels of the image.
+	 * @param height
+	 *        The height in pixels of the image.
+	 * @param bitDepth
+	 *        The number of bits of each palette index.
+	 * @param palette
+	 *        The ARGB of each palette entry.
+	 * @return A {@code PooledRaster} whose pixels are undefined.
+	 */
+	static @NotNull PooledRaster indexed (
+		final int width,
+		final int height,
+		final int bitDepth,
+		final int[] palette)
+	{
+		final int rowBytes = (width * bitDepth + 7) >> 3;
+		return new PooledRaster(
+			width,
+			height,
+			indexed,
+			bitDepth,
+			rowBytes,
+			palette,
+			RasterPool.acquire(rowBytes * height));
+	}
+
+	/**
+	 * Create a {@link PooledRaster}.
+	 *
+	 * @param width
+	 *        The width in pixels of the image.
+	 * @param height
+	 *        The height in pixels of the image.
+	 * @param colorType
+	 *        The PNG color type of the pixels.
+	 * @param bitDepth
+	 *        The number of bits of each sample or palette index.
+	 * @param rowBytes
+	 *        The number of bytes of each row.
+	 * @param palette
+	 *        The ARGB of each palette entry, or {@code null}.
+	 * @param pixels
+	 *        The {@link ByteBuffer} that holds the pixels.
+	 */
+	private PooledRaster (
+		final int width,
+		final int height,
+		final int colorType,
+		final int bitDepth,
+		final int rowBytes,
+		final @Nullable int[] palette,
+		final @NotNull ByteBuffer pixels)
+	{
+		this.width = width;
+		this.height = height;
+		this.colorType = colorType;
+		this.bitDepth = bitDepth;
+		this.rowBytes = rowBytes;
+		this.palette = palette;
+		this.pixels = pixels;
+	}
+}
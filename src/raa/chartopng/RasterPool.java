@@ -0,0 +1,161 @@
+/*
+ * RasterPool.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * A {@code RasterPool} lends direct {@link ByteBuffer}s to hold the pixels of
+ * images between tinting and encoding, so that they never occupy the Java
+ * heap.
+ *
+ * <p>
+ * Buffers come in power of two size classes. Small buffers are cut from
+ * shared slabs of direct memory; buffers as large as a slab are allocated
+ * alone. A {@linkplain #release(ByteBuffer) released} buffer returns to the
+ * free list of its class and is never freed, so the direct memory held is
+ * bounded by the most buffers of each class in use at once, however many
+ * images are generated.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class RasterPool
+{
+	/**
+	 * The base two logarithm of the smallest buffer lent.
+	 */
+	private static final int smallestClass = 12;
+
+	/**
+	 * The base two logarithm of the size of a slab that small buffers are cut
+	 * from.
+	 */
+	private static final int slabClass = 22;
+
+	/**
+	 * The free buffers of each size class, indexed by the base two logarithm
+	 * of their capacity. The most recently released buffer is lent first.
+	 */
+	private static final List<Deque<ByteBuffer>> free = new ArrayList<>(31);
+
+	static
+	{
+		for (int i = 0; i < 31; i++)
+		{
+			free.add(new ConcurrentLinkedDeque<>());
+		}
+	}
+
+	/**
+	 * Answer the size class that holds the provided number of bytes.
+	 *
+	 * @param bytes
+	 *        The number of bytes.
+	 * @return The base two logarithm of the capacity of the class.
+	 */
+	private static int sizeClass (final int bytes)
+	{
+		return Math.max(
+			smallestClass, 32 - Integer.numberOfLeadingZeros(bytes - 1));
+	}
+
+	/**
+	 * Answer a direct {@link ByteBuffer} whose position is zero and whose
+	 * limit is the requested number of bytes. Its contents are undefined. The
+	 * buffer must be {@linkplain #release(ByteBuffer) released} once it is no
+	 * longer needed.
+	 *
+	 * @param bytes
+	 *        The number of bytes required.
+	 * @return A {@code ByteBuffer}.
+	 */
+	static @NotNull ByteBuffer acquire (final int bytes)
+	{
+		final int sizeClass = sizeClass(bytes);
+		ByteBuffer buffer = free.get(sizeClass).pollFirst();
+		if (buffer == null)
+		{
+			buffer = allocate(sizeClass);
+		}
+		buffer.clear().limit(bytes);
+		return buffer;
+	}
+
+	/**
+	 * Return a {@link ByteBuffer} {@linkplain #acquire(int) acquired} from
+	 * this pool. The caller must not use it afterward.
+	 *
+	 * @param buffer
+	 *        The {@code ByteBuffer} to return.
+	 */
+	static void release (final @NotNull ByteBuffer buffer)
+	{
+		free.get(sizeClass(buffer.capacity())).offerFirst(buffer);
+	}
+
+	/**
+	 * Answer a new buffer of the provided size class. A small class is given
+	 * a whole slab, cut into buffers that all but the one answered go to its
+	 * free list.
+	 *
+	 * @param sizeClass
+	 *        The base two logarithm of the capacity.
+	 * @return A {@link ByteBuffer}.
+	 */
+	private static @NotNull ByteBuffer allocate (final int sizeClass)
+	{
+		final int size = 1 << sizeClass;
+		if (sizeClass >= slabClass)
+		{
+			return ByteBuffer.allocateDirect(size);
+		}
+		final ByteBuffer slab = ByteBuffer.allocateDirect(1 << slabClass);
+		for (int offset = size; offset < slab.capacity(); offset += size)
+		{
+			free.get(sizeClass).offer(slab.slice(offset, size));
+		}
+		return slab.slice(0, size);
+	}
+
+	// Should never be instantiated as it just provides static methods.
+	private RasterPool ()
+	{
+		// No implementation.
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * RasterizerOption.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * A {@code RasterizerOption} is an enum that provides the choice of {@link
+ * GlyphRasterizer} used to render glyphs.
+ *
+ * @author Richard Arriaga
+ */
+public enum RasterizerOption
+{
+	/**
+	 * Render with Java2D {@link java.awt.Graphics2D#drawString(String, float,
+	 * float) drawString}.
+	 */
+	JAVA2D("java2d", Java2DRasterizer::new),
+
+	/**
+	 * Render by filling glyph outlines with the pure Java {@link
+	 * ScanlineRasterizer}, which scales with the number of threads.
+	 */
+	SCANLINE("scanline", ScanlineRasterizer::new),
+
+	/**
+	 * Render with the system {@code libfreetype} through the {@link
+	 * FreeTypeRasterizer}, or with Java2D when the library is not installed.
+	 *
+	 * <p>
+	 * The {@code FreeTypeRasterizer} is built on the Foreign Function &amp;
+	 * Memory API, a preview API on JDK 21, so it is only loaded when this
+	 * option is first used; runs that never select it do not need {@code
+	 * --enable-preview}.
+	 * </p>
+	 */
+	FREETYPE(
+		"freetype",
+		() -> FreeTypeRasterizer.isAvailable()
+			? new FreeTypeRasterizer()
+			: new Java2DRasterizer());
+
+	/**
+	 * The name of the {@link RasterizerOption} as used in the generator plan.
+	 */
+	final String name;
+
+	/**
+	 * Create the {@link GlyphRasterizer} this {@link RasterizerOption}
+	 * represents.
+	 */
+	private final Supplier<GlyphRasterizer> factory;
+
+	/**
+	 * The {@link GlyphRasterizer} this {@link RasterizerOption} represents,
+	 * or {@code null} until it is first asked for.
+	 */
+	private GlyphRasterizer rasterizer;
+
+	/**
+	 * Create a {@link RasterizerOption}.
+	 *
+	 * @param name
+	 *        The name of the {@code RasterizerOption}.
+	 * @param factory
+	 *        Create the {@link GlyphRasterizer} this {@code
+	 *        RasterizerOption} represents.
+	 */
+	RasterizerOption (
+		final String name,
+		final Supplier<GlyphRasterizer> factory)
+	{
+		this.name = name;
+		this.factory = factory;
+	}
+
+	/**
+	 * Answer the contained {@link GlyphRasterizer}, creating it the first
+	 * time it is asked for.
+	 *
+	 * @return A {@code GlyphRasterizer}.
+	 */
+	synchronized GlyphRasterizer rasterizer ()
+	{
+		if (rasterizer == null)
+		{
+			rasterizer = factory.get();
+		}
+		return rasterizer;
+	}
+
+	/**
+	 * Release whatever the current thread holds for each {@link
+	 * GlyphRasterizer} that has been created.
+	 */
+	static void releaseThread ()
+	{
+		for (RasterizerOption option : RasterizerOption.values())
+		{
+			final GlyphRasterizer created;
+			synchronized (option)
+			{
+				created = option.rasterizer;
+			}
+			if (created != null)
+			{
+				created.releaseThread();
+			}
+		}
+	}
+
+	/**
+	 * Release whatever every thread holds for each {@link GlyphRasterizer}
+	 * that has been created.
+	 */
+	static void release ()
+	{
+		for (RasterizerOption option : RasterizerOption.values())
+		{
+			final GlyphRasterizer created;
+			synchronized (option)
+			{
+				created = option.rasterizer;
+			}
+			if (created != null)
+			{
+				created.release();
+			}
+		}
+	}
+
+	/**
+	 * A map that provides a lookup from the {@link RasterizerOption#name} to
+	 * the {@link RasterizerOption}.
+	 */
+	private static Map<String, RasterizerOption> optionMap = new HashMap<>();
+	static
+	{
+		for (RasterizerOption option : RasterizerOption.values())
+		{
+			optionMap.put(option.name, option);
+		}
+	}
+
+	/**
+	 * Answer the {@link RasterizerOption} for the given name.
+	 *
+	 * @param optionName
+	 *        The name of the rasterizer option to get.
+	 * @return A {@code RasterizerOption}, or {@code null} if there is none.
+	 */
+	public static RasterizerOption rasterizerOption (
+		final @NotNull String optionName)
+	{
+		return optionMap.get(optionName);
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * RenderBenchmark.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import java.awt.*;
+
+/**
+ * A main application class that measures the glyph throughput of each {@link
+ * RenderProfile}, separately for the measurement renders that place a glyph
+ * and for the final render of the placed glyph.
+ *
+ * <p>
+ * Arguments (all optional): font name, font size, canvas size, first code
+ * point (inclusive), last code point (exclusive).
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+public class RenderBenchmark
+{
+	public static void main(String[] args)
+	{
+		final String fontName = args.length > 0 ? args[0] : "Monaco";
+		final int fontSize = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		final int canvas = args.length > 2 ? Integer.parseInt(args[2]) : 128;
+		final int start = args.length > 3 ? Integer.parseInt(args[3]) : 33;
+		final int end = args.length > 4 ? Integer.parseInt(args[4]) : 1000;
+
+		final Font font =
+			FontManager.getFont(fontName).deriveFont(Font.PLAIN, fontSize);
+		final GlyphRasterizer rasterizer =
+			RasterizerOption.JAVA2D.rasterizer();
+
+		System.out.printf(
+			"%s %dpt on %dx%d, code points [%d, %d)%n",
+			fontName, fontSize, canvas, canvas, start, end);
+		System.out.printf(
+			"%-10s %14s %14s %14s%n",
+			"profile", "place/s", "render/s", "glyph/s");
+		// The early passes only warm up the JIT.
+		final int passes = 4;
+		for (int pass = 0; pass < passes; pass++)
+		{
+			for (final RenderProfile profile : RenderProfile.values())
+			{
+				final RenderingHints measurementHints =
+					profile.measurementHints();
+				final RenderingHints renderingHints = profile.renderingHints();
+				long placeNanos = 0;
+				long renderNanos = 0;
+				int count = 0;
+				for (int i = start; i < end; i++)
+				{
+					if (!font.canDisplay(i))
+					{
+						continue;
+					}
+					final String text = new String(Character.toChars(i));
+					final long t0 = System.nanoTime();
+					final GlyphPlacement placement =
+						PNGGenerator.centerPlacement(
+							text,
+							font,
+							rasterizer,
+							measurementHints,
+							canvas,
+							canvas);
+					final long t1 = System.nanoTime();
+					placeNanos += t1 - t0;
+					if (placement != null)
+					{
+						placement.rasterize(rasterizer, renderingHints);
+						renderNanos += System.nanoTime() - t1;
+						count++;
+					}
+				}
+				if (pass == passes - 1)
+				{
+					System.out.printf(
+						"%-10s %14.1f %14.1f %14.1f%n",
+						profile.name,
+						count * 1e9 / placeNanos,
+						count * 1e9 / renderNanos,
+						count * 1e9 / (placeNanos + renderNanos));
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*
+ * RenderProfile.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@code RenderProfile} is an enum of named sets of {@link RenderingHints}
+ * that trade rendering quality for throughput.
+ *
+ * <p>
+ * Every profile also answers {@linkplain #measurementHints() measurement
+ * hints} for the throwaway renders that only locate the edges of a glyph.
+ * Those keep the hints that change where ink lands (antialiasing, fractional
+ * metrics, and stroke control) and ask for speed on every other hint, as the
+ * others only change the colors of pixels that are already inked.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+public enum RenderProfile
+{
+	/**
+	 * Fast preview renders: antialiased, but with glyphs snapped to whole
+	 * pixel advances and every other hint favoring speed.
+	 */
+	DRAFT("draft")
+	{
+		@Override
+		void addGeometryHints (final @NotNull RenderingHints hints)
+		{
+			hints.put(
+				RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+			hints.put(
+				RenderingHints.KEY_FRACTIONALMETRICS,
+				RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+			hints.put(
+				RenderingHints.KEY_STROKE_CONTROL,
+				RenderingHints.VALUE_STROKE_NORMALIZE);
+		}
+
+		@Override
+		void addColorHints (final @NotNull RenderingHints hints)
+		{
+			addSpeedHints(hints);
+		}
+	},
+
+	/**
+	 * The glyph geometry of {@link #QUALITY} with every other hint favoring
+	 * speed.
+	 */
+	BALANCED("balanced")
+	{
+		@Override
+		void addGeometryHints (final @NotNull RenderingHints hints)
+		{
+			QUALITY.addGeometryHints(hints);
+		}
+
+		@Override
+		void addColorHints (final @NotNull RenderingHints hints)
+		{
+			addSpeedHints(hints);
+		}
+	},
+
+	/**
+	 * Every hint favors quality:
+	 *
+	 * <ul>
+	 * <li>{@link RenderingHints#KEY_ALPHA_INTERPOLATION},
+	 *     {@link RenderingHints#VALUE_ALPHA_INTERPOLATION_QUALITY}</li>
+	 * <li>{@link RenderingHints#KEY_ANTIALIASING},
+	 *     {@link RenderingHints#VALUE_ANTIALIAS_ON}</li>
+	 * <li>{@link RenderingHints#KEY_COLOR_RENDERING},
+	 *     {@link RenderingHints#VALUE_COLOR_RENDER_QUALITY}</li>
+	 * <li>{@link RenderingHints#KEY_DITHERING},
+	 *     {@link RenderingHints#VALUE_DITHER_ENABLE}</li>
+	 * <li>{@link RenderingHints#KEY_FRACTIONALMETRICS},
+	 *     {@link RenderingHints#VALUE_FRACTIONALMETRICS_ON}</li>
+	 * <li>{@link RenderingHints#KEY_INTERPOLATION},
+	 *     {@link RenderingHints#VALUE_INTERPOLATION_BILINEAR}</li>
+	 * <li>{@link RenderingHints#KEY_RENDERING},
+	 *     {@link RenderingHints#VALUE_RENDER_QUALITY}</li>
+	 * <li>{@link RenderingHints#KEY_STROKE_CONTROL},
+	 *     {@link RenderingHints#VALUE_STROKE_PURE}</li>
+	 * </ul>
+	 */
+	QUALITY("quality")
+	{
+		@Override
+		void addGeometryHints (final @NotNull RenderingHints hints)
+		{
+			hints.put(
+				RenderingHints.KEY_ANTIALIASING,
+				RenderingHints.VALUE_ANTIALIAS_ON);
+			hints.put(
+				RenderingHints.KEY_FRACTIONALMETRICS,
+				RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+			hints.put(
+				RenderingHints.KEY_STROKE_CONTROL,
+				RenderingHints.VALUE_STROKE_PURE);
+		}
+
+		@Override
+		void addColorHints (final @NotNull RenderingHints hints)
+		{
+			hints.put(
+				RenderingHints.KEY_ALPHA_INTERPOLATION,
+				RenderingHints.VALUE_ALPHA_INTERPOLATION_QUALITY);
+			hints.put(
+				RenderingHints.KEY_COLOR_RENDERING,
+				RenderingHints.VALUE_COLOR_RENDER_QUALITY);
+			hints.put(
+				RenderingHints.KEY_DITHERING,
+				RenderingHints.VALUE_DITHER_ENABLE);
+			hints.put(
+				RenderingHints.KEY_INTERPOLATION,
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			hints.put(
+				RenderingHints.KEY_RENDERING,
+				RenderingHints.VALUE_RENDER_QUALITY);
+		}
+	};
+
+	/**
+	 * Add the hints that change which pixels a glyph inks.
+	 *
+	 * @param hints
+	 *        The {@link RenderingHints} to add to.
+	 */
+	abstract void addGeometryHints (final @NotNull RenderingHints hints);
+
+	/**
+	 * Add the hints that only change the colors of inked pixels.
+	 *
+	 * @param hints
+	 *        The {@link RenderingHints} to add to.
+	 */
+	abstract void addColorHints (final @NotNull RenderingHints hints);
+
+	/**
+	 * Add hints that favor speed for everything that does not change which
+	 * pixels a glyph inks.
+	 *
+	 * @param hints
+	 *        The {@link RenderingHints} to add to.
+	 */
+	private static void addSpeedHints (final @NotNull RenderingHints hints)
+	{
+		hints.put(
+			RenderingHints.KEY_ALPHA_INTERPOLATION,
+			RenderingHints.VALUE_ALPHA_INTERPOLATION_SPEED);
+		hints.put(
+			RenderingHints.KEY_COLOR_RENDERING,
+			RenderingHints.VALUE_COLOR_RENDER_SPEED);
+		hints.put(
+			RenderingHints.KEY_DITHERING,
+			RenderingHints.VALUE_DITHER_DISABLE);
+		hints.put(
+			RenderingHints.KEY_INTERPOLATION,
+			RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		hints.put(
+			RenderingHints.KEY_RENDERING,
+			RenderingHints.VALUE_RENDER_SPEED);
+	}
+
+	/**
+	 * The name of the {@link RenderProfile} as used in the generator plan.
+	 */
+	final String name;
+
+	/**
+	 * Create a {@link RenderProfile}.
+	 *
+	 * @param name
+	 *        The name of the {@code RenderProfile}.
+	 */
+	RenderProfile (final String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Answer the {@link RenderingHints} for the final render of a glyph.
+	 *
+	 * @return A new {@code RenderingHints}.
+	 */
+	@NotNull RenderingHints renderingHints ()
+	{
+		final RenderingHints hints = new RenderingHints(null);
+		addGeometryHints(hints);
+		addColorHints(hints);
+		return hints;
+	}
+
+	/**
+	 * Answer the {@link RenderingHints} for the renders that measure where a
+	 * glyph lands on the canvas. A glyph inks the same pixels with these hints
+	 * as with the {@linkplain #renderingHints() rendering hints}.
+	 *
+	 * @return A new {@code RenderingHints}.
+	 */
+	@NotNull RenderingHints measurementHints ()
+	{
+		final RenderingHints hints = new RenderingHints(null);
+		addGeometryHints(hints);
+		addSpeedHints(hints);
+		return hints;
+	}
+
+	/**
+	 * A map that provides a lookup from the {@link RenderProfile#name} to the
+	 * {@link RenderProfile}.
+	 */
+	private static Map<String, RenderProfile> profileMap = new HashMap<>();
+	static
+	{
+		for (RenderProfile profile : RenderProfile.values())
+		{
+			profileMap.put(profile.name, profile);
+		}
+	}
+
+	/**
+	 * Answer the {@link RenderProfile} for the given name.
+	 *
+	 * @param profileName
+	 *        The name of the render profile to get.
+	 * @return A {@code RenderProfile}, or {@code null} if there is none.
+	 */
+	public static RenderProfile renderProfile (
+		final @NotNull String profileName)
+	{
+		return profileMap.get(profileName);
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * ScalarMaskKernels.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@code ScalarMaskKernels} is the {@link MaskKernels} that processes one
+ * pixel at a time, for runtimes without the vector module.
+ *
+ * @author Richard Arriaga
+ */
+final class ScalarMaskKernels
+implements MaskKernels
+{
+	@Override
+	public boolean isEmpty (
+		final byte[] values,
+		final int from,
+		final int length)
+	{
+		for (int i = from, end = from + length; i < end; i++)
+		{
+			if (values[i] != 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void combineRows (
+		final byte[] values,
+		final int stride,
+		final int rows,
+		final byte[] columns)
+	{
+		Arrays.fill(columns, 0, stride, (byte) 0);
+		for (int y = 0, row = 0; y < rows; y++, row += stride)
+		{
+			for (int x = 0; x < stride; x++)
+			{
+				columns[x] |= values[row + x];
+			}
+		}
+	}
+
+	@Override
+	public void tint (
+		final byte[] coverage,
+		final int rgb,
+		final int alpha,
+		final int[] pixels)
+	{
+		for (int i = 0; i < coverage.length; i++)
+		{
+			final int c = coverage[i] & 0xFF;
+			if (c != 0)
+			{
+				pixels[i] = (((c * alpha + 127) / 255) << 24) | rgb;
+			}
+		}
+	}
+
+	@Override
+	public void tintRgba (
+		final byte[] coverage,
+		final int rgb,
+		final int alpha,
+		final ByteBuffer pixels)
+	{
+		final int[] rgba = new int[256];
+		for (int c = 1; c < rgba.length; c++)
+		{
+			rgba[c] = MaskKernels.nativeRgba(rgb, (c * alpha + 127) / 255);
+		}
+		final IntBuffer raster = MaskKernels.nativePixels(pixels);
+		for (int i = 0; i < coverage.length; i++)
+		{
+			raster.put(i, rgba[coverage[i] & 0xFF]);
+		}
+	}
+
+	@Override
+	public void grayAlpha (final int[] pixels, final byte[] grayAlpha)
+	{
+		for (int i = 0; i < pixels.length; i++)
+		{
+			final int argb = pixels[i];
+			grayAlpha[i << 1] = (byte) ((77 * ((argb >>> 16) & 0xFF)
+				+ 150 * ((argb >>> 8) & 0xFF)
+				+ 29 * (argb & 0xFF)
+				+ 128) >>> 8);
+			grayAlpha[(i << 1) + 1] = (byte) (argb >>> 24);
+		}
+	}
+}
@@ -0,0 +1,353 @@
+/*
+ * ScanlineRasterizer.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.PathIterator;
+
+/**
+ * A {@code ScanlineRasterizer} is a {@link GlyphRasterizer} that fills the
+ * {@linkplain GlyphOutlineCache cached outline} of a glyph in pure Java.
+ *
+ * <p>
+ * The outline is flattened into line segments, and each segment adds its
+ * exact signed area coverage to an accumulation buffer. A running sum along
+ * each row then turns the accumulated area into the antialiased coverage of
+ * every pixel. All state lives in buffers allocated for the call, so glyphs
+ * are rasterized concurrently without contending on Java2D's shared glyph
+ * caches or native rasterizer locks.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class ScanlineRasterizer
+implements GlyphRasterizer
+{
+	/**
+	 * The maximum distance, in pixels, that the flattened line segments may
+	 * deviate from the curves of the outline.
+	 */
+	private static final double flatness = 0.1;
+
+	@Override
+	public @NotNull GlyphMask rasterize (
+		final @NotNull String text,
+		final @NotNull Font font,
+		final @NotNull RenderingHints hints,
+		final int pixelHeight,
+		final int pixelWidth,
+		final float widthOffset,
+		final float heightOffset)
+	{
+		return rasterize(
+			GlyphOutlineCache.glyph(font, text).outline(),
+			GlyphOutlineCache.transform(font, widthOffset, heightOffset),
+			pixelHeight,
+			pixelWidth);
+	}
+
+	/**
+	 * Answer a {@link GlyphMask} of the provided {@link Shape}, using the
+	 * non-zero winding rule.
+	 *
+	 * @param outline
+	 *        The {@code Shape} to fill.
+	 * @param transform
+	 *        The {@link AffineTransform} that takes the {@code Shape} to
+	 *        canvas coordinates.
+	 * @param pixelHeight
+	 *        The total height in pixels of the mask.
+	 * @param pixelWidth
+	 *        The total width in pixels of the mask.
+	 * @return A {@code GlyphMask}.
+	 */
+	static @NotNull GlyphMask rasterize (
+		final @NotNull Shape outline,
+		final @NotNull AffineTransform transform,
+		final int pixelHeight,
+		final int pixelWidth)
+	{
+		// Each row has room for the coverage that lands just past the right
+		// edge of the canvas, so rows accumulate independently.
+		final int stride = pixelWidth + 2;
+		final float[] area = new float[stride * pixelHeight];
+		final float[] coords = new float[6];
+		float startX = 0;
+		float startY = 0;
+		float lastX = 0;
+		float lastY = 0;
+		final PathIterator path = outline.getPathIterator(transform, flatness);
+		while (!path.isDone())
+		{
+			switch (path.currentSegment(coords))
+			{
+				case PathIterator.SEG_MOVETO:
+					clippedLine(
+						area, stride, pixelHeight, pixelWidth,
+						lastX, lastY, startX, startY);
+					startX = lastX = coords[0];
+					startY = lastY = coords[1];
+					break;
+				case PathIterator.SEG_LINETO:
+					clippedLine(
+						area, stride, pixelHeight, pixelWidth,
+						lastX, lastY, coords[0], coords[1]);
+					lastX = coords[0];
+					lastY = coords[1];
+					break;
+				case PathIterator.SEG_CLOSE:
+					clippedLine(
+						area, stride, pixelHeight, pixelWidth,
+						lastX, lastY, startX, startY);
+					lastX = startX;
+					lastY = startY;
+					break;
+				default:
+					assert false : "Flattened paths only contain lines";
+			}
+			path.next();
+		}
+		clippedLine(
+			area, stride, pixelHeight, pixelWidth,
+			lastX, lastY, startX, startY);
+
+		final byte[] coverage = new byte[pixelWidth * pixelHeight];
+		for (int y = 0; y < pixelHeight; y++)
+		{
+			float sum = 0;
+			final int rowStart = y * stride;
+			final int maskStart = y * pixelWidth;
+			for (int x = 0; x < pixelWidth; x++)
+			{
+				sum += area[rowStart + x];
+				final float c = Math.min(Math.abs(sum), 1f);
+				coverage[maskStart + x] = (byte) (c * 255f + 0.5f);
+			}
+		}
+		return new GlyphMask(pixelWidth, pixelHeight, coverage);
+	}
+
+	/**
+	 * Accumulate the line segment after clipping it horizontally to the
+	 * canvas. The parts left of the canvas still contribute their winding to
+	 * every pixel of the rows they cross, so they are moved onto the left
+	 * edge. The parts right of the canvas cannot affect any pixel on it, so
+	 * they are dropped.
+	 *
+	 * @param area
+	 *        The accumulation buffer.
+	 * @param stride
+	 *        The number of buffer entries per row.
+	 * @param pixelHeight
+	 *        The total height in pixels of the canvas.
+	 * @param pixelWidth
+	 *        The total width in pixels of the canvas.
+	 * @param x0
+	 *        The horizontal coordinate of the start of the segment.
+	 * @param y0
+	 *        The vertical coordinate of the start of the segment.
+	 * @param x1
+	 *        The horizontal coordinate of the end of the segment.
+	 * @param y1
+	 *        The vertical coordinate of the end of the segment.
+	 */
+	private static void clippedLine (
+		final float[] area,
+		final int stride,
+		final int pixelHeight,
+		final int pixelWidth,
+		final float x0,
+		final float y0,
+		final float x1,
+		final float y1)
+	{
+		if (y0 == y1)
+		{
+			return;
+		}
+		// Split the segment where it crosses either vertical edge.
+		float leftCut = 1;
+		float rightCut = 1;
+		if (x0 != x1)
+		{
+			final float tLeft = -x0 / (x1 - x0);
+			final float tRight = (pixelWidth - x0) / (x1 - x0);
+			leftCut = tLeft > 0 && tLeft < 1 ? tLeft : 1;
+			rightCut = tRight > 0 && tRight < 1 ? tRight : 1;
+		}
+		final float firstCut = Math.min(leftCut, rightCut);
+		final float secondCut = Math.max(leftCut, rightCut);
+		float t0 = 0;
+		for (final float t1 : new float[] {firstCut, secondCut, 1})
+		{
+			if (t1 <= t0)
+			{
+				continue;
+			}
+			final float ax = x0 + (x1 - x0) * t0;
+			final float ay = y0 + (y1 - y0) * t0;
+			final float bx = x0 + (x1 - x0) * t1;
+			final float by = y0 + (y1 - y0) * t1;
+			final float mid = (ax + bx) / 2;
+			if (mid <= 0)
+			{
+				line(area, stride, pixelHeight, 0, ay, 0, by);
+			}
+			else if (mid < pixelWidth)
+			{
+				line(
+					area,
+					stride,
+					pixelHeight,
+					Math.max(0, Math.min(ax, pixelWidth)),
+					ay,
+					Math.max(0, Math.min(bx, pixelWidth)),
+					by);
+			}
+			t0 = t1;
+		}
+	}
+
+	/**
+	 * Accumulate the signed area coverage of a line segment that lies within
+	 * the horizontal extent of the canvas.
+	 *
+	 * @param area
+	 *        The accumulation buffer.
+	 * @param stride
+	 *        The number of buffer entries per row.
+	 * @param pixelHeight
+	 *        The total height in pixels of the canvas.
+	 * @param x0
+	 *        The horizontal coordinate of the start of the segment.
+	 * @param y0
+	 *        The vertical coordinate of the start of the segment.
+	 * @param x1
+	 *        The horizontal coordinate of the end of the segment.
+	 * @param y1
+	 *        The vertical coordinate of the end of the segment.
+	 */
+	private static void line (
+		final float[] area,
+		final int stride,
+		final int pixelHeight,
+		final float x0,
+		final float y0,
+		final float x1,
+		final float y1)
+	{
+		if (y0 == y1)
+		{
+			return;
+		}
+		final float direction;
+		final float topX;
+		final float topY;
+		final float bottomX;
+		final float bottomY;
+		if (y0 < y1)
+		{
+			direction = 1f;
+			topX = x0;
+			topY = y0;
+			bottomX = x1;
+			bottomY = y1;
+		}
+		else
+		{
+			direction = -1f;
+			topX = x1;
+			topY = y1;
+			bottomX = x0;
+			bottomY = y0;
+		}
+		final float dxdy = (bottomX - topX) / (bottomY - topY);
+		float x = topX;
+		if (topY < 0)
+		{
+			x -= topY * dxdy;
+		}
+		final int firstRow = Math.max(0, (int) topY);
+		final int lastRow = Math.min(pixelHeight, (int) Math.ceil(bottomY));
+		for (int y = firstRow; y < lastRow; y++)
+		{
+			final int rowStart = y * stride;
+			final float dy = Math.min(y + 1f, bottomY) - Math.max(y, topY);
+			final float nextX = x + dxdy * dy;
+			final float d = dy * direction;
+			final float left = Math.min(x, nextX);
+			final float right = Math.max(x, nextX);
+			final float leftFloor = (float) Math.floor(left);
+			final int leftIndex = (int) leftFloor;
+			final float rightCeil = (float) Math.ceil(right);
+			final int rightIndex = (int) rightCeil;
+			if (rightIndex <= leftIndex + 1)
+			{
+				// The segment stays within one pixel of this row.
+				final float middle = 0.5f * (x + nextX) - leftFloor;
+				area[rowStart + leftIndex] += d - d * middle;
+				area[rowStart + leftIndex + 1] += d * middle;
+			}
+			else
+			{
+				final float inverse = 1f / (right - left);
+				final float leftFraction = left - leftFloor;
+				final float a0 =
+					0.5f * inverse * (1 - leftFraction) * (1 - leftFraction);
+				final float rightFraction = right - rightCeil + 1;
+				final float am = 0.5f * inverse * rightFraction * rightFraction;
+				area[rowStart + leftIndex] += d * a0;
+				if (rightIndex == leftIndex + 2)
+				{
+					area[rowStart + leftIndex + 1] += d * (1 - a0 - am);
+				}
+				else
+				{
+					final float a1 = inverse * (1.5f - leftFraction);
+					area[rowStart + leftIndex + 1] += d * (a1 - a0);
+					for (int xi = leftIndex + 2; xi < rightIndex - 1; xi++)
+					{
+						area[rowStart + xi] += d * inverse;
+					}
+					final float a2 =
+						a1 + (rightIndex - leftIndex - 3) * inverse;
+					area[rowStart + rightIndex - 1] += d * (1 - a2 - am);
+				}
+				area[rowStart + rightIndex] += d * am;
+			}
+			x = nextX;
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * ShelfPacker.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@code ShelfPacker} places rectangles on fixed size atlas pages in the
+ * order they are given, left to right along horizontal shelves and shelves
+ * top to bottom. A shelf is as tall as the tallest rectangle on it. Once a
+ * rectangle is placed below a shelf, nothing more is placed on that shelf, so
+ * each shelf is complete as soon as the next one begins.
+ *
+ * <p>
+ * The exception is a shelf {@linkplain #restore(int, int, int, int) restored}
+ * from an earlier packing: the free space at its end is reused for any
+ * rectangle no taller than the shelf before a new shelf is begun, so that
+ * glyphs added to an atlas fill its gaps without moving those already on it.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class ShelfPacker
+{
+	/**
+	 * A {@code Placement} is the position of a rectangle on an atlas page.
+	 */
+	static final class Placement
+	{
+		/**
+		 * The index of the page, from {@code 0}.
+		 */
+		final int page;
+
+		/**
+		 * The column of the left of the rectangle.
+		 */
+		final int x;
+
+		/**
+		 * The row of the top of the rectangle.
+		 */
+		final int y;
+
+		/**
+		 * Create a {@link Placement}.
+		 *
+		 * @param page
+		 *        The index of the page.
+		 * @param x
+		 *        The column of the left of the rectangle.
+		 * @param y
+		 *        The row of the top of the rectangle.
+		 */
+		Placement (final int page, final int x, final int y)
+		{
+			this.page = page;
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	/**
+	 * A {@code Shelf} is a row of rectangles on a page.
+	 */
+	static final class Shelf
+	{
+		/**
+		 * The index of the page, from {@code 0}.
+		 */
+		final int page;
+
+		/**
+		 * The row of the top of the shelf.
+		 */
+		final int y;
+
+		/**
+		 * The height of the shelf, that of its tallest rectangle.
+		 */
+		int height;
+
+		/**
+		 * The number of columns taken by its rectangles, from the left.
+		 */
+		int used;
+
+		/**
+		 * Whether the free space at the end of the shelf may still be used.
+		 */
+		final boolean restored;
+
+		/**
+		 * Create a {@link Shelf}.
+		 *
+		 * @param page
+		 *        The index of the page.
+		 * @param y
+		 *        The row of the top of the shelf.
+		 * @param height
+		 *        The height of the shelf.
+		 * @param used
+		 *        The number of columns taken.
+		 * @param restored
+		 *        Whether the shelf was restored from an earlier packing.
+		 */
+		Shelf (
+			final int page,
+			final int y,
+			final int height,
+			final int used,
+			final boolean restored)
+		{
+			this.page = page;
+			this.y = y;
+			this.height = height;
+			this.used = used;
+			this.restored = restored;
+		}
+	}
+
+	/**
+	 * The width in pixels of a page.
+	 */
+	private final int width;
+
+	/**
+	 * The height in pixels of a page.
+	 */
+	private final int height;
+
+	/**
+	 * Every {@link Shelf}, in the order begun; the last is the current shelf.
+	 */
+	private final @NotNull List<Shelf> shelves = new ArrayList<>();
+
+	/**
+	 * Answer every {@link Shelf}, in the order begun.
+	 *
+	 * @return An unmodifiable {@link List}.
+	 */
+	@NotNull List<Shelf> shelves ()
+	{
+		return Collections.unmodifiableList(shelves);
+	}
+
+	/**
+	 * Answer the number of pages that hold a {@link Shelf}.
+	 *
+	 * @return A page count.
+	 */
+	int pageCount ()
+	{
+		return shelves.isEmpty() ? 0 : shelves.get(shelves.size() - 1).page + 1;
+	}
+
+	/**
+	 * Add a {@link Shelf} from an earlier packing. Shelves must be restored
+	 * in the order they were begun.
+	 *
+	 * @param page
+	 *        The index of the page.
+	 * @param y
+	 *        The row of the top of the shelf.
+	 * @param shelfHeight
+	 *        The height of the shelf.
+	 * @param used
+	 *        The number of columns taken.
+	 */
+	void restore (
+		final int page,
+		final int y,
+		final int shelfHeight,
+		final int used)
+	{
+		shelves.add(new Shelf(page, y, shelfHeight, used, true));
+	}
+
+	/**
+	 * Answer the {@link Placement} of the next rectangle: at the end of the
+	 * first restored shelf it fits on, otherwise on the current shelf,
+	 * beginning a new shelf if it does not fit on the current one and a new
+	 * page if the new shelf does not fit on the current page.
+	 *
+	 * @param w
+	 *        The width of the rectangle.
+	 * @param h
+	 *        The height of the rectangle.
+	 * @return A {@code Placement}, or {@code null} if the rectangle is larger
+	 *         than a page.
+	 */
+	@Nullable Placement place (final int w, final int h)
+	{
+		if (w > width || h > height)
+		{
+			return null;
+		}
+		final int last = shelves.size() - 1;
+		for (int i = 0; i < last; i++)
+		{
+			final Shelf shelf = shelves.get(i);
+			if (shelf.restored && h <= shelf.height && shelf.used + w <= width)
+			{
+				final Placement placement =
+					new Placement(shelf.page, shelf.used, shelf.y);
+				shelf.used += w;
+				return placement;
+			}
+		}
+		Shelf shelf = last < 0 ? null : shelves.get(last);
+		if (shelf == null)
+		{
+			shelf = new Shelf(0, 0, 0, 0, false);
+			shelves.add(shelf);
+		}
+		else if (shelf.used + w > width)
+		{
+			final int y = shelf.y + shelf.height;
+			shelf = y + h > height
+				? new Shelf(shelf.page + 1, 0, 0, 0, false)
+				: new Shelf(shelf.page, y, 0, 0, false);
+			shelves.add(shelf);
+		}
+		else if (shelf.y + h > height)
+		{
+			shelf = new Shelf(shelf.page + 1, 0, 0, 0, false);
+			shelves.add(shelf);
+		}
+		final Placement placement =
+			new Placement(shelf.page, shelf.used, shelf.y);
+		shelf.used += w;
+		shelf.height = Math.max(shelf.height, h);
+		return placement;
+	}
+
+	/**
+	 * Create a {@link ShelfPacker}.
+	 *
+	 * @param width
+	 *        The width in pixels of a page.
+	 * @param height
+	 *        The height in pixels of a page.
+	 */
+	ShelfPacker (final int width, final int height)
+	{
+		this.width = width;
+		this.height = height;
+	}
+}
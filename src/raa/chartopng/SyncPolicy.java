@@ -0,0 +1,102 @@
+/*
+ * SyncPolicy.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@code SyncPolicy} is an enum that describes when the files a run writes
+ * are forced to storage.
+ *
+ * @author Richard Arriaga
+ */
+public enum SyncPolicy
+{
+	/**
+	 * Leave the files to the operating system to write back.
+	 */
+	NONE("none"),
+
+	/**
+	 * Force the files of a directory, and then the directory, each time a
+	 * batch of them has been written, and the rest at the end of the run.
+	 */
+	DIRECTORY("directory"),
+
+	/**
+	 * Force every file, and then every directory, at the end of the run.
+	 */
+	RUN("run");
+
+	/**
+	 * The name of the {@link SyncPolicy} as used in the generator plan.
+	 */
+	final String name;
+
+	/**
+	 * Create a {@link SyncPolicy}.
+	 *
+	 * @param name
+	 *        The name of the {@code SyncPolicy}.
+	 */
+	SyncPolicy (final String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * A map that provides a lookup from the {@link SyncPolicy#name} to the
+	 * {@link SyncPolicy}.
+	 */
+	private static Map<String, SyncPolicy> policyMap = new HashMap<>();
+	static
+	{
+		for (SyncPolicy policy : SyncPolicy.values())
+		{
+			policyMap.put(policy.name, policy);
+		}
+	}
+
+	/**
+	 * Answer the {@link SyncPolicy} for the given name.
+	 *
+	 * @param policyName
+	 *        The name of the sync policy to get.
+	 * @return A {@code SyncPolicy}, or {@code null} if there is none.
+	 */
+	public static SyncPolicy syncPolicy (final @NotNull String policyName)
+	{
+		return policyMap.get(policyName);
+	}
+}
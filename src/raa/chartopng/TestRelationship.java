@@ -46,7 +46,7 @@ public class TestRelationship
 {
 	static ColorOption colorOption = ColorOption.BLACK.RED;
 	static Font baseFont = FontManager.getFont("Monaco");
-	static int fontSize = 100; //TODO change me to alter app;
+	static int margin = 0;
 
 	public static void main(String[] args)
 	{
@@ -58,33 +58,29 @@ public class TestRelationship
 
 		FileUtility.createDir(dir);
 
-		int limit = 101;
+		int fontSize = FontAutosizer.fitFontSize(
+			baseFont, Font.PLAIN, testText, 128, 128, margin);
+		Font chosenFont = baseFont.deriveFont(Font.PLAIN, fontSize);
+		BufferedImage img = PNGGenerator.centerImage(
+			testText,
+			chosenFont,
+			colorOption.color,
+			128,
+			128);
 
-		for (int i = 0; i + fontSize < limit; i ++)
-		{
-			int tempFontSize = fontSize + i;
-			Font chosenFont = baseFont.deriveFont(0, tempFontSize);
-			BufferedImage img = PNGGenerator.centerImage(
-				testText,
-				chosenFont,
-				colorOption.color,
-				128,
-				128);
-
-			String fileName =
-				FileUtility.createFileName(
-					dir, chosenFont, testText, " " + tempFontSize);
+		String fileName =
+			FileUtility.createFileName(
+				dir, chosenFont, testText, " " + fontSize);
 
-			if (img != null)
-			{
-				PNGGenerator.exportPNG(img, fileName);
-				System.out.println("File: " + fileName);
-			}
-			else
-			{
-				System.out.println("Size too big: " + fileName);
-			}
-			System.out.println();
+		if (img != null)
+		{
+			PNGGenerator.exportPNG(img, fileName);
+			System.out.println("File: " + fileName);
+		}
+		else
+		{
+			System.out.println("Control character: " + fileName);
 		}
+		System.out.println();
 	}
 }
@@ -0,0 +1,553 @@
+/*
+ * TextureArray.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import raa.configuration.State.Selection;
+import raa.utility.FileUtility;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@code TextureArray} writes the glyphs of a {@link Selection} to KTX2
+ * files as uncompressed 2D texture arrays, one layer for each glyph, that a
+ * renderer can upload as they are without decoding a PNG.
+ *
+ * <p>
+ * Each glyph is given its layer, in code point order, as it is scheduled, so
+ * the size and place of every layer in the file is known before any glyph is
+ * drawn. The job of each glyph writes its layers straight to their places in
+ * the files, in whatever order the jobs run, and the header, which holds the
+ * number of layers, is written last by {@link #finish(String)}, along with a
+ * CSV sidecar that maps each code point to its layer.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class TextureArray
+{
+	/**
+	 * A {@code Variant} is the file of the glyphs drawn in one color or color
+	 * pair, or of their coverage alone.
+	 */
+	private static final class Variant
+	{
+		/** The name of the color or color pair, or of the coverage. */
+		final @NotNull String name;
+
+		/** The name of the KTX2 file. */
+		final @NotNull String fileName;
+
+		/**
+		 * The {@link Color} the glyphs are drawn in on a transparent
+		 * background, or {@code null}.
+		 */
+		final @Nullable Color color;
+
+		/**
+		 * The {@link ColorPair} the glyphs are drawn with on an opaque
+		 * background, or {@code null}.
+		 */
+		final @Nullable ColorPair pair;
+
+		/**
+		 * The {@link FileChannel} of the file, or {@code null} if it has not
+		 * yet been opened.
+		 */
+		@Nullable FileChannel channel;
+
+		/**
+		 * Answer the {@link FileChannel} of the file, opening it the first
+		 * time.
+		 *
+		 * @return A {@code FileChannel}.
+		 * @throws IOException
+		 *         If the file could not be opened.
+		 */
+		synchronized @NotNull FileChannel channel () throws IOException
+		{
+			if (channel == null)
+			{
+				channel = FileChannel.open(
+					Paths.get(fileName),
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+			}
+			return channel;
+		}
+
+		/**
+		 * Create a {@link Variant}.
+		 *
+		 * @param name
+		 *        The name of the color or color pair, or of the coverage.
+		 * @param fileName
+		 *        The name of the KTX2 file.
+		 * @param color
+		 *        The {@link Color} of the glyphs, or {@code null}.
+		 * @param pair
+		 *        The {@link ColorPair} of the glyphs, or {@code null}.
+		 */
+		Variant (
+			final @NotNull String name,
+			final @NotNull String fileName,
+			final @Nullable Color color,
+			final @Nullable ColorPair pair)
+		{
+			this.name = name;
+			this.fileName = fileName;
+			this.color = color;
+			this.pair = pair;
+		}
+	}
+
+	/**
+	 * The twelve byte identifier that begins every KTX2 file.
+	 */
+	private static final byte[] identifier = {
+		(byte) 0xAB, 'K', 'T', 'X', ' ', '2', '0', (byte) 0xBB,
+		'\r', '\n', 0x1A, '\n'};
+
+	/**
+	 * The key/value pairs of every file, sorted by key: rows run down from
+	 * the top, as in the PNGs, and the name of the writer.
+	 */
+	private static final String[][] keyValues = {
+		{"KTXorientation", "rd"},
+		{"KTXwriter", "Character-to-PNG"}};
+
+	/**
+	 * The number of bytes of the header, the index, and the one level index
+	 * entry, after which comes the data format descriptor.
+	 */
+	private static final int descriptorOffset = 104;
+
+	/**
+	 * The {@link TextureFormat} of the texels.
+	 */
+	private final @NotNull TextureFormat format;
+
+	/**
+	 * The width in pixels of a layer.
+	 */
+	private final int width;
+
+	/**
+	 * The height in pixels of a layer.
+	 */
+	private final int height;
+
+	/**
+	 * The number of bytes of a layer.
+	 */
+	private final int layerBytes;
+
+	/**
+	 * The data format descriptor, followed by the key/value data.
+	 */
+	private final @NotNull ByteBuffer metadata;
+
+	/**
+	 * The position in each file of the first layer.
+	 */
+	private final long dataOffset;
+
+	/**
+	 * The {@link Variant}s, one for each file.
+	 */
+	private final @NotNull List<Variant> variants = new ArrayList<>();
+
+	/**
+	 * The code point of each layer.
+	 */
+	private final @NotNull List<Integer> codePoints = new ArrayList<>();
+
+	/**
+	 * Give the glyph of the provided code point the next layer. Glyphs must
+	 * be expected in code point order.
+	 *
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 * @return The index of its layer.
+	 */
+	synchronized int expect (final int codePoint)
+	{
+		codePoints.add(codePoint);
+		return codePoints.size() - 1;
+	}
+
+	/**
+	 * Write a glyph to its layer of each file.
+	 *
+	 * @param layer
+	 *        The index of the layer, as answered by {@link #expect(int)}.
+	 * @param mask
+	 *        The {@link GlyphMask} of the glyph.
+	 * @param layers
+	 *        The {@link GlyphLayers} of the glyph and its effects.
+	 */
+	void write (
+		final int layer,
+		final @NotNull GlyphMask mask,
+		final @NotNull GlyphLayers layers)
+	{
+		final long position = dataOffset + (long) layer * layerBytes;
+		for (final Variant variant : variants)
+		{
+			try
+			{
+				if (format == TextureFormat.R8)
+				{
+					write(
+						variant.channel(),
+						ByteBuffer.wrap(mask.coverage()),
+						position);
+					continue;
+				}
+				final PooledRaster raster = texels(variant, layers);
+				try
+				{
+					write(variant.channel(), raster.pixels, position);
+				}
+				finally
+				{
+					raster.release();
+				}
+			}
+			catch (IOException ex)
+			{
+				System.err.println("Could not write " + variant.fileName);
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Add the layer of every glyph to a {@link Manifest.Part}, once for each
+	 * file. The bounds of each glyph must have been {@linkplain
+	 * Manifest.Part#bounds(int, Rectangle) recorded}.
+	 *
+	 * @param part
+	 *        The {@code Manifest.Part} of the selection.
+	 */
+	synchronized void describe (final @NotNull Manifest.Part part)
+	{
+		for (final Variant variant : variants)
+		{
+			for (int layer = 0; layer < codePoints.size(); layer++)
+			{
+				part.add(
+					variant.name,
+					codePoints.get(layer),
+					variant.fileName,
+					dataOffset + (long) layer * layerBytes,
+					layerBytes,
+					new Rectangle(0, 0, width, height),
+					null);
+			}
+		}
+	}
+
+	/**
+	 * Answer the {@link TextureFormat#RGBA8} texels of a glyph drawn for a
+	 * {@link Variant}. Glyphs drawn over a background are opaque.
+	 *
+	 * @param variant
+	 *        The {@code Variant} to draw for.
+	 * @param layers
+	 *        The {@link GlyphLayers} of the glyph and its effects.
+	 * @return A {@link PooledRaster}, to be released once written.
+	 */
+	private static @NotNull PooledRaster texels (
+		final @NotNull Variant variant,
+		final @NotNull GlyphLayers layers)
+	{
+		if (variant.pair == null)
+		{
+			assert variant.color != null;
+			return layers.raster(OutputMode.COVERAGE, variant.color);
+		}
+		final PooledRaster rgb =
+			layers.raster(OutputMode.COVERAGE, variant.pair);
+		final PooledRaster rgba =
+			PooledRaster.direct(rgb.width, rgb.height, PooledRaster.rgba);
+		final int count = rgb.width * rgb.height;
+		for (int i = 0, p = 0, q = 0; i < count; i++, p += 3, q += 4)
+		{
+			rgba.pixels.put(q, rgb.pixels.get(p));
+			rgba.pixels.put(q + 1, rgb.pixels.get(p + 1));
+			rgba.pixels.put(q + 2, rgb.pixels.get(p + 2));
+			rgba.pixels.put(q + 3, (byte) 0xFF);
+		}
+		rgb.release();
+		return rgba;
+	}
+
+	/**
+	 * Write the remainder of a {@link ByteBuffer} to a {@link FileChannel}
+	 * at the provided position. Writes at distinct positions may be made
+	 * from many threads at once.
+	 *
+	 * @param channel
+	 *        The {@code FileChannel} to write to.
+	 * @param buffer
+	 *        The {@code ByteBuffer} to write.
+	 * @param position
+	 *        The position in the file to write at.
+	 * @throws IOException
+	 *         If the buffer could not be written.
+	 */
+	private static void write (
+		final @NotNull FileChannel channel,
+		final @NotNull ByteBuffer buffer,
+		final long position)
+	throws IOException
+	{
+		final ByteBuffer remaining = buffer.duplicate();
+		long at = position;
+		while (remaining.hasRemaining())
+		{
+			at += channel.write(remaining, at);
+		}
+	}
+
+	/**
+	 * Write the header of each file and close it, then write the CSV sidecar
+	 * of the layer of each code point.
+	 *
+	 * @param fileName
+	 *        The name of the CSV file to write.
+	 */
+	synchronized void finish (final @NotNull String fileName)
+	{
+		for (final Variant variant : variants)
+		{
+			if (variant.channel == null)
+			{
+				continue;
+			}
+			try (FileChannel channel = variant.channel)
+			{
+				write(channel, header(), 0);
+			}
+			catch (IOException ex)
+			{
+				System.err.println("Could not write " + variant.fileName);
+				ex.printStackTrace();
+			}
+			OutputFiles.written(variant.fileName);
+		}
+		try
+		{
+			final OutputFiles.Buffer buffer = OutputFiles.buffer();
+			final PrintWriter out = buffer.text;
+			out.println("code_point,layer");
+			for (int layer = 0; layer < codePoints.size(); layer++)
+			{
+				out.println(codePoints.get(layer) + "," + layer);
+			}
+			OutputFiles.write(fileName, buffer);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + fileName);
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Answer everything that precedes the first layer of a file.
+	 *
+	 * @return A {@link ByteBuffer}.
+	 */
+	private @NotNull ByteBuffer header ()
+	{
+		final int descriptorBytes = metadata.getInt(0);
+		final long levelBytes = (long) layerBytes * codePoints.size();
+		final ByteBuffer header = ByteBuffer.allocate((int) dataOffset)
+			.order(ByteOrder.LITTLE_ENDIAN)
+			.put(identifier)
+			.putInt(format.vkFormat)
+			// The type size, for endian conversion, of single bytes.
+			.putInt(1)
+			.putInt(width)
+			.putInt(height)
+			// The depth, zero for a 2D texture.
+			.putInt(0)
+			.putInt(codePoints.size())
+			// One face, one mip level, and no supercompression.
+			.putInt(1)
+			.putInt(1)
+			.putInt(0)
+			.putInt(descriptorOffset)
+			.putInt(descriptorBytes)
+			.putInt(descriptorOffset + descriptorBytes)
+			.putInt(metadata.limit() - descriptorBytes)
+			// No supercompression global data.
+			.putLong(0)
+			.putLong(0)
+			.putLong(dataOffset)
+			.putLong(levelBytes)
+			.putLong(levelBytes)
+			.put(metadata.duplicate().rewind());
+		return header.clear();
+	}
+
+	/**
+	 * Answer the data format descriptor of a {@link TextureFormat}, a basic
+	 * descriptor block of one sample for each channel, followed by the
+	 * key/value data.
+	 *
+	 * @param format
+	 *        The {@code TextureFormat} to describe.
+	 * @return A {@link ByteBuffer} whose first int is the length of the data
+	 *         format descriptor.
+	 */
+	private static @NotNull ByteBuffer metadata (
+		final @NotNull TextureFormat format)
+	{
+		final int samples = format.texelBytes;
+		final int blockBytes = 24 + 16 * samples;
+		final ByteBuffer metadata = ByteBuffer.allocate(4 + blockBytes + 256)
+			.order(ByteOrder.LITTLE_ENDIAN)
+			.putInt(4 + blockBytes)
+			// The Khronos vendor and basic descriptor type.
+			.putInt(0)
+			.putInt(2 | (blockBytes << 16))
+			// The RGBSDA color model and BT.709 primaries; coverage is
+			// linear, colors sRGB; alpha is not premultiplied.
+			.put((byte) 1)
+			.put((byte) 1)
+			.put((byte) (format == TextureFormat.R8 ? 1 : 2))
+			.put((byte) 0)
+			// A block of one texel, of texelBytes bytes in one plane.
+			.putInt(0)
+			.putInt(format.texelBytes)
+			.putInt(0);
+		for (int s = 0; s < samples; s++)
+		{
+			// Red, green, blue, then alpha, which is always linear.
+			final int channel = s == 3 ? 0x1F : s;
+			metadata.putInt((s * 8) | (7 << 16) | (channel << 24))
+				.putInt(0)
+				.putInt(0)
+				.putInt(255);
+		}
+		for (final String[] keyValue : keyValues)
+		{
+			final byte[] key = keyValue[0].getBytes(StandardCharsets.UTF_8);
+			final byte[] value = keyValue[1].getBytes(StandardCharsets.UTF_8);
+			metadata.putInt(key.length + value.length + 2)
+				.put(key)
+				.put((byte) 0)
+				.put(value)
+				.put((byte) 0);
+			while ((metadata.position() & 3) != 0)
+			{
+				metadata.put((byte) 0);
+			}
+		}
+		return metadata.flip();
+	}
+
+	/**
+	 * Create a {@link TextureArray}.
+	 *
+	 * @param baseDirectory
+	 *        The base directory to write the files in.
+	 * @param selection
+	 *        The {@link Selection} the glyphs belong to.
+	 * @param format
+	 *        The {@link TextureFormat} of the texels.
+	 * @param colors
+	 *        The {@link NamedColor}s to draw in on a transparent background,
+	 *        a file each, if the format is {@link TextureFormat#RGBA8}.
+	 * @param pairs
+	 *        The {@link ColorPair}s to draw with, a file each, if the format
+	 *        is {@link TextureFormat#RGBA8}.
+	 */
+	TextureArray (
+		final @NotNull String baseDirectory,
+		final @NotNull Selection selection,
+		final @NotNull TextureFormat format,
+		final @NotNull List<NamedColor> colors,
+		final @NotNull List<ColorPair> pairs)
+	{
+		this.format = format;
+		this.width = selection.pixelWidth();
+		this.height = selection.pixelHeight();
+		this.layerBytes = width * height * format.texelBytes;
+		this.metadata = metadata(format);
+		// Levels begin on a multiple of four bytes.
+		this.dataOffset = (descriptorOffset + metadata.limit() + 3) & ~3;
+		if (format == TextureFormat.R8)
+		{
+			variants.add(new Variant(
+				ColorMode.maskName,
+				FileUtility.createSelectionFileName(
+					baseDirectory, selection, ".ktx2"),
+				null,
+				null));
+			return;
+		}
+		for (final NamedColor color : colors)
+		{
+			variants.add(new Variant(
+				color.name(),
+				FileUtility.createSelectionFileName(
+					baseDirectory, selection, "." + color.name() + ".ktx2"),
+				color,
+				null));
+		}
+		for (final ColorPair pair : pairs)
+		{
+			variants.add(new Variant(
+				pair.name(),
+				FileUtility.createSelectionFileName(
+					baseDirectory, selection, "." + pair.name() + ".ktx2"),
+				null,
+				pair));
+		}
+	}
+}
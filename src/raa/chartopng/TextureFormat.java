@@ -0,0 +1,117 @@
+/*
+ * TextureFormat.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@code TextureFormat} is an enum that describes the texels of the layers
+ * of a {@link TextureArray}.
+ *
+ * @author Richard Arriaga
+ */
+public enum TextureFormat
+{
+	/**
+	 * One unsigned byte of coverage, or distance, per texel. A single texture
+	 * array is written for the selection, leaving color to the renderer;
+	 * effects are not drawn.
+	 */
+	R8("r8", 9, 1),
+
+	/**
+	 * Four unsigned bytes of sRGB red, green, and blue and linear alpha per
+	 * texel, not premultiplied. A texture array is written for each color or
+	 * color pair, drawn with its effects as the PNGs would be.
+	 */
+	RGBA8("rgba8", 43, 4);
+
+	/**
+	 * The name of the {@link TextureFormat} as used in the generator plan.
+	 */
+	final String name;
+
+	/**
+	 * The Vulkan {@code VkFormat} of the texels: {@code VK_FORMAT_R8_UNORM}
+	 * or {@code VK_FORMAT_R8G8B8A8_SRGB}.
+	 */
+	final int vkFormat;
+
+	/**
+	 * The number of bytes of each texel.
+	 */
+	final int texelBytes;
+
+	/**
+	 * Create a {@link TextureFormat}.
+	 *
+	 * @param name
+	 *        The name of the {@code TextureFormat}.
+	 * @param vkFormat
+	 *        The Vulkan {@code VkFormat} of the texels.
+	 * @param texelBytes
+	 *        The number of bytes of each texel.
+	 */
+	TextureFormat (final String name, final int vkFormat, final int texelBytes)
+	{
+		this.name = name;
+		this.vkFormat = vkFormat;
+		this.texelBytes = texelBytes;
+	}
+
+	/**
+	 * A map that provides a lookup from the {@link TextureFormat#name} to the
+	 * {@link TextureFormat}.
+	 */
+	private static Map<String, TextureFormat> formatMap = new HashMap<>();
+	static
+	{
+		for (TextureFormat format : TextureFormat.values())
+		{
+			formatMap.put(format.name, format);
+		}
+	}
+
+	/**
+	 * Answer the {@link TextureFormat} for the given name.
+	 *
+	 * @param formatName
+	 *        The name of the texture format to get.
+	 * @return A {@code TextureFormat}, or {@code null} if there is none.
+	 */
+	public static TextureFormat textureFormat (final @NotNull String formatName)
+	{
+		return formatMap.get(formatName);
+	}
+}
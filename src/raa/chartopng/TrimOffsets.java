@@ -0,0 +1,153 @@
+/*
+ * TrimOffsets.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.awt.*;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A {@code TrimOffsets} collects where each trimmed PNG of a selection sits
+ * on its canvas and writes them as a CSV sidecar.
+ *
+ * <p>
+ * Each line holds the canvas width and height, the code point, the file
+ * name, and the x, y, width, and height of the trimmed image on the canvas.
+ * Drawing the image at (x, y) of an empty canvas of that size restores the
+ * untrimmed PNG. Lines are ordered by canvas, largest first, then by code
+ * point.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class TrimOffsets
+{
+	/**
+	 * A {@code Key} identifies one trimmed image of a selection.
+	 */
+	private static final class Key
+	{
+		/** The canvas the image was trimmed from. */
+		final @NotNull Dimension canvas;
+
+		/** The code point of the glyph. */
+		final int codePoint;
+
+		/**
+		 * Create a {@link Key}.
+		 *
+		 * @param canvas
+		 *        The canvas the image was trimmed from.
+		 * @param codePoint
+		 *        The code point of the glyph.
+		 */
+		Key (final @NotNull Dimension canvas, final int codePoint)
+		{
+			this.canvas = canvas;
+			this.codePoint = codePoint;
+		}
+	}
+
+	/**
+	 * The order of the lines of the sidecar.
+	 */
+	private static final Comparator<Key> order =
+		Comparator.<Key>comparingInt(key -> -key.canvas.height)
+			.thenComparingInt(key -> -key.canvas.width)
+			.thenComparingInt(key -> key.codePoint);
+
+	/**
+	 * The line of each trimmed image.
+	 */
+	private final Map<Key, String> lines = new ConcurrentSkipListMap<>(order);
+
+	/**
+	 * Add a trimmed image. This may be called from any thread.
+	 *
+	 * @param canvas
+	 *        The canvas the image was trimmed from.
+	 * @param codePoint
+	 *        The code point of the glyph.
+	 * @param fileName
+	 *        The name of the PNG file, without a directory.
+	 * @param bounds
+	 *        The {@link Rectangle} of the canvas the image holds.
+	 */
+	void add (
+		final @NotNull Dimension canvas,
+		final int codePoint,
+		final @NotNull String fileName,
+		final @NotNull Rectangle bounds)
+	{
+		lines.put(
+			new Key(canvas, codePoint),
+			String.format(
+				"%d,%d,%d,\"%s\",%d,%d,%d,%d",
+				canvas.width,
+				canvas.height,
+				codePoint,
+				fileName,
+				bounds.x,
+				bounds.y,
+				bounds.width,
+				bounds.height));
+	}
+
+	/**
+	 * Write the sidecar to the indicated file.
+	 *
+	 * @param fileName
+	 *        The name of the file that will hold the offsets.
+	 */
+	void write (final @NotNull String fileName)
+	{
+		try
+		{
+			final OutputFiles.Buffer buffer = OutputFiles.buffer();
+			final PrintWriter out = buffer.text;
+			out.println(
+				"canvas_width,canvas_height,code_point,file,x,y,width,height");
+			lines.values().forEach(out::println);
+			OutputFiles.write(fileName, buffer);
+		}
+		catch (IOException ex)
+		{
+			System.err.println("Could not write " + fileName);
+			ex.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,308 @@
+/*
+ * VectorMaskKernels.java
+ * Copyright © 2018, Richard Arriaga.
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * * Redistributions of source code must retain the above copyright notice, this
+ *   list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright notice,
+ *   this list of conditions and the following disclaimer in the documentation
+ *   and/or other materials provided with the distribution.
+ *
+ * * Neither the name of the copyright holder nor the names of the contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE..
+ */
+package raa.chartopng;
+
+import org.jetbrains.annotations.NotNull;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@code VectorMaskKernels} is the {@link MaskKernels} that processes a
+ * full hardware vector of pixels at a time with the {@code
+ * jdk.incubator.vector} API, finishing each loop's remainder one pixel at a
+ * time.
+ *
+ * <p>
+ * Division by {@code 255} is done as {@code (x + 1 + (x >>> 8)) >>> 8}, which
+ * is exact for every product of two bytes and avoids a vector divide.
+ * </p>
+ *
+ * @author Richard Arriaga
+ */
+final class VectorMaskKernels
+implements MaskKernels
+{
+	/**
+	 * The preferred {@link VectorSpecies} of bytes.
+	 */
+	private static final VectorSpecies<Byte> bytes =
+		ByteVector.SPECIES_PREFERRED;
+
+	/**
+	 * The {@link VectorSpecies} of ints of the same shape as {@link #bytes},
+	 * one quarter as many lanes.
+	 */
+	private static final VectorSpecies<Integer> ints =
+		IntVector.SPECIES_PREFERRED;
+
+	/**
+	 * The number of pixels {@link #tintRgba(byte[], int, int, ByteBuffer)
+	 * tintRgba} tints at a time before copying them into the raster.
+	 */
+	private static final int tintBlock = 4096;
+
+	/**
+	 * The block of pixels of each thread that {@link #tintRgba(byte[], int,
+	 * int, ByteBuffer) tintRgba} tints into. Vectors cannot be stored into
+	 * a {@link ByteBuffer} without preview APIs, so a block is tinted into an
+	 * array and copied into the raster in bulk, in native byte order.
+	 */
+	private static final ThreadLocal<int[]> tintBlocks =
+		ThreadLocal.withInitial(() -> new int[tintBlock]);
+
+	/**
+	 * The {@link VectorShuffle} that gathers the gray and alpha bytes of the
+	 * pixels of two {@link #grayAlpha(int[], byte[]) grayAlpha} vectors into
+	 * one. Each pixel is an int of the gray in its low byte and the alpha in
+	 * the next, so the first two of each four bytes are kept; the indices of
+	 * the second vector are past the lanes of the first.
+	 */
+	private static final VectorShuffle<Byte> grayAlphaPairs =
+		VectorShuffle.fromOp(bytes, lane ->
+		{
+			final int pixel = lane >> 1;
+			final int half = pixel / ints.length();
+			return half * bytes.length()
+				+ (pixel % ints.length()) * 4
+				+ (lane & 1);
+		});
+
+	/**
+	 * The {@link ScalarMaskKernels} that processes the remainder of loops.
+	 */
+	private final ScalarMaskKernels scalar = new ScalarMaskKernels();
+
+	@Override
+	public boolean isEmpty (
+		final byte[] values,
+		final int from,
+		final int length)
+	{
+		final int bound = bytes.loopBound(length);
+		int i = 0;
+		for (; i < bound; i += bytes.length())
+		{
+			if (ByteVector.fromArray(bytes, values, from + i)
+				.compare(VectorOperators.NE, 0)
+				.anyTrue())
+			{
+				return false;
+			}
+		}
+		return scalar.isEmpty(values, from + i, length - i);
+	}
+
+	@Override
+	public void combineRows (
+		final byte[] values,
+		final int stride,
+		final int rows,
+		final byte[] columns)
+	{
+		final int bound = bytes.loopBound(stride);
+		Arrays.fill(columns, 0, stride, (byte) 0);
+		for (int y = 0, row = 0; y < rows; y++, row += stride)
+		{
+			int x = 0;
+			for (; x < bound; x += bytes.length())
+			{
+				ByteVector.fromArray(bytes, columns, x)
+					.or(ByteVector.fromArray(bytes, values, row + x))
+					.intoArray(columns, x);
+			}
+			for (; x < stride; x++)
+			{
+				columns[x] |= values[row + x];
+			}
+		}
+	}
+
+	@Override
+	public void tint (
+		final byte[] coverage,
+		final int rgb,
+		final int alpha,
+		final int[] pixels)
+	{
+		final int parts = bytes.length() / ints.length();
+		final int bound = bytes.loopBound(coverage.length);
+		final IntVector zero = IntVector.zero(ints);
+		int i = 0;
+		for (; i < bound; i += bytes.length())
+		{
+			final ByteVector packed = ByteVector.fromArray(bytes, coverage, i);
+			if (!packed.compare(VectorOperators.NE, 0).anyTrue())
+			{
+				continue;
+			}
+			for (int part = 0; part < parts; part++)
+			{
+				final IntVector c = ((IntVector) packed
+					.convertShape(VectorOperators.B2I, ints, part))
+					.and(0xFF);
+				final IntVector x = c.mul(alpha).add(127);
+				final IntVector a = x
+					.add(x.lanewise(VectorOperators.LSHR, 8))
+					.add(1)
+					.lanewise(VectorOperators.LSHR, 8);
+				final int offset = i + part * ints.length();
+				a.lanewise(VectorOperators.LSHL, 24)
+					.or(rgb)
+					.blend(
+						IntVector.fromArray(ints, pixels, offset),
+						c.compare(VectorOperators.EQ, zero))
+					.intoArray(pixels, offset);
+			}
+		}
+		for (; i < coverage.length; i++)
+		{
+			final int c = coverage[i] & 0xFF;
+			if (c != 0)
+			{
+				pixels[i] = (((c * alpha + 127) / 255) << 24) | rgb;
+			}
+		}
+	}
+
+	@Override
+	public void tintRgba (
+		final byte[] coverage,
+		final int rgb,
+		final int alpha,
+		final ByteBuffer pixels)
+	{
+		final IntBuffer raster = MaskKernels.nativePixels(pixels);
+		final int[] block = tintBlocks.get();
+		final int parts = bytes.length() / ints.length();
+		// The stored pixel is the color with the alpha in the byte of the
+		// native order that holds the last of the four.
+		final int color = MaskKernels.nativeRgba(rgb, 0);
+		final int alphaShift =
+			Integer.numberOfTrailingZeros(MaskKernels.nativeRgba(0, 0xFF));
+		final IntVector zero = IntVector.zero(ints);
+		for (int from = 0; from < coverage.length; from += tintBlock)
+		{
+			final int length = Math.min(tintBlock, coverage.length - from);
+			final int bound = bytes.loopBound(length);
+			int i = 0;
+			for (; i < bound; i += bytes.length())
+			{
+				final ByteVector packed =
+					ByteVector.fromArray(bytes, coverage, from + i);
+				if (!packed.compare(VectorOperators.NE, 0).anyTrue())
+				{
+					Arrays.fill(block, i, i + bytes.length(), 0);
+					continue;
+				}
+				for (int part = 0; part < parts; part++)
+				{
+					final IntVector c = ((IntVector) packed
+						.convertShape(VectorOperators.B2I, ints, part))
+						.and(0xFF);
+					final IntVector x = c.mul(alpha).add(127);
+					x.add(x.lanewise(VectorOperators.LSHR, 8))
+						.add(1)
+						.lanewise(VectorOperators.LSHR, 8)
+						.lanewise(VectorOperators.LSHL, alphaShift)
+						.or(color)
+						.blend(zero, c.compare(VectorOperators.EQ, zero))
+						.intoArray(block, i + part * ints.length());
+				}
+			}
+			for (; i < length; i++)
+			{
+				final int c = coverage[from + i] & 0xFF;
+				block[i] = c == 0
+					? 0
+					: color | (((c * alpha + 127) / 255) << alphaShift);
+			}
+			raster.put(from, block, 0, length);
+		}
+	}
+
+	@Override
+	public void grayAlpha (final int[] pixels, final byte[] grayAlpha)
+	{
+		// Two vectors of ints fill one of bytes with their pairs of samples.
+		final int step = ints.length() << 1;
+		final int bound = pixels.length - pixels.length % step;
+		int i = 0;
+		for (; i < bound; i += step)
+		{
+			grayAlphaBytes(IntVector.fromArray(ints, pixels, i))
+				.rearrange(
+					grayAlphaPairs,
+					grayAlphaBytes(
+						IntVector.fromArray(ints, pixels, i + ints.length())))
+				.intoArray(grayAlpha, i << 1);
+		}
+		for (; i < pixels.length; i++)
+		{
+			final int argb = pixels[i];
+			grayAlpha[i << 1] = (byte) ((77 * ((argb >>> 16) & 0xFF)
+				+ 150 * ((argb >>> 8) & 0xFF)
+				+ 29 * (argb & 0xFF)
+				+ 128) >>> 8);
+			grayAlpha[(i << 1) + 1] = (byte) (argb >>> 24);
+		}
+	}
+
+	/**
+	 * Answer the bytes of a vector of ARGB pixels as each pixel's gray and
+	 * alpha in the first two of its four bytes.
+	 *
+	 * @param argb
+	 *        The pixels.
+	 * @return A {@link ByteVector} of the same shape.
+	 */
+	private static @NotNull ByteVector grayAlphaBytes (
+		final @NotNull IntVector argb)
+	{
+		return argb
+			.lanewise(VectorOperators.LSHR, 16).and(0xFF).mul(77)
+			.add(argb.lanewise(VectorOperators.LSHR, 8).and(0xFF).mul(150))
+			.add(argb.and(0xFF).mul(29))
+			.add(128)
+			.lanewise(VectorOperators.LSHR, 8)
+			.or(argb.lanewise(VectorOperators.LSHR, 24)
+				.lanewise(VectorOperators.LSHL, 8))
+			.reinterpretAsBytes();
+	}
+}
@@ -105,15 +105,20 @@ public class XMLApplication
 		final List<Runnable> creationJobs = new ArrayList<>();
 		final AtomicInteger workCount = new AtomicInteger(0);
 		final List<String> createdDirectories = new ArrayList<>();
+		final String baseDirectory = FileUtility.platformAppropriatePath(
+			configuration.targetDirectory());
+		final Manifest manifest =
+			new Manifest(baseDirectory, configuration.manifestJson());
+		OutputFiles.syncPolicy(configuration.sync());
 
 		configuration.selections().forEach(selection ->
 			createdDirectories.addAll(PNGGenerator.generateImageFiles(
-				FileUtility.platformAppropriatePath(
-					configuration.targetDirectory()),
+				baseDirectory,
 				selection,
 				creationJobs,
 				workCount,
-				startTime)));
+				startTime,
+				manifest)));
 
 		AppRuntime.console().println("File count: " + workCount.get());
 		AppRuntime.console().println("Output directories:");
@@ -35,15 +35,26 @@ import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import raa.chartopng.ColorMode;
 import raa.chartopng.ColorOption;
+import raa.chartopng.EffectKind;
 import raa.chartopng.FontManager;
+import raa.chartopng.LayoutMode;
 import raa.chartopng.NamedColor;
+import raa.chartopng.OutputMode;
+import raa.chartopng.RasterizerOption;
+import raa.chartopng.RenderProfile;
+import raa.chartopng.SyncPolicy;
+import raa.chartopng.TextureFormat;
 import raa.configuration.State.Range;
 import raa.utility.configuration.XMLElement;
 
 import java.awt.*;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.Set;
+import java.util.TreeSet;
 
 /**
  *  An {@code Element} represents a legal element of the configuration schema.
@@ -261,14 +272,1087 @@ implements XMLElement<GeneratorPlan, Element, State>
 		public void endElement (final @NotNull State state)
 		{
 			state.stopAccumulator();
-			state.selection().fontSize =
-				Integer.parseInt(state.accumulatorContents());
-			assert state.selection().fontSize > 0;
+			final String contents = state.accumulatorContents().trim();
+			if (contents.equalsIgnoreCase("auto"))
+			{
+				state.selection().autoFontSize = true;
+			}
+			else
+			{
+				state.selection().fontSize = Integer.parseInt(contents);
+				assert state.selection().fontSize > 0;
+			}
 			state.selection().hasFontSize = true;
 
 		}
 	},
 
+	/**
+	 * The number of pixels to keep clear on every side of a glyph when the
+	 * {@linkplain #FONT_SIZE font size} is {@code auto}.
+	 */
+	@SuppressWarnings("unused")
+	AUTO_SIZE_MARGIN
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final int margin = Integer.parseInt(state.accumulatorContents());
+			if (margin < 0)
+			{
+				throw new SAXException("Auto size margin must be > -1.");
+			}
+			state.selection().autoSizeMargin = margin;
+		}
+	},
+
+	/**
+	 * Indicates whether an {@code auto} {@linkplain #FONT_SIZE font size} is
+	 * fitted separately for each glyph ({@code true}) or once per {@link Font}
+	 * ({@code false}).
+	 */
+	@SuppressWarnings("unused")
+	AUTO_SIZE_PER_GLYPH
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.stopAccumulator();
+			state.selection().autoSizePerGlyph =
+				Boolean.parseBoolean(state.accumulatorContents().trim());
+		}
+	},
+
+	/**
+	 * The name of the {@link LayoutMode} that positions each glyph on its
+	 * canvas.
+	 */
+	@SuppressWarnings("unused")
+	LAYOUT
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String modeName = state.accumulatorContents().trim();
+			final LayoutMode mode = LayoutMode.layoutMode(modeName);
+			if (mode == null)
+			{
+				throw new SAXException(
+					"Layout, " + modeName + ", is not a valid layout option.");
+			}
+			state.selection().layoutMode = mode;
+		}
+	},
+
+	/**
+	 * The name of the {@link RasterizerOption} that renders the glyphs.
+	 */
+	@SuppressWarnings("unused")
+	RASTERIZER
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String optionName = state.accumulatorContents().trim();
+			final RasterizerOption option =
+				RasterizerOption.rasterizerOption(optionName);
+			if (option == null)
+			{
+				throw new SAXException(
+					"Rasterizer, " + optionName
+						+ ", is not a valid rasterizer option.");
+			}
+			state.selection().rasterizer = option;
+		}
+	},
+
+	/**
+	 * The name of the {@link RenderProfile} that trades rendering quality for
+	 * throughput.
+	 */
+	@SuppressWarnings("unused")
+	RENDER_PROFILE
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String profileName = state.accumulatorContents().trim();
+			final RenderProfile profile =
+				RenderProfile.renderProfile(profileName);
+			if (profile == null)
+			{
+				throw new SAXException(
+					"Render profile, " + profileName
+						+ ", is not a valid render profile option.");
+			}
+			state.selection().renderProfile = profile;
+		}
+	},
+
+	/**
+	 * The pixel heights of the smaller canvases derived from each rendered
+	 * glyph by downsampling, separated by spaces or commas.
+	 */
+	@SuppressWarnings("unused")
+	MIPMAP_SIZES
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final State.Selection selection = state.selection();
+			final TreeSet<Integer> sizes =
+				new TreeSet<>(Comparator.reverseOrder());
+			for (final String size
+				: state.accumulatorContents().trim().split("[\\s,]+"))
+			{
+				final int height = Integer.parseInt(size);
+				if (height < 1 || height >= selection.pixelHeight())
+				{
+					throw new SAXException(
+						"Mipmap size, " + height
+							+ ", must be > 0 and < the pixel height.");
+				}
+				sizes.add(height);
+			}
+			selection.mipmapSizes.clear();
+			selection.mipmapSizes.addAll(sizes);
+		}
+	},
+
+	/**
+	 * The gamma that coverage is decoded with before it is averaged into a
+	 * {@linkplain #MIPMAP_SIZES derived canvas}.
+	 */
+	@SuppressWarnings("unused")
+	MIPMAP_GAMMA
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final float gamma =
+				Float.parseFloat(state.accumulatorContents().trim());
+			if (!(gamma > 0))
+			{
+				throw new SAXException("Mipmap gamma must be > 0.");
+			}
+			state.selection().mipmapGamma = gamma;
+		}
+	},
+
+	/**
+	 * The name of the {@link OutputMode} that decides what the alpha channel
+	 * of each PNG holds.
+	 */
+	@SuppressWarnings("unused")
+	OUTPUT_MODE
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String modeName = state.accumulatorContents().trim();
+			final OutputMode mode = OutputMode.outputMode(modeName);
+			if (mode == null)
+			{
+				throw new SAXException(
+					"Output mode, " + modeName
+						+ ", is not a valid output mode option.");
+			}
+			state.selection().outputMode = mode;
+		}
+	},
+
+	/**
+	 * The factor by which a glyph is enlarged when it is rendered for a
+	 * {@linkplain OutputMode#DISTANCE_FIELD distance field}.
+	 */
+	@SuppressWarnings("unused")
+	DISTANCE_FIELD_SCALE
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final int scale =
+				Integer.parseInt(state.accumulatorContents().trim());
+			if (scale < 1)
+			{
+				throw new SAXException("Distance field scale must be > 0.");
+			}
+			state.selection().distanceFieldScale = scale;
+		}
+	},
+
+	/**
+	 * The distance in canvas pixels from the outline of a glyph at which a
+	 * {@linkplain OutputMode#DISTANCE_FIELD distance field} reaches its
+	 * extremes.
+	 */
+	@SuppressWarnings("unused")
+	DISTANCE_FIELD_SPREAD
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final float spread =
+				Float.parseFloat(state.accumulatorContents().trim());
+			if (!(spread > 0))
+			{
+				throw new SAXException("Distance field spread must be > 0.");
+			}
+			state.selection().distanceFieldSpread = spread;
+		}
+	},
+
+	/**
+	 * Indicates whether a monochrome {@link OutputMode} writes one packed
+	 * binary font table ({@code true}) or one bit per pixel PNGs ({@code
+	 * false}).
+	 */
+	@SuppressWarnings("unused")
+	MONOCHROME_TABLE
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.stopAccumulator();
+			state.selection().monochromeTable =
+				Boolean.parseBoolean(state.accumulatorContents().trim());
+		}
+	},
+
+	/**
+	 * Indicates whether each PNG is trimmed to the pixels its glyph covers,
+	 * with its offsets on the canvas written to a sidecar file.
+	 */
+	@SuppressWarnings("unused")
+	TRIM
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.stopAccumulator();
+			state.selection().trim =
+				Boolean.parseBoolean(state.accumulatorContents().trim());
+		}
+	},
+
+	/**
+	 * The effects drawn beneath each glyph in the order listed, bottom first.
+	 */
+	EFFECTS
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+	},
+
+	/**
+	 * An {@linkplain #EFFECTS effect} that draws the glyph grown by the radius.
+	 */
+	@SuppressWarnings("unused")
+	OUTLINE
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(EFFECTS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.selection().effectChoice =
+				new State.Effect(EffectKind.OUTLINE);
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.selection().effects.add(state.selection().effectChoice());
+		}
+	},
+
+	/**
+	 * An {@linkplain #EFFECTS effect} that draws the glyph blurred by the
+	 * radius and moved by the offset.
+	 */
+	@SuppressWarnings("unused")
+	SHADOW
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(EFFECTS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.selection().effectChoice =
+				new State.Effect(EffectKind.SHADOW);
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.selection().effects.add(state.selection().effectChoice());
+		}
+	},
+
+	/**
+	 * An {@linkplain #EFFECTS effect} that draws the glyph blurred by the
+	 * radius.
+	 */
+	@SuppressWarnings("unused")
+	GLOW
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(EFFECTS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.selection().effectChoice =
+				new State.Effect(EffectKind.GLOW);
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.selection().effects.add(state.selection().effectChoice());
+		}
+	},
+
+	/**
+	 * The distance in pixels an {@linkplain #EFFECTS effect} reaches from the
+	 * glyph.
+	 */
+	@SuppressWarnings("unused")
+	EFFECT_RADIUS
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return EnumSet.of(OUTLINE, SHADOW, GLOW);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final int radius =
+				Integer.parseInt(state.accumulatorContents().trim());
+			if (radius < 0)
+			{
+				throw new SAXException("Effect radius must be > -1.");
+			}
+			state.selection().effectChoice().radius = radius;
+		}
+	},
+
+	/**
+	 * The pixels right and down, separated by a space or comma, that an
+	 * {@linkplain #EFFECTS effect} is moved from the glyph.
+	 */
+	@SuppressWarnings("unused")
+	EFFECT_OFFSET
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return EnumSet.of(OUTLINE, SHADOW, GLOW);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String[] offset =
+				state.accumulatorContents().trim().split("[\\s,]+");
+			if (offset.length != 2)
+			{
+				throw new SAXException(
+					"Effect offset must be two integers, x and y.");
+			}
+			state.selection().effectChoice().offsetX =
+				Integer.parseInt(offset[0]);
+			state.selection().effectChoice().offsetY =
+				Integer.parseInt(offset[1]);
+		}
+	},
+
+	/**
+	 * The name of the {@link ColorOption} an {@linkplain #EFFECTS effect} is
+	 * drawn in.
+	 */
+	@SuppressWarnings("unused")
+	EFFECT_COLOR_NAME
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return EnumSet.of(OUTLINE, SHADOW, GLOW);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String colorName = state.accumulatorContents().trim();
+			final ColorOption colorOption = ColorOption.colorOption(colorName);
+			if (colorOption == null)
+			{
+				throw new SAXException("Effect color, "
+					+ colorName + ", is not a valid color option.");
+			}
+			state.selection().effectChoice().colorOption = colorOption;
+		}
+	},
+
+	/**
+	 * The alpha, from {@code 0} to {@code 255}, an {@linkplain #EFFECTS
+	 * effect} is drawn with.
+	 */
+	@SuppressWarnings("unused")
+	EFFECT_ALPHA
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return EnumSet.of(OUTLINE, SHADOW, GLOW);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final int alpha =
+				Integer.parseInt(state.accumulatorContents().trim());
+			if (alpha < 0 || alpha > 255)
+			{
+				throw new SAXException("Effect alpha must be 0 to 255.");
+			}
+			state.selection().effectChoice().alpha = alpha;
+		}
+	},
+
+	/**
+	 * The multi-character labels composed from the masks of their
+	 * characters.
+	 */
+	STRINGS
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+	},
+
+	/**
+	 * The text of a label.
+	 */
+	@SuppressWarnings("unused")
+	STRING
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(STRINGS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String label = state.accumulatorContents().trim();
+			if (label.isEmpty())
+			{
+				throw new SAXException("A string must not be empty.");
+			}
+			state.selection().addLabel(label);
+		}
+	},
+
+	/**
+	 * Indicates whether the characters of each {@linkplain #STRING label} are
+	 * kerned.
+	 */
+	@SuppressWarnings("unused")
+	KERNING
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(STRINGS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.stopAccumulator();
+			state.selection().labelKerning =
+				Boolean.parseBoolean(state.accumulatorContents().trim());
+		}
+	},
+
+	/**
+	 * The size of the pages the glyphs are packed onto instead of being
+	 * written to a PNG each.
+	 */
+	ATLAS
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+	},
+
+	/**
+	 * The width in pixels of an {@linkplain #ATLAS atlas} page.
+	 */
+	@SuppressWarnings("unused")
+	ATLAS_WIDTH
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(ATLAS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final int value =
+				Integer.parseInt(state.accumulatorContents().trim());
+			if (value < 1)
+			{
+				throw new SAXException("Atlas width must be > 0.");
+			}
+			state.selection().atlasWidth = value;
+		}
+	},
+
+	/**
+	 * The height in pixels of an {@linkplain #ATLAS atlas} page.
+	 */
+	@SuppressWarnings("unused")
+	ATLAS_HEIGHT
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(ATLAS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final int value =
+				Integer.parseInt(state.accumulatorContents().trim());
+			if (value < 1)
+			{
+				throw new SAXException("Atlas height must be > 0.");
+			}
+			state.selection().atlasHeight = value;
+		}
+	},
+
+	/**
+	 * The number of empty columns and rows after each glyph on an
+	 * {@linkplain #ATLAS atlas} page.
+	 */
+	@SuppressWarnings("unused")
+	ATLAS_PADDING
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(ATLAS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final int value =
+				Integer.parseInt(state.accumulatorContents().trim());
+			if (value < 0)
+			{
+				throw new SAXException("Atlas padding must be > -1.");
+			}
+			state.selection().atlasPadding = value;
+		}
+	},
+
+	/**
+	 * Indicates whether an {@linkplain #ATLAS atlas} adds to the pages of the
+	 * last run rather than being packed afresh.
+	 */
+	@SuppressWarnings("unused")
+	ATLAS_INCREMENTAL
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(ATLAS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.stopAccumulator();
+			state.selection().atlasIncremental =
+				Boolean.parseBoolean(state.accumulatorContents().trim());
+		}
+	},
+
+	/**
+	 * Indicates whether an AngelCode BMFont descriptor is written beside the
+	 * pages of an {@linkplain #ATLAS atlas}.
+	 */
+	@SuppressWarnings("unused")
+	ATLAS_BMFONT
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(ATLAS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.stopAccumulator();
+			state.selection().atlasBitmapFont =
+				Boolean.parseBoolean(state.accumulatorContents().trim());
+		}
+	},
+
+	/**
+	 * The {@linkplain TextureFormat format} of the KTX2 texture arrays the
+	 * glyphs are written to instead of a PNG each.
+	 */
+	@SuppressWarnings("unused")
+	TEXTURE_ARRAY
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String formatName = state.accumulatorContents().trim();
+			final TextureFormat format =
+				TextureFormat.textureFormat(formatName);
+			if (format == null)
+			{
+				throw new SAXException(
+					"Texture array format, " + formatName
+						+ ", is not a valid texture format option.");
+			}
+			state.selection().textureArray = format;
+		}
+	},
+
+	/**
+	 * The name of the {@link ColorMode} that decides whether the colors are
+	 * baked into the images or left to the renderer.
+	 */
+	@SuppressWarnings("unused")
+	COLOR_MODE
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String modeName = state.accumulatorContents().trim();
+			final ColorMode mode = ColorMode.colorMode(modeName);
+			if (mode == null)
+			{
+				throw new SAXException(
+					"Color mode, " + modeName
+						+ ", is not a valid color mode option.");
+			}
+			// The effects have colors of their own, which the coverage masks
+			// of palette mode cannot carry.
+			if (mode == ColorMode.PALETTE
+				&& !state.selection().effects().isEmpty())
+			{
+				throw new SAXException(
+					"Color mode, " + modeName
+						+ ", cannot be used with effects.");
+			}
+			state.selection().colorMode = mode;
+		}
+	},
+
+	/**
+	 * Whether to write the glyphs to bundles compressed against a shared
+	 * dictionary instead of a PNG for each.
+	 */
+	@SuppressWarnings("unused")
+	BUNDLE
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.stopAccumulator();
+			state.selection().bundle =
+				Boolean.parseBoolean(state.accumulatorContents().trim());
+		}
+	},
+
 	/**
 	 * The height in pixels of the image.
 	 */
@@ -332,6 +1416,22 @@ implements XMLElement<GeneratorPlan, Element, State>
 		}
 	},
 
+	/**
+	 * A {@code BACKGROUND_COLORS} is a section that contains the opaque
+	 * {@linkplain #COLOR colors} to draw each of the {@link #COLORS} over, in
+	 * the same form as {@code COLORS}. A tile is generated for each pair of
+	 * color and background color.
+	 */
+	BACKGROUND_COLORS
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTION);
+		}
+	},
+
 	/**
 	 * A {@code COLOR} is a section that contains either a single tag, {@link
 	 * #COLOR_NAME} that represents a {@link ColorOption} or the four
@@ -360,7 +1460,7 @@ implements XMLElement<GeneratorPlan, Element, State>
 		@Contract(pure = true)
 		public @NotNull Set<Element> allowedParents ()
 		{
-			return Collections.singleton(COLORS);
+			return EnumSet.of(COLORS, BACKGROUND_COLORS);
 		}
 
 		@Override
@@ -403,7 +1503,7 @@ implements XMLElement<GeneratorPlan, Element, State>
 				color = colorOption.color();
 			}
 
-			state.selection().addColor(color);
+			addColor(state, color);
 		}
 	},
 
@@ -417,7 +1517,7 @@ implements XMLElement<GeneratorPlan, Element, State>
 		@Contract(pure = true)
 		public @NotNull Set<Element> allowedParents ()
 		{
-			return Collections.singleton(COLORS);
+			return EnumSet.of(COLORS, BACKGROUND_COLORS);
 		}
 
 		@Override
@@ -429,12 +1529,17 @@ implements XMLElement<GeneratorPlan, Element, State>
 		}
 
 		@Override
-		public void endElement (final @NotNull State state)
+		public void endElement (final @NotNull State state) throws SAXException
 		{
 			state.stopAccumulator();
-			state.selection().colorChoice().colorName = state.accumulatorContents();
-			state.selection().addColor(ColorOption.colorOption(
-				state.selection().colorChoice().colorName()).color());
+			final String colorName = state.accumulatorContents().trim();
+			final ColorOption colorOption = ColorOption.colorOption(colorName);
+			if (colorOption == null)
+			{
+				throw new SAXException("Color Selection, "
+					+ colorName + ", is not a valid color option.");
+			}
+			addColor(state, colorOption.color());
 		}
 	},
 
@@ -709,6 +1814,73 @@ implements XMLElement<GeneratorPlan, Element, State>
 			state.stopAccumulator();
 			state.configuration().targetDirectory = state.accumulatorContents();
 		}
+	},
+
+	/**
+	 * Whether to write the manifest of the run as JSON as well as binary.
+	 */
+	@SuppressWarnings("unused")
+	MANIFEST_JSON
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTIONS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state)
+		{
+			state.stopAccumulator();
+			state.configuration().manifestJson =
+				Boolean.parseBoolean(state.accumulatorContents().trim());
+		}
+	},
+
+	/**
+	 * When the files the run writes are forced to storage.
+	 */
+	@SuppressWarnings("unused")
+	SYNC
+	{
+		@Override
+		@Contract(pure = true)
+		public @NotNull Set<Element> allowedParents ()
+		{
+			return Collections.singleton(SELECTIONS);
+		}
+
+		@Override
+		public void startElement (
+			final @NotNull State state,
+			final @NotNull Attributes attributes)
+		{
+			state.startAccumulator();
+		}
+
+		@Override
+		public void endElement (final @NotNull State state) throws SAXException
+		{
+			state.stopAccumulator();
+			final String policyName = state.accumulatorContents().trim();
+			final SyncPolicy policy = SyncPolicy.syncPolicy(policyName);
+			if (policy == null)
+			{
+				throw new SAXException(
+					"Sync policy, " + policyName
+						+ ", is not a valid sync option.");
+			}
+			state.configuration().sync = policy;
+		}
 	};
 
 	@Override
@@ -732,4 +1904,28 @@ implements XMLElement<GeneratorPlan, Element, State>
 	{
 		// Nothing.
 	}
+
+	/**
+	 * Add the {@link NamedColor} to the {@link #COLORS} or {@link
+	 * #BACKGROUND_COLORS} of the current {@linkplain State#selection()
+	 * selection}, whichever encloses the element that ended.
+	 *
+	 * @param state
+	 *        The {@link State} of the configuration.
+	 * @param color
+	 *        The {@code NamedColor} to add.
+	 */
+	private static void addColor (
+		final @NotNull State state,
+		final @NotNull NamedColor color)
+	{
+		if (state.parentElement() == BACKGROUND_COLORS)
+		{
+			state.selection().addBackgroundColor(color);
+		}
+		else
+		{
+			state.selection().addColor(color);
+		}
+	}
 }
@@ -31,6 +31,7 @@
  */
 package raa.configuration;
 
+import raa.chartopng.SyncPolicy;
 import raa.configuration.State.Selection;
 import org.jetbrains.annotations.NotNull;
 import raa.utility.configuration.Configuration;
@@ -88,6 +89,38 @@ implements Configuration
 		return targetDirectory;
 	}
 
+	/**
+	 * Whether to write the manifest of the run as JSON as well as binary.
+	 */
+	boolean manifestJson = false;
+
+	/**
+	 * Answer whether to write the manifest of the run as JSON as well as
+	 * binary.
+	 *
+	 * @return {@code true} to write {@code manifest.json}; {@code false}
+	 *         otherwise.
+	 */
+	public boolean manifestJson ()
+	{
+		return manifestJson;
+	}
+
+	/**
+	 * When the files the run writes are forced to storage.
+	 */
+	@NotNull SyncPolicy sync = SyncPolicy.NONE;
+
+	/**
+	 * Answer when the files the run writes are forced to storage.
+	 *
+	 * @return A {@link SyncPolicy}.
+	 */
+	public @NotNull SyncPolicy sync ()
+	{
+		return sync;
+	}
+
 	@Override
 	public boolean isValid ()
 	{
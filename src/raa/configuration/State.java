@@ -34,8 +34,15 @@ package raa.configuration;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.xml.sax.SAXException;
+import raa.chartopng.ColorMode;
 import raa.chartopng.ColorOption;
+import raa.chartopng.EffectKind;
+import raa.chartopng.LayoutMode;
 import raa.chartopng.NamedColor;
+import raa.chartopng.OutputMode;
+import raa.chartopng.RasterizerOption;
+import raa.chartopng.RenderProfile;
+import raa.chartopng.TextureFormat;
 import raa.utility.configuration.Configuration;
 import raa.utility.configuration.XMLConfigurator;
 import raa.utility.configuration.XMLConfiguratorState;
@@ -43,6 +50,7 @@ import raa.utility.configuration.XMLConfiguratorState;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * A {@code State} encapsulates the state of a {@link XMLConfigurator}.
@@ -162,6 +170,21 @@ extends XMLConfiguratorState<GeneratorPlan, Element, State>
 			return selectedFonts;
 		}
 
+		/**
+		 * Answer the first {@link Font} in the ordered collection of {@link
+		 * Font} preferences that can display the character code point.
+		 *
+		 * @param codePoint
+		 *        The character code point to display.
+		 * @return An {@link Optional} {@code Font}.
+		 */
+		public @NotNull Optional<Font> fontFor (final int codePoint)
+		{
+			return selectedFonts.stream()
+				.filter(font -> font.canDisplay(codePoint))
+				.findFirst();
+		}
+
 		/**
 		 * The integer point font size to use (must be > 0);
 		 */
@@ -177,6 +200,441 @@ extends XMLConfiguratorState<GeneratorPlan, Element, State>
 			return fontSize;
 		}
 
+		/**
+		 * Indicates whether or not the font size should be fitted to the
+		 * canvas rather than using {@link #fontSize}.
+		 */
+		boolean autoFontSize = false;
+
+		/**
+		 * Answer whether or not the font size should be fitted to the canvas
+		 * rather than using the {@linkplain #fontSize() font size}.
+		 *
+		 * @return {@code true} if the size is fitted; {@code false} otherwise.
+		 */
+		public boolean autoFontSize ()
+		{
+			return autoFontSize;
+		}
+
+		/**
+		 * The number of pixels to keep clear on every side of a glyph when
+		 * fitting the font size to the canvas.
+		 */
+		int autoSizeMargin = 0;
+
+		/**
+		 * Answer the number of pixels to keep clear on every side of a glyph
+		 * when fitting the font size to the canvas.
+		 *
+		 * @return A non-negative integer.
+		 */
+		public int autoSizeMargin ()
+		{
+			return autoSizeMargin;
+		}
+
+		/**
+		 * Indicates whether the font size is fitted separately for each glyph
+		 * ({@code true}) or once for all the glyphs a {@link Font} renders
+		 * ({@code false}).
+		 */
+		boolean autoSizePerGlyph = false;
+
+		/**
+		 * Answer whether the font size is fitted separately for each glyph
+		 * ({@code true}) or once for all the glyphs a {@link Font} renders
+		 * ({@code false}).
+		 *
+		 * @return A {@code boolean}.
+		 */
+		public boolean autoSizePerGlyph ()
+		{
+			return autoSizePerGlyph;
+		}
+
+		/**
+		 * The {@link LayoutMode} that positions each glyph on its canvas.
+		 */
+		@NotNull LayoutMode layoutMode = LayoutMode.CENTER;
+
+		/**
+		 * Answer the {@link LayoutMode} that positions each glyph on its
+		 * canvas.
+		 *
+		 * @return A {@code LayoutMode}.
+		 */
+		public @NotNull LayoutMode layoutMode ()
+		{
+			return layoutMode;
+		}
+
+		/**
+		 * The {@link RasterizerOption} that renders the glyphs.
+		 */
+		@NotNull RasterizerOption rasterizer = RasterizerOption.JAVA2D;
+
+		/**
+		 * Answer the {@link RasterizerOption} that renders the glyphs.
+		 *
+		 * @return A {@code RasterizerOption}.
+		 */
+		public @NotNull RasterizerOption rasterizer ()
+		{
+			return rasterizer;
+		}
+
+		/**
+		 * The {@link RenderProfile} that trades rendering quality for
+		 * throughput.
+		 */
+		@NotNull RenderProfile renderProfile = RenderProfile.QUALITY;
+
+		/**
+		 * Answer the {@link RenderProfile} that trades rendering quality for
+		 * throughput.
+		 *
+		 * @return A {@code RenderProfile}.
+		 */
+		public @NotNull RenderProfile renderProfile ()
+		{
+			return renderProfile;
+		}
+
+		/**
+		 * The pixel heights, largest first, of the smaller canvases derived
+		 * from each rendered glyph by downsampling; empty if none are.
+		 */
+		final @NotNull List<Integer> mipmapSizes = new ArrayList<>();
+
+		/**
+		 * Answer the pixel heights, largest first, of the smaller canvases
+		 * derived from each rendered glyph by downsampling.
+		 *
+		 * @return A {@link List} of heights less than the {@linkplain
+		 *         #pixelHeight() pixel height}; empty if none are derived.
+		 */
+		public @NotNull List<Integer> mipmapSizes ()
+		{
+			return mipmapSizes;
+		}
+
+		/**
+		 * The gamma that coverage is decoded with before it is averaged into
+		 * a derived canvas; {@code 1} averages the coverage as is.
+		 */
+		float mipmapGamma = 2.2f;
+
+		/**
+		 * Answer the gamma that coverage is decoded with before it is
+		 * averaged into a derived canvas.
+		 *
+		 * @return A positive number; {@code 1} averages the coverage as is.
+		 */
+		public float mipmapGamma ()
+		{
+			return mipmapGamma;
+		}
+
+		/**
+		 * The {@link OutputMode} that decides what the alpha channel of each
+		 * PNG holds.
+		 */
+		@NotNull OutputMode outputMode = OutputMode.COVERAGE;
+
+		/**
+		 * Answer the {@link OutputMode} that decides what the alpha channel
+		 * of each PNG holds.
+		 *
+		 * @return An {@code OutputMode}.
+		 */
+		public @NotNull OutputMode outputMode ()
+		{
+			return outputMode;
+		}
+
+		/**
+		 * The factor by which a glyph is enlarged when it is rendered for a
+		 * {@linkplain OutputMode#DISTANCE_FIELD distance field}.
+		 */
+		int distanceFieldScale = 8;
+
+		/**
+		 * Answer the factor by which a glyph is enlarged when it is rendered
+		 * for a {@linkplain OutputMode#DISTANCE_FIELD distance field}.
+		 *
+		 * @return A positive integer.
+		 */
+		public int distanceFieldScale ()
+		{
+			return distanceFieldScale;
+		}
+
+		/**
+		 * The distance in canvas pixels from the outline of a glyph at which
+		 * a {@linkplain OutputMode#DISTANCE_FIELD distance field} reaches
+		 * {@code 0} outside or {@code 255} inside.
+		 */
+		float distanceFieldSpread = 4f;
+
+		/**
+		 * Answer the distance in canvas pixels from the outline of a glyph at
+		 * which a {@linkplain OutputMode#DISTANCE_FIELD distance field}
+		 * reaches {@code 0} outside or {@code 255} inside.
+		 *
+		 * @return A positive number.
+		 */
+		public float distanceFieldSpread ()
+		{
+			return distanceFieldSpread;
+		}
+
+		/**
+		 * Indicates whether a monochrome {@link OutputMode} writes one packed
+		 * binary font table for the selection ({@code true}) or one bit per
+		 * pixel PNGs for each color ({@code false}).
+		 */
+		boolean monochromeTable = false;
+
+		/**
+		 * Answer whether a monochrome {@link OutputMode} writes one packed
+		 * binary font table for the selection ({@code true}) or one bit per
+		 * pixel PNGs for each color ({@code false}).
+		 *
+		 * @return {@code true} for a table; {@code false} for PNGs.
+		 */
+		public boolean monochromeTable ()
+		{
+			return monochromeTable;
+		}
+
+		/**
+		 * Indicates whether each PNG is trimmed to the pixels its glyph
+		 * covers, with the offsets that restore its position on the canvas
+		 * written beside it.
+		 */
+		boolean trim = false;
+
+		/**
+		 * Answer whether each PNG is trimmed to the pixels its glyph covers,
+		 * with the offsets that restore its position on the canvas written
+		 * beside it.
+		 *
+		 * @return {@code true} to trim; {@code false} for the full canvas.
+		 */
+		public boolean trim ()
+		{
+			return trim;
+		}
+
+		/**
+		 * The {@link Effect}s drawn beneath each glyph, bottom first.
+		 */
+		final @NotNull List<Effect> effects = new ArrayList<>();
+
+		/**
+		 * Answer the {@link Effect}s drawn beneath each glyph, bottom first.
+		 *
+		 * @return A {@link List}; empty if there are none.
+		 */
+		public @NotNull List<Effect> effects ()
+		{
+			return effects;
+		}
+
+		/**
+		 * The {@link Effect} being read from the plan.
+		 */
+		@Nullable Effect effectChoice;
+
+		@NotNull Effect effectChoice ()
+		{
+			final Effect e = effectChoice;
+			assert e != null : "Should be set by now!";
+			return e;
+		}
+
+		/**
+		 * The multi-character labels to compose from the masks of their
+		 * characters.
+		 */
+		private final @NotNull List<String> labels = new ArrayList<>();
+
+		/**
+		 * Add a label to compose from the masks of its characters.
+		 *
+		 * @param label
+		 *        The text of the label.
+		 */
+		void addLabel (final @NotNull String label)
+		{
+			labels.add(label);
+		}
+
+		/**
+		 * Answer the multi-character labels to compose from the masks of
+		 * their characters.
+		 *
+		 * @return A {@link List} of label texts.
+		 */
+		public @NotNull List<String> labels ()
+		{
+			return labels;
+		}
+
+		/**
+		 * Indicates whether the characters of a label are kerned.
+		 */
+		boolean labelKerning = false;
+
+		/**
+		 * Answer whether the characters of a label are kerned.
+		 *
+		 * @return {@code true} to kern; {@code false} to place each character
+		 *         at the advance of the one before.
+		 */
+		public boolean labelKerning ()
+		{
+			return labelKerning;
+		}
+
+		/**
+		 * The width in pixels of an atlas page, or {@code 0} to write a PNG
+		 * for each glyph instead of packing them onto atlas pages.
+		 */
+		int atlasWidth = 0;
+
+		/**
+		 * Answer the width in pixels of an atlas page.
+		 *
+		 * @return The width, or {@code 0} if the glyphs are not packed onto
+		 *         atlas pages.
+		 */
+		public int atlasWidth ()
+		{
+			return atlasWidth;
+		}
+
+		/**
+		 * The height in pixels of an atlas page.
+		 */
+		int atlasHeight = 0;
+
+		/**
+		 * Answer the height in pixels of an atlas page.
+		 *
+		 * @return The height, or {@code 0} if the glyphs are not packed onto
+		 *         atlas pages.
+		 */
+		public int atlasHeight ()
+		{
+			return atlasHeight;
+		}
+
+		/**
+		 * The number of empty columns and rows after each glyph on an atlas
+		 * page.
+		 */
+		int atlasPadding = 1;
+
+		/**
+		 * Answer the number of empty columns and rows after each glyph on an
+		 * atlas page.
+		 *
+		 * @return A padding of at least {@code 0}.
+		 */
+		public int atlasPadding ()
+		{
+			return atlasPadding;
+		}
+
+		/**
+		 * Indicates whether an atlas adds to the pages of the last run rather
+		 * than being packed afresh.
+		 */
+		boolean atlasIncremental = false;
+
+		/**
+		 * Answer whether an atlas adds to the pages of the last run rather
+		 * than being packed afresh.
+		 *
+		 * @return {@code true} to keep the glyphs of the last run where they
+		 *         are and place only new glyphs.
+		 */
+		public boolean atlasIncremental ()
+		{
+			return atlasIncremental;
+		}
+
+		/**
+		 * Indicates whether an AngelCode BMFont descriptor is written beside
+		 * the pages of an atlas.
+		 */
+		boolean atlasBitmapFont = false;
+
+		/**
+		 * Answer whether an AngelCode BMFont descriptor is written beside the
+		 * pages of an atlas.
+		 *
+		 * @return {@code true} to write {@code atlas.fnt}.
+		 */
+		public boolean atlasBitmapFont ()
+		{
+			return atlasBitmapFont;
+		}
+
+		/**
+		 * The {@link TextureFormat} of the KTX2 texture arrays to write the
+		 * glyphs to instead of a PNG for each, or {@code null} to write PNGs.
+		 */
+		@Nullable TextureFormat textureArray = null;
+
+		/**
+		 * Answer the {@link TextureFormat} of the KTX2 texture arrays to write
+		 * the glyphs to.
+		 *
+		 * @return A {@code TextureFormat}, or {@code null} if no texture
+		 *         arrays are written.
+		 */
+		public @Nullable TextureFormat textureArray ()
+		{
+			return textureArray;
+		}
+
+		/**
+		 * The {@link ColorMode} that decides whether the colors are baked
+		 * into the images or left to the renderer.
+		 */
+		@NotNull ColorMode colorMode = ColorMode.BAKED;
+
+		/**
+		 * Answer the {@link ColorMode} that decides whether the colors are
+		 * baked into the images or left to the renderer.
+		 *
+		 * @return A {@code ColorMode}.
+		 */
+		public @NotNull ColorMode colorMode ()
+		{
+			return colorMode;
+		}
+
+		/**
+		 * Whether to write the glyphs to bundles compressed against a shared
+		 * dictionary instead of a PNG for each.
+		 */
+		boolean bundle = false;
+
+		/**
+		 * Answer whether to write the glyphs to bundles compressed against a
+		 * shared dictionary instead of a PNG for each.
+		 *
+		 * @return {@code true} to write bundles; {@code false} otherwise.
+		 */
+		public boolean bundle ()
+		{
+			return bundle;
+		}
+
 		/**
 		 * Indicates the {@linkplain Font#style font style}:
 		 *
@@ -246,6 +704,38 @@ extends XMLConfiguratorState<GeneratorPlan, Element, State>
 			return colors;
 		}
 
+		/**
+		 * The {@link List} of opaque {@linkplain Color colors} to draw each of
+		 * the {@link #colors} over. When empty, glyphs are drawn over a
+		 * transparent canvas.
+		 */
+		private final @NotNull List<NamedColor> backgroundColors =
+			new ArrayList<>();
+
+		/**
+		 * Add the {@link NamedColor} to the {@link List} of background
+		 * {@linkplain Color colors} to draw each of the {@link #colors} over.
+		 *
+		 * @param color
+		 *        The {@code NamedColor} to add.
+		 */
+		void addBackgroundColor (final NamedColor color)
+		{
+			backgroundColors.add(color);
+		}
+
+		/**
+		 * Answer the background {@linkplain NamedColor colors} to draw each of
+		 * the {@linkplain #colors() colors} over.
+		 *
+		 * @return A {@link List} of colors, empty when the glyphs are drawn
+		 *         over a transparent canvas.
+		 */
+		public @NotNull List<NamedColor> backgroundColors ()
+		{
+			return backgroundColors;
+		}
+
 		/**
 		 * The {@link Color} presently being built.
 		 */
@@ -450,6 +940,106 @@ extends XMLConfiguratorState<GeneratorPlan, Element, State>
 		boolean hasAlpha = false;
 	}
 
+	/**
+	 * An {@code Effect} is an {@link EffectKind} with the parameters and
+	 * {@link Color} it is drawn with.
+	 */
+	public static class Effect
+	{
+		/**
+		 * The {@link EffectKind} of the {@link Effect}.
+		 */
+		final @NotNull EffectKind kind;
+
+		/**
+		 * Answer the {@link EffectKind} of the {@link Effect}.
+		 *
+		 * @return An {@code EffectKind}.
+		 */
+		public @NotNull EffectKind kind ()
+		{
+			return kind;
+		}
+
+		/**
+		 * The distance in pixels the effect reaches from the glyph.
+		 */
+		int radius = 2;
+
+		/**
+		 * Answer the distance in pixels the effect reaches from the glyph.
+		 *
+		 * @return A non-negative integer.
+		 */
+		public int radius ()
+		{
+			return radius;
+		}
+
+		/**
+		 * The pixels the effect is moved right of the glyph.
+		 */
+		int offsetX = 0;
+
+		/**
+		 * Answer the pixels the effect is moved right of the glyph.
+		 *
+		 * @return An integer; negative moves left.
+		 */
+		public int offsetX ()
+		{
+			return offsetX;
+		}
+
+		/**
+		 * The pixels the effect is moved down from the glyph.
+		 */
+		int offsetY = 0;
+
+		/**
+		 * Answer the pixels the effect is moved down from the glyph.
+		 *
+		 * @return An integer; negative moves up.
+		 */
+		public int offsetY ()
+		{
+			return offsetY;
+		}
+
+		/**
+		 * The {@link ColorOption} the effect is drawn in.
+		 */
+		@NotNull ColorOption colorOption = ColorOption.BLACK;
+
+		/**
+		 * The alpha the effect is drawn with.
+		 */
+		int alpha = 255;
+
+		/**
+		 * Answer the {@link Color} the effect is drawn in.
+		 *
+		 * @return A {@code Color}.
+		 */
+		public @NotNull Color color ()
+		{
+			final Color color = colorOption.color();
+			return new Color(
+				color.getRed(), color.getGreen(), color.getBlue(), alpha);
+		}
+
+		/**
+		 * Create an {@link Effect}.
+		 *
+		 * @param kind
+		 *        The {@link EffectKind} of the {@code Effect}.
+		 */
+		Effect (final @NotNull EffectKind kind)
+		{
+			this.kind = kind;
+		}
+	}
+
 	/**
 	 * A {@code Range} specifies a range of character code points to generate.
 	 */
@@ -37,6 +37,8 @@ import raa.configuration.State.Selection;
 
 import java.awt.*;
 import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A {@code FileUtility} is a utility class to help when dealing with files.
@@ -45,6 +47,13 @@ import java.io.File;
  */
 public class FileUtility
 {
+	/**
+	 * The directories already created by this run, so that each is created
+	 * only once however many files are written to it.
+	 */
+	private static final Set<String> createdDirs =
+		ConcurrentHashMap.newKeySet();
+
 	/**
 	 * Answer the platform-specific path for the provided String path.
 	 *
@@ -61,15 +70,19 @@ public class FileUtility
 	}
 
 	/**
-	 * Create the given directory.
+	 * Create the given directory, unless this run already has.
 	 *
 	 * @param dirName
 	 *        The name of the directory to create.
 	 */
 	public static void createDir (final @NotNull String dirName)
 	{
-		File dir = new File(dirName);
-		dir.mkdirs();
+		if (!createdDirs.contains(dirName))
+		{
+			File dir = new File(dirName);
+			dir.mkdirs();
+			createdDirs.add(dirName);
+		}
 	}
 
 	/**
@@ -108,11 +121,234 @@ public class FileUtility
 			.append(CharacterSupport.unicodeValue(
 				Character.toChars(selection.maxCodePoint())[0]))
 			.toString();
-		File dir = new File(dirName);
-		dir.mkdirs();
+		createDir(dirName);
+		return dirName;
+	}
+
+	/**
+	 * Answer a String that represents the directory of a derived canvas size
+	 * for the provided color, creating it if necessary.
+	 *
+	 * <p>
+	 * The directory takes the form:
+	 * </p>
+	 * <p>
+	 * <em>{SELECTION_NAME}/{COLOR_NAME}/{HEIGHT}x{WIDTH}/{RANGE}</em>
+	 * </p>
+	 *
+	 * @param baseDirectory
+	 *        The base directory to create this directory in.
+	 * @param colorName
+	 *        The String name of the color.
+	 * @param pixelHeight
+	 *        The height in pixels of the derived canvas.
+	 * @param pixelWidth
+	 *        The width in pixels of the derived canvas.
+	 * @param selection
+	 *        The {@link Selection} to be generated.
+	 * @return A String.
+	 */
+	public static @NotNull String createStringDir (
+		final @NotNull String baseDirectory,
+		final @NotNull String colorName,
+		final int pixelHeight,
+		final int pixelWidth,
+		final @NotNull Selection selection)
+	{
+		return createStringDir(
+			baseDirectory,
+			colorName + File.separator + pixelHeight + "x" + pixelWidth,
+			selection);
+	}
+
+	/**
+	 * Answer a String that represents the directory of the atlas pages drawn
+	 * in the provided color, creating it if necessary. The directory does not
+	 * name the code point range, so that an atlas keeps its place as ranges
+	 * are added to the selection.
+	 *
+	 * <p>
+	 * The directory takes the form:
+	 * </p>
+	 * <p>
+	 * <em>{SELECTION_NAME}/{COLOR_NAME}/atlas</em>
+	 * </p>
+	 *
+	 * @param baseDirectory
+	 *        The base directory to create this directory in.
+	 * @param colorName
+	 *        The String name of the color.
+	 * @param selection
+	 *        The {@link Selection} to be generated.
+	 * @return A String.
+	 */
+	public static @NotNull String createAtlasDir (
+		final @NotNull String baseDirectory,
+		final @NotNull String colorName,
+		final @NotNull Selection selection)
+	{
+		final String dirName = baseDirectory
+			+ File.separator
+			+ selection.selectionName()
+			+ File.separator
+			+ colorName
+			+ File.separator
+			+ "atlas";
+		createDir(dirName);
+		return dirName;
+	}
+
+	/**
+	 * Answer the name of a file that describes the atlas of a {@link
+	 * Selection}, creating its directory if necessary.
+	 *
+	 * <p>
+	 * The file takes the form:
+	 * </p>
+	 * <p>
+	 * <em>{SELECTION_NAME}/atlas{SUFFIX}</em>
+	 * </p>
+	 *
+	 * @param baseDirectory
+	 *        The base directory to create the file in.
+	 * @param selection
+	 *        The {@code Selection} to be generated.
+	 * @param suffix
+	 *        The suffix to be added to the end of the file name.
+	 * @return A file with directory.
+	 */
+	public static @NotNull String createAtlasFileName (
+		final @NotNull String baseDirectory,
+		final @NotNull Selection selection,
+		final @NotNull String suffix)
+	{
+		final String dirName =
+			baseDirectory + File.separator + selection.selectionName();
+		createDir(dirName);
+		return dirName + File.separator + "atlas" + suffix;
+	}
+
+	/**
+	 * Answer the PNG file name of an atlas page.
+	 *
+	 * @param dirName
+	 *        The name of the directory the file will be in.
+	 * @param page
+	 *        The index of the page, from {@code 0}.
+	 * @return A file with directory.
+	 */
+	public static @NotNull String createAtlasFileName (
+		final @NotNull String dirName,
+		final int page)
+	{
+		return dirName + File.separator + "atlas_" + page + ".png";
+	}
+
+	/**
+	 * Answer a String that represents the directory of the labels drawn in
+	 * the provided color, creating it if necessary.
+	 *
+	 * <p>
+	 * The directory takes the form:
+	 * </p>
+	 * <p>
+	 * <em>{SELECTION_NAME}/{COLOR_NAME}/labels</em>
+	 * </p>
+	 *
+	 * @param baseDirectory
+	 *        The base directory to create this directory in.
+	 * @param colorName
+	 *        The String name of the color.
+	 * @param selection
+	 *        The {@link Selection} to be generated.
+	 * @return A String.
+	 */
+	public static @NotNull String createLabelDir (
+		final @NotNull String baseDirectory,
+		final @NotNull String colorName,
+		final @NotNull Selection selection)
+	{
+		final String dirName = baseDirectory
+			+ File.separator
+			+ selection.selectionName()
+			+ File.separator
+			+ colorName
+			+ File.separator
+			+ "labels";
+		createDir(dirName);
 		return dirName;
 	}
 
+	/**
+	 * Answer a PNG file name for the given directory name and label. Letters
+	 * and digits are kept; every other character is replaced by its code
+	 * point so that the name is safe and distinct for each label.
+	 *
+	 * @param dirName
+	 *        The name of the directory the file will be in.
+	 * @param label
+	 *        The text of the label.
+	 * @return A file with directory.
+	 */
+	public static @NotNull String createLabelFileName (
+		final @NotNull String dirName,
+		final @NotNull String label)
+	{
+		final StringBuilder builder =
+			new StringBuilder(dirName).append(File.separator).append("label_");
+		label.codePoints().forEach(codePoint ->
+		{
+			if (codePoint < 0x80 && Character.isLetterOrDigit(codePoint))
+			{
+				builder.appendCodePoint(codePoint);
+			}
+			else
+			{
+				builder.append("_u").append(
+					Integer.toHexString(codePoint | 0x1000000).substring(1));
+			}
+		});
+		return builder.append(".png").toString();
+	}
+
+	/**
+	 * Answer the name of a file that holds output for a whole {@link
+	 * Selection} rather than for one color, creating its directory if
+	 * necessary.
+	 *
+	 * <p>
+	 * The file takes the form:
+	 * </p>
+	 * <p>
+	 * <em>{SELECTION_NAME}/{RANGE}{SUFFIX}</em>
+	 * </p>
+	 *
+	 * @param baseDirectory
+	 *        The base directory to create the file in.
+	 * @param selection
+	 *        The {@code Selection} to be generated.
+	 * @param suffix
+	 *        The suffix to be added to the end of the file name.
+	 * @return A file with directory.
+	 */
+	public static @NotNull String createSelectionFileName (
+		final @NotNull String baseDirectory,
+		final @NotNull Selection selection,
+		final @NotNull String suffix)
+	{
+		final String dirName =
+			baseDirectory + File.separator + selection.selectionName();
+		createDir(dirName);
+		return dirName
+			+ File.separator
+			+ CharacterSupport.unicodeValue(
+				Character.toChars(selection.minCodePoint())[0])
+			+ "_"
+			+ CharacterSupport.unicodeValue(
+				Character.toChars(selection.maxCodePoint())[0])
+			+ suffix;
+	}
+
 	/**
 	 * Answer a PNG file name for the given directory name and character.
 	 *
@@ -130,9 +366,26 @@ public class FileUtility
 		final @NotNull String text,
 		final @NotNull String suffix)
 	{
-		return dirName
-			+ File.separator
-			+ font.getName()
+		return dirName + File.separator + createFileName(font, text, suffix);
+	}
+
+	/**
+	 * Answer a PNG file name, without a directory, for the given character.
+	 *
+	 * @param font
+	 *        The {@link Font} the character is drawn in.
+	 * @param text
+	 *        The single character string to create a file name for.
+	 * @param suffix
+	 *        Any suffix to be added to the end of the file name.
+	 * @return A file name.
+	 */
+	public static @NotNull String createFileName (
+		final @NotNull Font font,
+		final @NotNull String text,
+		final @NotNull String suffix)
+	{
+		return font.getName()
 			+ "_"
 			+ CharacterSupport.unicodeValue(text.charAt(0))
 			+ suffix;